@@ -0,0 +1,255 @@
+/*
+Project: Battleship
+File: AIProfile.java
+Description: Tunable constants of the expert AI (parity phase length, parity modulus, learning weights) and the board size and fleet they play on, loadable from and savable to a properties file. Compatible with GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package battleshipgui;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+public class AIProfile {
+
+	static final String PARITY_GUESSES = "parityGuesses";
+	static final String PARITY_MODULUS = "parityModulus";
+	static final String MISS_WEIGHT = "missWeight";
+	static final String HIT_WEIGHT = "hitWeight";
+	static final String ROWS = "rows";
+	static final String COLUMNS = "columns";
+	static final String FLEET = "fleet";
+
+	static final int DEFAULT_BOARD_LENGTH = 10;
+	static final String DEFAULT_FLEET = "Carrier:5,Battleship:4,Cruiser:3,Submarine:3,Destroyer:2";
+	// rows are named A to Z, then AA to ZZ
+	static final int MAX_ROWS = 26 + 26 * 26;
+	static final int MAX_COLUMNS = 1000;
+	// ships are marked on the boards with the letters A to Z
+	static final int MAX_SHIPS = 26;
+
+	private int parityGuesses;
+	private int parityModulus;
+	private double missWeight;
+	private double hitWeight;
+	private int rows = DEFAULT_BOARD_LENGTH;
+	private int columns = DEFAULT_BOARD_LENGTH;
+	private String[] shipNames;
+	private int[] shipLengths;
+
+	public AIProfile(int initialParityGuesses, int initialParityModulus, double initialMissWeight, double initialHitWeight) {
+		parityGuesses = initialParityGuesses;
+		parityModulus = initialParityModulus;
+		missWeight = initialMissWeight;
+		hitWeight = initialHitWeight;
+		setFleet(DEFAULT_FLEET);
+	}
+
+	/**
+	 * Returns the constants the GUI AI has always used
+	 *
+	 * @return default profile
+	 */
+	public static AIProfile defaults() {
+		return new AIProfile(10, 4, 0.5, 1.0);
+	}
+
+	public int getParityGuesses() {
+		return parityGuesses;
+	}
+
+	public void setParityGuesses(int newParityGuesses) {
+		parityGuesses = newParityGuesses;
+	}
+
+	public int getParityModulus() {
+		return parityModulus;
+	}
+
+	public void setParityModulus(int newParityModulus) {
+		parityModulus = newParityModulus;
+	}
+
+	public double getMissWeight() {
+		return missWeight;
+	}
+
+	public void setMissWeight(double newMissWeight) {
+		missWeight = newMissWeight;
+	}
+
+	public double getHitWeight() {
+		return hitWeight;
+	}
+
+	public void setHitWeight(double newHitWeight) {
+		hitWeight = newHitWeight;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Sets the board size; checked against the fleet by validate
+	 *
+	 * @param newRows - number of rows (1 - MAX_ROWS)
+	 * @param newColumns - number of columns (1 - MAX_COLUMNS)
+	 */
+	public void setBoardSize(int newRows, int newColumns) {
+		if (newRows < 1 || newRows > MAX_ROWS || newColumns < 1 || newColumns > MAX_COLUMNS) {
+			throw new IllegalArgumentException("board must have 1 - " + MAX_ROWS + " rows and 1 - " + MAX_COLUMNS + " columns");
+		}
+		rows = newRows;
+		columns = newColumns;
+	}
+
+	/**
+	 * Creates the ships of the fleet, in fleet order
+	 *
+	 * @return array of ships to be placed and hunted
+	 */
+	public Ship[] createShips() {
+		Ship[] ships = new Ship[shipNames.length];
+		for (int s = 0; s < ships.length; s++) {
+			ships[s] = new Ship(shipNames[s], shipLengths[s]);
+		}
+		return ships;
+	}
+
+	/**
+	 * Sets the fleet from its text form, e.g. "Carrier:5,Battleship:4,Cruiser:3,Submarine:3,Destroyer:2"
+	 *
+	 * @param fleet - ship names and lengths, separated by commas
+	 */
+	public final void setFleet(String fleet) {
+		String[] entries = fleet.trim().split("\\s*,\\s*");
+		if (entries.length < 1 || entries.length > MAX_SHIPS) {
+			throw new IllegalArgumentException("fleet must have 1 - " + MAX_SHIPS + " ships");
+		}
+		String[] names = new String[entries.length];
+		int[] lengths = new int[entries.length];
+		for (int s = 0; s < entries.length; s++) {
+			int colon = entries[s].lastIndexOf(':');
+			if (colon < 1) {
+				throw new IllegalArgumentException("ship " + entries[s] + " must be written as name:length");
+			}
+			names[s] = entries[s].substring(0, colon).trim();
+			lengths[s] = Integer.parseInt(entries[s].substring(colon + 1).trim());
+			if (lengths[s] < 1 || names[s].isEmpty() || names[s].contains(" ") || names[s].equals("-")) {
+				throw new IllegalArgumentException("ship " + entries[s] + " needs a one-word name and a positive length");
+			}
+		}
+		shipNames = names;
+		shipLengths = lengths;
+	}
+
+	/**
+	 * Writes the fleet in the text form read by setFleet
+	 *
+	 * @return ship names and lengths, separated by commas
+	 */
+	public String getFleet() {
+		StringBuilder fleet = new StringBuilder();
+		for (int s = 0; s < shipNames.length; s++) {
+			fleet.append(s > 0 ? "," : "").append(shipNames[s]).append(':').append(shipLengths[s]);
+		}
+		return fleet.toString();
+	}
+
+	/**
+	 * Checks that the fleet can be placed on the board: every ship is shorter than both sides (the placement algorithms choose an orientation first)
+	 * and the ships cover at most half of the cells, so random placement always finishes quickly
+	 */
+	public void validate() {
+		int cells = 0;
+		for (int s = 0; s < shipLengths.length; s++) {
+			if (shipLengths[s] >= Math.min(rows, columns)) {
+				throw new IllegalArgumentException(shipNames[s] + " of length " + shipLengths[s] + " does not fit a " + rows + "x" + columns + " board in both orientations");
+			}
+			cells += shipLengths[s];
+		}
+		if (cells > rows * columns / 2) {
+			throw new IllegalArgumentException("fleet covers " + cells + " cells, more than half of the " + rows + "x" + columns + " board");
+		}
+	}
+
+	/**
+	 * Copies the profile, so a tuned copy keeps the board and fleet
+	 *
+	 * @return copy
+	 */
+	public AIProfile copy() {
+		AIProfile copy = new AIProfile(parityGuesses, parityModulus, missWeight, hitWeight);
+		copy.rows = rows;
+		copy.columns = columns;
+		copy.shipNames = shipNames;
+		copy.shipLengths = shipLengths;
+		return copy;
+	}
+
+	/**
+	 * Loads a profile from a properties file; missing keys keep their default values (a 10x10 board with the standard fleet)
+	 *
+	 * @param path - properties file to read
+	 * @return loaded profile
+	 */
+	public static AIProfile load(Path path) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(path)) {
+			properties.load(reader);
+		}
+
+		AIProfile profile = defaults();
+		profile.setParityGuesses(Integer.parseInt(properties.getProperty(PARITY_GUESSES, Integer.toString(profile.getParityGuesses()))));
+		profile.setParityModulus(Integer.parseInt(properties.getProperty(PARITY_MODULUS, Integer.toString(profile.getParityModulus()))));
+		profile.setMissWeight(Double.parseDouble(properties.getProperty(MISS_WEIGHT, Double.toString(profile.getMissWeight()))));
+		profile.setHitWeight(Double.parseDouble(properties.getProperty(HIT_WEIGHT, Double.toString(profile.getHitWeight()))));
+		try {
+			profile.setBoardSize(Integer.parseInt(properties.getProperty(ROWS, Integer.toString(profile.getRows()))),
+					Integer.parseInt(properties.getProperty(COLUMNS, Integer.toString(profile.getColumns()))));
+			profile.setFleet(properties.getProperty(FLEET, profile.getFleet()));
+			profile.validate();
+		}
+		catch (IllegalArgumentException e) {
+			throw new IOException(path + ": " + e.getMessage(), e);
+		}
+		return profile;
+	}
+
+	/**
+	 * Saves the profile to a properties file
+	 *
+	 * @param path - properties file to write
+	 * @param comment - comment written at the top of the file
+	 */
+	public void save(Path path, String comment) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty(PARITY_GUESSES, Integer.toString(parityGuesses));
+		properties.setProperty(PARITY_MODULUS, Integer.toString(parityModulus));
+		properties.setProperty(MISS_WEIGHT, Double.toString(missWeight));
+		properties.setProperty(HIT_WEIGHT, Double.toString(hitWeight));
+		properties.setProperty(ROWS, Integer.toString(rows));
+		properties.setProperty(COLUMNS, Integer.toString(columns));
+		properties.setProperty(FLEET, getFleet());
+		try (Writer writer = Files.newBufferedWriter(path)) {
+			properties.store(writer, comment);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return PARITY_GUESSES + "=" + parityGuesses + " " + PARITY_MODULUS + "=" + parityModulus + " " + MISS_WEIGHT + "=" + missWeight + " " + HIT_WEIGHT + "=" + hitWeight + " " + ROWS + "=" + rows + " " + COLUMNS + "=" + columns
+				+ " " + FLEET + "=" + getFleet();
+	}
+
+}
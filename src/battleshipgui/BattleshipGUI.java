@@ -12,7 +12,15 @@ import java.util.ArrayList;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.BufferedWriter;
+import java.nio.file.Paths;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -20,10 +28,11 @@ import java.awt.event.ActionListener;
 import javax.swing.*;
 
 public class MainClass extends JFrame{
+	private static final long serialVersionUID = 1L;
 	static String filename = "BattleshipBoard.txt";
-	static boolean gameOver = false;
+	static volatile boolean gameOver = false;
 	static XYCoordinate lastHit = new XYCoordinate();
-	static int numGuesses = 0;
+	static volatile int numGuesses = 0;
 	static boolean targetMode = true;
 	static boolean playerFirst = true;
 	static String level = "";
@@ -34,35 +43,53 @@ public class MainClass extends JFrame{
 	static ArrayList<Integer> XGuesses = new ArrayList<Integer>();
 	static ArrayList<Character> YGuesses = new ArrayList<Character>();
 	ArrayList<XYCoordinate> coordinatesGuessed = new ArrayList<XYCoordinate>();
-	static int[] shipHitCount = new int[5];
+	static AIProfile profile = AIProfile.defaults();
+	// board size and fleet come from the profile; set again from the loaded profile when the window is created
+	static int rows = profile.getRows();
+	static int columns = profile.getColumns();
+	static Ship[] ships = profile.createShips();
+	static int[] shipHitCount = new int[ships.length];
 	static char unknown = '?';
-	static int boardLength = 10;
-	static int numShips = 5;
-	static int longestShipLength = 5;
 	static char water = '-';
-	static Ship[] ships = new Ship[numShips];
 
 
 
-	static ArrayList<JButton> AIButton = new ArrayList<JButton>();
-	static ArrayList<JButton> playerButton = new ArrayList<JButton>();
-	//	char[][] board = new char[boardLength][boardLength];
-	static Block[][] computerBoard = new Block[boardLength][boardLength];
-	static Block[][] userBoard = new Block[boardLength][boardLength];
+	//	char[][] board = new char[rows][columns];
+	static Block[][] computerBoard = new Block[rows][columns];
+	static Block[][] userBoard = new Block[rows][columns];
 
-	static double[][] aiLearningBoard = new double[boardLength][boardLength];
+	static double[][] aiLearningBoard = new double[rows][columns];
 	public XYCoordinate computerGuess;
+
+	// all AI work runs in order on this thread, so the AI's state is only touched there and the window keeps responding while the AI thinks
+	static ExecutorService engineExecutor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "ai-engine");
+		thread.setDaemon(true);
+		return thread;
+	});
+	// receives the progress of the AI's current computation in percent; only set while an engine task runs
+	static volatile IntConsumer engineProgress;
+	// the AI's latest cancellable computation and its pondering, stopped by cancelEngineWork
+	transient Future<?> engineTask;
+	transient Future<?> ponderTask;
+	int engineTasksRunning = 0;
+	int cancellableTasksRunning = 0;
+	int engineGeneration = 0;
+	// next guess computed in the background while the user picks a shot; only used on the engine thread
+	transient XYCoordinate ponderedGuess;
+	transient Block[][] ponderedBoard;
 	
 	/**
 	 * Initializes and returns the board of Blocks the user will refer to while guessing
 	 *
-	 * @param boardLength - board dimensions
+	 * @param rows - number of rows of the board
+	 * @param columns - number of columns of the board
 	 * @return 2D Block array (board) that user will guess from
 	 */
-	public static Block[][] initializeUserBoard(int boardLength) {
-		Block[][] userBoard = new Block[boardLength][boardLength];
-		for (int r = 0; r < boardLength; r++) {
-			for (int c = 0; c < boardLength; c++) {
+	public static Block[][] initializeUserBoard(int rows, int columns) {
+		Block[][] userBoard = new Block[rows][columns];
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
 				userBoard[r][c] = new Block(c + 1, intToLetter(r), '?');
 			}
 		}
@@ -115,6 +142,28 @@ public class MainClass extends JFrame{
 		return index;
 	}
 
+	/**
+	 * Returns a random column index with value weighting implemented
+	 *
+	 * @param board - 2D double array of values to be selected from
+	 * @return index of chosen random weighted column
+	 */
+	public static int weightedRandomColumn(double[][] board) {
+		double totalWeight = 0;
+		for (int c = 0; c < board[0].length; c++) {
+			totalWeight += board[0][c];
+		}
+
+		int index = 0;
+		for (double r = Math.random() * totalWeight; index < board[0].length - 1; ++index) {
+			r -= board[0][index];
+			if (r <= 0) {
+				break;
+			}
+		}
+		return index;
+	}
+
 	/**
 	 * Generates heat map/probability map for all ships that have not been sunk
 	 *
@@ -125,11 +174,11 @@ public class MainClass extends JFrame{
 	 * @return 2D double array of total probability values
 	 */
 	public static double[][] generateOverallHeatMap(Block[][] board, char water, Ship[] ships) {
-		double[][] heatMap = new double[board.length][board.length];
+		double[][] heatMap = new double[board.length][board[0].length];
 		for (int s = 0; s < ships.length; s++) {
 			double[][] shipHeatMap = generateHeatMapPerShip(board, water, ships[s].getLength());
 			for (int r = 0; r < board.length; r++) {
-				for (int c = 0; c < board.length; c++) {
+				for (int c = 0; c < board[r].length; c++) {
 					heatMap[r][c] += shipHeatMap[r][c];
 				}
 			}
@@ -146,20 +195,20 @@ public class MainClass extends JFrame{
 	 */
 	public static void expertPlaceShips(Block[][] board, Ship[] ships, char water) {
 		for (int r = 0; r < board.length; r++) {
-			for (int c = 0; c < board.length; c++) {
+			for (int c = 0; c < board[r].length; c++) {
 				board[r][c] = new Block(r, intToLetter(c), water);
 			}
 		}
 
 		double[][] heatMap = generateOverallHeatMap(board, water, ships);
 		for (int r = 0; r < heatMap.length; r++) {
-			for (int c = 0; c < heatMap.length; c++) {
+			for (int c = 0; c < heatMap[r].length; c++) {
 				heatMap[r][c] = 1 / heatMap[r][c];
 			}
 		}
 
 		int shipsPlaced = 0;
-		while (shipsPlaced < 5) {
+		while (shipsPlaced < ships.length) {
 			boolean validPlacement = false;
 			String orientation;
 			int zeroOrOne = (int)(Math.random()*2);
@@ -176,8 +225,8 @@ public class MainClass extends JFrame{
 				if (orientation.equals("horizontal")) {
 					while (true) {
 						xIndex = weightedRandom(heatMap);
-						yIndex = weightedRandom(heatMap);
-						if (yIndex < board.length - ships[shipsPlaced].getLength()) {
+						yIndex = weightedRandomColumn(heatMap);
+						if (yIndex < board[0].length - ships[shipsPlaced].getLength()) {
 							break;
 						}
 					}
@@ -198,7 +247,7 @@ public class MainClass extends JFrame{
 				} else {
 					while (true) {
 						xIndex = weightedRandom(heatMap);
-						yIndex = weightedRandom(heatMap);
+						yIndex = weightedRandomColumn(heatMap);
 						if (xIndex < board.length - ships[shipsPlaced].getLength()) {
 							break;
 						}
@@ -225,16 +274,16 @@ public class MainClass extends JFrame{
 		}
 
 		try(BufferedWriter writer = new BufferedWriter(new FileWriter(filename))){
-			for(int i = 0; i < boardLength;i++) {
-				for(int j = 0; j < boardLength; j++) {
+			for(int i = 0; i < board.length;i++) {
+				for(int j = 0; j < board[i].length; j++) {
 					writer.write(board[i][j]+"");
 				}
 				writer.newLine();
 			}
-			System.out.println("The board written to the file");
+			Log.info("AI ship placement written to {}", filename);
 		}
 		catch(IOException e) {
-			e.printStackTrace();
+			Log.error("could not write the AI's ship placement: {}", e);
 		}
 	}
 
@@ -250,8 +299,8 @@ public class MainClass extends JFrame{
 		char randomY = 0;
 		XYCoordinate xyCoordinate;
 		while (true) {
-			randomX = (int) (Math.random()*10) + 1;
-			randomYIdx = (int) (Math.random()*10);
+			randomX = (int) (Math.random()*board[0].length) + 1;
+			randomYIdx = (int) (Math.random()*board.length);
 			randomY = intToLetter(randomYIdx);
 			xyCoordinate = new XYCoordinate(randomX, randomYIdx);
 			if (!coordinatesGuessed.contains(xyCoordinate)){
@@ -272,11 +321,11 @@ public class MainClass extends JFrame{
 	 * @return 2D double array of probability values
 	 */
 	public static double[][] generateHeatMapPerShip(Block[][] board, char water, int shipLength) {
-		double[][] heatMap = new double[board.length][board.length];
+		double[][] heatMap = new double[board.length][board[0].length];
 		int sum = 0;
 
 		for (int r = 0; r < board.length; r++) {
-			for (int c = 0; c < board.length; c++) {
+			for (int c = 0; c < board[r].length; c++) {
 
 				// horizontal
 				boolean validPlacement = true;
@@ -322,7 +371,7 @@ public class MainClass extends JFrame{
 		}
 
 		for (int r = 0; r < board.length; r++) {
-			for (int c = 0; c < board.length; c++) {
+			for (int c = 0; c < board[r].length; c++) {
 				heatMap[r][c] = heatMap[r][c] / sum;
 			}
 		}
@@ -340,20 +389,37 @@ public class MainClass extends JFrame{
 	 * @return 2D double array of total probability values
 	 */
 	public static double[][] generateOverallHeatMap(Block[][] board, Ship[] ships, int[] shipHitCount, char water) {
-		double[][] heatMap = new double[board.length][board.length];
+		double[][] heatMap = new double[board.length][board[0].length];
 		for (int s = 0; s < ships.length; s++) {
+			reportProgress(s * 100 / ships.length);
 			if (ships[s].getLength() != shipHitCount[s]) {
 				double[][] shipHeatMap = generateHeatMapPerShip(board, water, ships[s].getLength());
 				for (int r = 0; r < board.length; r++) {
-					for (int c = 0; c < board.length; c++) {
+					for (int c = 0; c < board[r].length; c++) {
 						heatMap[r][c] += shipHeatMap[r][c];
 					}
 				}
 			}
 		}
+		reportProgress(100);
 		return heatMap;
 	}
 
+	/**
+	 * Reports the progress of the AI's computation and stops it if it was cancelled
+	 *
+	 * @param percent - how much of the computation is done
+	 */
+	public static void reportProgress(int percent) {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new CancellationException();
+		}
+		IntConsumer listener = engineProgress;
+		if (listener != null) {
+			listener.accept(percent);
+		}
+	}
+
 
 	/**
 	 * Hunts a coordinate using the parity method: targets only certain coordinates in which ship of certain length must reside upon
@@ -366,12 +432,11 @@ public class MainClass extends JFrame{
 		XYCoordinate guessCoordinate = new XYCoordinate();
 
 		while (true) {
-			int randomX = (int) (Math.random()*10), randomYInt = (int) (Math.random()*10);
-			char randomY = intToLetter(randomYInt);
-			if (((randomX + randomYInt + 1) % longestShipLength == 0) && (board[randomX][randomYInt].getIsShot() == false)) {
+			int randomX = (int) (Math.random()*board[0].length), randomYInt = (int) (Math.random()*board.length);
+			if (((randomX + randomYInt + 1) % longestShipLength == 0) && (board[randomYInt][randomX].getIsShot() == false)) {
 				guessCoordinate.setX(randomX);
 				guessCoordinate.setY(randomYInt);
-				board[randomX][randomYInt].setIsShot(true);
+				board[randomYInt][randomX].setIsShot(true);
 				break;
 			}
 		}
@@ -396,7 +461,7 @@ public class MainClass extends JFrame{
 		int guessY = 0;
 
 		for (int r = 0; r < board.length; r++) {
-			for (int c = 0; c < board.length; c++) {
+			for (int c = 0; c < board[r].length; c++) {
 				if (heatMap[r][c] > heatMap[guessY][guessX]) {
 					guessX = c;
 					guessY = r;
@@ -411,7 +476,7 @@ public class MainClass extends JFrame{
 
 		guessCoordinate.setX(guessX);
 		guessCoordinate.setY(guessY);
-		board[guessX][guessY].setIsShot(true);
+		board[guessY][guessX].setIsShot(true);
 
 		return guessCoordinate;
 	}
@@ -443,7 +508,7 @@ public class MainClass extends JFrame{
 			if (targetShip == false) {
 				if ((shipHitCount[s] > 0) && (shipHitCount[s] < ships[s].getLength())) {
 					for (int r = 0; r < board.length; r++) {
-						for (int c = 0; c < board.length; c++) {
+						for (int c = 0; c < board[r].length; c++) {
 							if (board[r][c].getOccupation() == intToLetter(s)) {
 								targetShip = true;
 								targetShipIndex = s;
@@ -518,7 +583,7 @@ public class MainClass extends JFrame{
 				guessCoordinate.setY(lastHitY + 1);
 			}
 			// shoot right
-			else if ((lastHitX != board.length) && (board[lastHitY][lastHitX + 1].getOccupation() == unknown) && canShootHorizontal) {
+			else if ((lastHitX != board[0].length) && (board[lastHitY][lastHitX + 1].getOccupation() == unknown) && canShootHorizontal) {
 				guessCoordinate.setX(lastHitX + 1);
 				guessCoordinate.setY(lastHitY);
 			}
@@ -542,12 +607,12 @@ public class MainClass extends JFrame{
 			guessCoordinate.setY(lastShip.getY() + 1);
 		}
 		// horizontal - shoot to the right of last ship segment
-		else if ((lastShip.getX() < board.length) && (firstShip.getY() == lastShip.getY()) && (board[lastShip.getY()][lastShip.getX() + 1].getOccupation() == unknown)) {
+		else if ((lastShip.getX() < board[0].length) && (firstShip.getY() == lastShip.getY()) && (board[lastShip.getY()][lastShip.getX() + 1].getOccupation() == unknown)) {
 			guessCoordinate.setX(lastShip.getX() + 1);
 			guessCoordinate.setY(lastShip.getY());
 		}
 
-		board[guessCoordinate.getX()][guessCoordinate.getY()].setIsShot(true);
+		board[guessCoordinate.getY()][guessCoordinate.getX()].setIsShot(true);
 
 		return guessCoordinate;
 	}
@@ -570,8 +635,8 @@ public class MainClass extends JFrame{
 			int final_y = -1;
 			int final_x = -1;
 			double maxProbablity = -99999.9999;
-			for(int y = 0; y < boardLength; y++){
-				for(int x = 0; x < boardLength; x++){
+			for(int y = 0; y < rows; y++){
+				for(int x = 0; x < columns; x++){
 					if (aiLearningBoard[y][x] > maxProbablity){
 						maxProbablity = aiLearningBoard[y][x];
 						final_y = y;
@@ -581,14 +646,14 @@ public class MainClass extends JFrame{
 			}
 	
 			if (final_x == -1 || final_y == -1 || maxProbablity <= 0){
-				final_y = (int) (Math.random()*10);
-				final_x = (int) (Math.random()*10);
+				final_y = (int) (Math.random()*rows);
+				final_x = (int) (Math.random()*columns);
 			}
 			guessCoordinate.setX(final_x+1);
 			guessCoordinate.setY(final_y);
 		}
-		else if (numGuesses < 10) {
-			guessCoordinate = huntParity(board, 4);
+		else if (numGuesses < profile.getParityGuesses()) {
+			guessCoordinate = huntParity(board, profile.getParityModulus());
 		}
 		else {
 			guessCoordinate = huntHeatMap(board, ships, shipHitCount, unknown);
@@ -605,13 +670,13 @@ public class MainClass extends JFrame{
 	 */
 	public static void placeShipsSimple(Block[][] board, Ship[] ships, char water) {
 		for (int r = 0; r < board.length; r++) {
-			for (int c = 0; c < board.length; c++) {
+			for (int c = 0; c < board[r].length; c++) {
 				board[r][c] = new Block(r, intToLetter(c), water);
 			}
 		}
 
 		int shipsPlaced = 0;
-		while (shipsPlaced < 5) {
+		while (shipsPlaced < ships.length) {
 			boolean validPlacement = false;
 			String orientation;
 			int zeroOrOne = (int)(Math.random()*2);
@@ -625,7 +690,7 @@ public class MainClass extends JFrame{
 				XYCoordinate initialCoordinate;
 				validPlacement = true;
 				if (orientation.equals("horizontal")) {
-					initialCoordinate = new XYCoordinate((int)(Math.random()*(board.length - ships[shipsPlaced].getLength())), (int)(Math.random()*board.length));
+					initialCoordinate = new XYCoordinate((int)(Math.random()*(board[0].length - ships[shipsPlaced].getLength())), (int)(Math.random()*board.length));
 
 					for (int c = initialCoordinate.getX(); c < initialCoordinate.getX() + ships[shipsPlaced].getLength(); c++) {
 						if (board[initialCoordinate.getY()][c].getOccupation() != water) {
@@ -640,7 +705,7 @@ public class MainClass extends JFrame{
 					}
 
 				} else {
-					initialCoordinate = new XYCoordinate((int)(Math.random()*board.length), (int)(Math.random()*(board.length - ships[shipsPlaced].getLength())));
+					initialCoordinate = new XYCoordinate((int)(Math.random()*board[0].length), (int)(Math.random()*(board.length - ships[shipsPlaced].getLength())));
 
 					for (int r = initialCoordinate.getY(); r < initialCoordinate.getY() + ships[shipsPlaced].getLength(); r++) {
 						if (board[r][initialCoordinate.getX()].getOccupation() != water) {
@@ -655,22 +720,22 @@ public class MainClass extends JFrame{
 					}
 				}
 
-				System.out.println(intToLetter(initialCoordinate.getY()) + "" + (initialCoordinate.getX() + 1) + " " + ships[shipsPlaced].getOrientation());
+				Log.debug("placement attempt {}{} {}", intToLetter(initialCoordinate.getY()), initialCoordinate.getX() + 1, ships[shipsPlaced].getOrientation());
 
 			} while(validPlacement != true);
 			shipsPlaced++;
 		}
 		try(BufferedWriter writer = new BufferedWriter(new FileWriter(filename))){
-			for(int i = 0; i < boardLength;i++) {
-				for(int j = 0; j < boardLength; j++) {
+			for(int i = 0; i < board.length;i++) {
+				for(int j = 0; j < board[i].length; j++) {
 					writer.write(board[i][j].getOccupation()+" ");
 				}
 				writer.newLine();
 			}
-			System.out.println("The board written to the file");
+			Log.info("AI ship placement written to {}", filename);
 		}
 		catch(IOException e) {
-			e.printStackTrace();
+			Log.error("could not write the AI's ship placement: {}", e);
 		}
 	}
 	
@@ -687,27 +752,27 @@ public class MainClass extends JFrame{
 				minShipLength = s.getLength();
 			}
 		}
-		if (x + minShipLength < boardLength){
-			for(int i = x; i < boardLength; i++){
-				aiLearningBoard[y][i] -= 0.5;
+		if (x + minShipLength < columns){
+			for(int i = x; i < columns; i++){
+				aiLearningBoard[y][i] -= profile.getMissWeight();
 			}
 		}
 
 		if (x - minShipLength < -1){
 			for(int i = x; i >= 0; i--){
-				aiLearningBoard[y][i] -= -0.5;
+				aiLearningBoard[y][i] -= -profile.getMissWeight();
 			}
 		}
 
-		if (y + minShipLength < boardLength){
-			for(int i = y; i < boardLength; i++){
-				aiLearningBoard[i][x] -= 0.5;
+		if (y + minShipLength < rows){
+			for(int i = y; i < rows; i++){
+				aiLearningBoard[i][x] -= profile.getMissWeight();
 			}
 		}
 
 		if (y - minShipLength < -1){
 			for(int i = y; i >= 0; i--){
-				aiLearningBoard[i][x] -= -0.5;
+				aiLearningBoard[i][x] -= -profile.getMissWeight();
 			}
 		}
 	}
@@ -722,11 +787,11 @@ public class MainClass extends JFrame{
 		aiLearningBoard[y][x] = -9999.9999;
 		int shipLength = ship.getLength();
 
-		if (x + shipLength > boardLength){
+		if (x + shipLength > columns){
 			// do nothing
 		} else {
 			for(int i = 1; i < shipLength; i++){
-				aiLearningBoard[y][x+i] += (1 / i);
+				aiLearningBoard[y][x+i] += profile.getHitWeight() * (1.0 / i);
 			}
 		}
 
@@ -734,15 +799,15 @@ public class MainClass extends JFrame{
 			// do nothing
 		} else {
 			for(int i = 1; i < shipLength; i++){
-				aiLearningBoard[y][x-i] += (1 / i);
+				aiLearningBoard[y][x-i] += profile.getHitWeight() * (1.0 / i);
 			}
 		}
 
-		if (y + shipLength > boardLength){
+		if (y + shipLength > rows){
 			// do nothing
 		} else {
 			for(int i = 1; i < shipLength; i++){
-				aiLearningBoard[y+i][x] += (1 / i);
+				aiLearningBoard[y+i][x] += profile.getHitWeight() * (1.0 / i);
 			}
 		}
 
@@ -750,7 +815,7 @@ public class MainClass extends JFrame{
 			// do nothing
 		} else {
 			for(int i = 1; i < shipLength; i++){
-				aiLearningBoard[y-i][x] += (1 / i);
+				aiLearningBoard[y-i][x] += profile.getHitWeight() * (1.0 / i);
 			}
 		}
 	}
@@ -763,9 +828,10 @@ public class MainClass extends JFrame{
 	 * @param shipHitCount - integer array of number of shots that have hit each ship
 	 * @param coordinateShot - coordinate that AI guessed to shot at
 	 * @param shot - whether AI's shot was a hit or miss
+	 * @return text to show on the user's board where the AI shot
 	 */
 
-	public static void checkComputerGuess(Block[][] unknownBoard, Ship[] ships, ArrayList<Boolean> shotsHit, int[] shipHitCount, XYCoordinate coordinateShot, String shot) {
+	public static String checkComputerGuess(Block[][] unknownBoard, Ship[] ships, ArrayList<Boolean> shotsHit, int[] shipHitCount, XYCoordinate coordinateShot, String shot) {
 		int hitX = coordinateShot.getX();
 		int hitY = coordinateShot.getY();
 		String type = "---";
@@ -807,7 +873,6 @@ public class MainClass extends JFrame{
 			else {
 				targetMode = true;
 			}
-			playerButton.get(hitY * boardLength + hitX - 1 ).setText(type);
 		}
 		else {
 			aiMissLearn(hitX-1, hitY);
@@ -815,11 +880,11 @@ public class MainClass extends JFrame{
 			lastHit.setY(hitY);
 			shotsHit.add(false);
 			unknownBoard[coordinateShot.getY()][coordinateShot.getX()].setOccupation('-');
-			//playerButton.get(coordinateShot.getY() * boardLength + coordinateShot.getX() - 1 ).setText("---");
-			playerButton.get(hitY * boardLength + hitX - 1 ).setText(type);
+			//playerButton.get(coordinateShot.getY() * columns + coordinateShot.getX() - 1 ).setText("---");
 		}
 		
 		numGuesses++;
+		return type;
 	}
 
 
@@ -852,7 +917,6 @@ public class MainClass extends JFrame{
 	}
 
 
-	char[] yAxisList = {'A','B','C','D','E','F','G','H','I','J'};
 
 	JPanel mainPanel;
 
@@ -868,6 +932,8 @@ public class MainClass extends JFrame{
 	JPanel boardPanel;
 	JPanel AIBoardPanel;
 	JPanel playerBoardPanel;
+	BoardView AIBoardView;
+	BoardView playerBoardView;
 
 
 	JPanel informationPanel;
@@ -886,6 +952,9 @@ public class MainClass extends JFrame{
 	JLabel typeLabel;
 	JComboBox typeBox;
 	JLabel AIGuess;
+	JProgressBar aiProgress;
+	JCheckBox heatMapBox;
+	transient HeatMapOverlay heatMapOverlay;
 
 	JPanel resultPanel;
 	static JLabel resultLabel;
@@ -900,45 +969,21 @@ public class MainClass extends JFrame{
 	 * Setup the GUI
 	 */
 	public void setUp() {
-		ships[0] = new Ship("Carrier", 5);
-		ships[1] = new Ship("Battleship", 4);
-		ships[2] = new Ship("Cruiser", 3);
-		ships[3] = new Ship("Submarine", 3);
-		ships[4] = new Ship("Destroyer", 2);
-		AIBoardPanel.setLayout(new GridLayout(boardLength+1,boardLength+1));
-		playerBoardPanel.setLayout(new GridLayout(boardLength+1,boardLength+1));
-		for(int i = 0; i < boardLength+1; i++) {
-			for(int j = 0; j < boardLength+1; j++) {
-				if(i == 0 && j == 0) {
-
-					AIBoardPanel.add(new JLabel(""));
-					playerBoardPanel.add(new JLabel(""));
-				}
-				else if(i == 0) {
-					AIBoardPanel.add(new JLabel(Integer.toString(j)));
-					playerBoardPanel.add(new JLabel(Integer.toString(j)));
-				}
-				else if(j == 0){
-					JLabel label1 = new JLabel(Character.toString(yAxisList[i-1]));
-					label1.setHorizontalAlignment(SwingConstants.RIGHT);
-					AIBoardPanel.add(label1);
-					JLabel label2 = new JLabel(Character.toString(yAxisList[i-1]));
-					label2.setHorizontalAlignment(SwingConstants.RIGHT);
-					playerBoardPanel.add(label2);
-				}
-				else {
-
-
-					JButton AIBlockButton = new JButton();
-					JButton playerBlockButton = new JButton();
-					AIButton.add(AIBlockButton);
-					playerButton.add(playerBlockButton);
-					AIBoardPanel.add(AIBlockButton);
-					playerBoardPanel.add(playerBlockButton);
-
-				}
-			}
-		}
+		// one painted component per board instead of a button per cell
+		AIBoardView = new BoardView(rows, columns);
+		playerBoardView = new BoardView(rows, columns);
+		AIBoardPanel.setLayout(new BorderLayout());
+		playerBoardPanel.setLayout(new BorderLayout());
+		AIBoardPanel.add(AIBoardView, BorderLayout.CENTER);
+		playerBoardPanel.add(playerBoardView, BorderLayout.CENTER);
+		heatMapOverlay = new HeatMapOverlay(rows, columns);
+		playerBoardView.setOverlay(heatMapOverlay);
+
+		// clicking a cell of the AI's board fills in the shot
+		AIBoardView.setCellListener(cell -> {
+			xInput.setText(Integer.toString(cell % columns + 1));
+			yInput.setText(BoardView.rowName(cell / columns));
+		});
 
 	}
 /**
@@ -955,7 +1000,13 @@ public class MainClass extends JFrame{
 		//initialize combo
 		levelBox = new JComboBox<>(new String[] {"","Easy","Hard"});
 		sequenceBox = new JComboBox<>(new String[] {"","AI","Player"});
-		typeBox = new JComboBox<>(new String[] {"","Miss","Carrier","Battleship","Cruiser","Submarine","Destroyer"});
+		String[] answers = new String[ships.length + 2];
+		answers[0] = "";
+		answers[1] = "Miss";
+		for (int s = 0; s < ships.length; s++) {
+			answers[s + 2] = ships[s].getName();
+		}
+		typeBox = new JComboBox<>(answers);
 		//initialize labels
 		titleLabel = new JLabel("Battleship");
 		levelLabel = new JLabel("AI Difficulty:");
@@ -967,6 +1018,9 @@ public class MainClass extends JFrame{
 		yLabel = new JLabel("");
 		typeLabel = new JLabel("Ship:");
 		AIGuess = new JLabel("AI guesses ");
+		aiProgress = new JProgressBar(0, 100);
+		aiProgress.setVisible(false);
+		heatMapBox = new JCheckBox("Show AI heat map");
 		resultLabel = new JLabel("Result:");
 
 		//panels layout
@@ -1006,7 +1060,23 @@ public class MainClass extends JFrame{
 			@Override
 			public void actionPerformed(ActionEvent e) {
 				type =  (String)typeBox.getSelectedItem();
-				checkComputerGuess(userBoard, ships, shotsHit, shipHitCount, computerGuess, type);
+				if (type.equals("") || computerGuess == null) {
+					return;
+				}
+				XYCoordinate guess = computerGuess;
+				String answer = type;
+				runOnEngine("AI is recording your answer...", () -> {
+					String label = checkComputerGuess(userBoard, ships, shotsHit, shipHitCount, guess, answer);
+					publishHeatMap();
+					return label;
+				}, label -> {
+					boolean miss = label.equals("---");
+					playerBoardView.setCell(guess.getY(), guess.getX() - 1, miss ? BoardView.MISS : BoardView.HIT, miss ? 0 : label.charAt(0));
+					AIGuess.setText("AI guessed " + guess.toString());
+				}, false);
+				if ("Hard".equals(levelBox.getSelectedItem())) {
+					ponderTask = engineExecutor.submit(() -> startPondering());
+				}
 			}
 
 		});
@@ -1017,12 +1087,28 @@ public class MainClass extends JFrame{
 				// TODO Auto-generated method stub
 				int num = 0;
 				XYCoordinate guess;
-				Block[][] userBoard = initializeUserBoard(boardLength);
+				Block[][] userBoard = initializeUserBoard(rows, columns);
 				String level = (String)levelBox.getSelectedItem();
 
+				// the AI's current work was for the old difficulty
+				cancelEngineWork();
+
+
+
+
+			}
 
+		});
 
+		heatMapBox.addActionListener(new ActionListener() {
 
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				heatMapOverlay.setEnabled(heatMapBox.isSelected());
+				if (heatMapBox.isSelected()) {
+					engineExecutor.submit(() -> publishHeatMap());
+				}
+				playerBoardView.repaintBoard();
 			}
 
 		});
@@ -1037,25 +1123,18 @@ public class MainClass extends JFrame{
 			 
 			public void actionPerformed(ActionEvent e) {
 				String level = (String)levelBox.getSelectedItem();
-				System.out.println(level);
+				Log.debug("sequence {} at difficulty {}", sequenceBox.getSelectedItem(), level);
 				String selected = (String) sequenceBox.getSelectedItem();
 
 				if (selected.equals("AI")){
 					//System.out.println("run yes");
 					playerFirst = false;
-					if (level.equals("Difficult")){
-						//System.out.println("run yes");
-						computerGuess = expertGuess(userBoard, ships, shotsHit, shipHitCount, lastHit, numGuesses, unknown);
-						System.out.println("diff run");
-					} else {
-						//System.out.println("run yes"); output
-						System.out.println(level); //level is ""
-						computerGuess = simpleGuess(userBoard, coordinatesGuessed);
-					}
-					System.out.println(level+1);
-					System.out.println(computerGuess);
-					AIGuess.setText("AI guesses " + computerGuess.toString());
-					playerGuessLabel.setText("ROUND: " + String.valueOf(numGuesses));
+					runOnEngine("AI is thinking...", () -> nextComputerGuess(level), guess -> {
+						computerGuess = guess;
+						Log.debug("AI guess {}", computerGuess);
+						AIGuess.setText("AI guesses " + computerGuess.toString());
+						playerGuessLabel.setText("ROUND: " + String.valueOf(numGuesses));
+					}, true);
 				}
 			}
 		});
@@ -1077,6 +1156,8 @@ public class MainClass extends JFrame{
 		resultPanel.add(resultLabel);
 		
 		inputPanel1.add(AIGuess);
+		inputPanel1.add(aiProgress);
+		inputPanel1.add(heatMapBox);
 		inputPanel1.add(typeLabel);
 		inputPanel1.add(typeBox);
 
@@ -1097,9 +1178,10 @@ public class MainClass extends JFrame{
 				XYCoordinate userGuess = new XYCoordinate();
 
 				userGuess.setX(Integer.parseInt(xValue));
-				userGuess.setY(letterToInt(yValue.charAt(0)));
+				userGuess.setY(BoardView.rowIndex(yValue.trim().toUpperCase()));
 
 				shipIndex = checkUserGuess(computerBoard, ships, userGuess);
+				AIBoardView.setCell(userGuess.getY(), userGuess.getX() - 1, shipIndex != -1 ? BoardView.HIT : BoardView.MISS, shipIndex != -1 ? intToLetter(shipIndex) : 0);
 
 				if(shipIndex!=-1) {
 					resultLabel.setText("Result: HIT, "+ships[shipIndex]);
@@ -1107,7 +1189,7 @@ public class MainClass extends JFrame{
 				}
 				else {
 					resultLabel.setText("Result: MISS");
-					//playerButton.get(Integer.parseInt(yValue) * boardLength + Integer.parseInt(xValue) - 1 ).setText("---");
+					//playerButton.get(Integer.parseInt(yValue) * columns + Integer.parseInt(xValue) - 1 ).setText("---");
 					//playerButton.get(xInt*userBoard.length+yInt).setText("-");
 				}
 
@@ -1115,14 +1197,13 @@ public class MainClass extends JFrame{
 					resultLabel.setText("!GAME OVER!");
 				}
 				level = (String)levelBox.getSelectedItem();
-				if (level.equals("Difficult")){
-					computerGuess = expertGuess(userBoard, ships, shotsHit, shipHitCount, lastHit, numGuesses, unknown);
-				} else {
-					computerGuess = simpleGuess(userBoard, coordinatesGuessed);
-				}
-				System.out.println(computerGuess);
-				AIGuess.setText("AI guess:" + computerGuess.toString());
-				playerGuessLabel.setText("ROUND: " + String.valueOf(numGuesses));
+				String currentLevel = level;
+				runOnEngine("AI is thinking...", () -> nextComputerGuess(currentLevel), guess -> {
+					computerGuess = guess;
+					Log.debug("AI guess {}", computerGuess);
+					AIGuess.setText("AI guess:" + computerGuess.toString());
+					playerGuessLabel.setText("ROUND: " + String.valueOf(numGuesses));
+				}, true);
 			}
 		});
 		setUp();
@@ -1133,6 +1214,166 @@ public class MainClass extends JFrame{
 
 
 	}
+	/**
+	 * Runs AI work on the engine thread while showing its progress, then hands the result to the event dispatch thread
+	 * - input that depends on the AI is disabled until the work is done
+	 * - work that completes always has its result shown, as it may have changed the game; cancelled work changed nothing and shows nothing
+	 *
+	 * @param status - text shown while the AI works
+	 * @param work - AI computation, run on the engine thread
+	 * @param done - Swing update made with the result, run on the event dispatch thread
+	 * @param cancellable - whether cancelEngineWork may stop the work; only for work that changes nothing until it completes
+	 */
+	public <T> void runOnEngine(String status, Callable<T> work, Consumer<T> done, boolean cancellable) {
+		int generation = engineGeneration;
+		engineTasksRunning++;
+		if (cancellable) {
+			cancellableTasksRunning++;
+		}
+		AIGuess.setText(status);
+		aiProgress.setValue(0);
+		aiProgress.setVisible(true);
+		enterButton.setEnabled(false);
+		typeBox.setEnabled(false);
+
+		Future<?> task = engineExecutor.submit(() -> {
+			engineProgress = percent -> SwingUtilities.invokeLater(() -> aiProgress.setValue(percent));
+			T result = null;
+			boolean completed = false;
+			try {
+				result = work.call();
+				completed = true;
+			}
+			catch (CancellationException e) {
+				// cancelled by cancelEngineWork
+			}
+			catch (Exception e) {
+				Log.error("AI task failed: {}", e);
+			}
+			finally {
+				engineProgress = null;
+			}
+
+			T finalResult = result;
+			boolean finalCompleted = completed;
+			SwingUtilities.invokeLater(() -> {
+				if (finalCompleted) {
+					done.accept(finalResult);
+				}
+				// cancellable work of an earlier generation was no longer counted by cancelEngineWork
+				if (cancellable && generation != engineGeneration) {
+					return;
+				}
+				engineTasksRunning--;
+				if (cancellable) {
+					cancellableTasksRunning--;
+				}
+				if (engineTasksRunning == 0) {
+					aiProgress.setVisible(false);
+					enterButton.setEnabled(true);
+					typeBox.setEnabled(true);
+				}
+			});
+		});
+		if (cancellable) {
+			engineTask = task;
+		}
+	}
+
+	/**
+	 * Stops the AI's current cancellable computation and its pondering; work that changes the game, such as recording an answer, still completes
+	 */
+	public void cancelEngineWork() {
+		if (engineTask != null) {
+			engineTask.cancel(true);
+		}
+		if (ponderTask != null) {
+			ponderTask.cancel(true);
+		}
+		engineGeneration++;
+		engineTasksRunning -= cancellableTasksRunning;
+		cancellableTasksRunning = 0;
+		if (engineTasksRunning == 0) {
+			aiProgress.setVisible(false);
+			enterButton.setEnabled(true);
+			typeBox.setEnabled(true);
+		}
+		// pondering that already finished was for the old difficulty
+		engineExecutor.submit(() -> {
+			ponderedGuess = null;
+		});
+	}
+
+	/**
+	 * Chooses the AI's next guess, using the guess pondered while the user was shooting if there is one; runs on the engine thread
+	 *
+	 * @param level - AI difficulty
+	 * @return XY coordinate to be guessed
+	 */
+	public XYCoordinate nextComputerGuess(String level) {
+		if (level.equals("Hard")) {
+			XYCoordinate pondered = takePonderedGuess();
+			if (pondered != null) {
+				return pondered;
+			}
+			return expertGuess(userBoard, ships, shotsHit, shipHitCount, lastHit, numGuesses, unknown);
+		}
+		return simpleGuess(userBoard, coordinatesGuessed);
+	}
+
+	/**
+	 * Draws the probability map the AI will guess from over the user's board, if the overlay is shown; runs on the engine thread
+	 */
+	public void publishHeatMap() {
+		if (!heatMapOverlay.getEnabled()) {
+			return;
+		}
+		heatMapOverlay.update(targetMode ? aiLearningBoard : generateOverallHeatMap(userBoard, ships, shipHitCount, unknown));
+		playerBoardView.repaintBoard();
+	}
+
+	/**
+	 * Computes the AI's next guess on a copy of the user's board, so the guess is ready when the user has shot; runs on the engine thread
+	 */
+	public void startPondering() {
+		ponderedGuess = null;
+		if (gameOver) {
+			return;
+		}
+		ponderedBoard = new Block[rows][columns];
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				ponderedBoard[r][c] = new Block(c + 1, intToLetter(r), userBoard[r][c].getOccupation());
+				ponderedBoard[r][c].setIsShot(userBoard[r][c].getIsShot());
+			}
+		}
+		try {
+			ponderedGuess = expertGuess(ponderedBoard, ships, shotsHit, shipHitCount, lastHit, numGuesses, unknown);
+		}
+		catch (CancellationException e) {
+			// the difficulty changed; the guess is computed when needed
+		}
+	}
+
+	/**
+	 * Takes the guess computed by startPondering and marks it on the user's board; runs on the engine thread
+	 *
+	 * @return XY coordinate to be guessed, or null if there is no pondered guess
+	 */
+	public XYCoordinate takePonderedGuess() {
+		XYCoordinate guess = ponderedGuess;
+		if (guess == null) {
+			return null;
+		}
+		ponderedGuess = null;
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				userBoard[r][c].setIsShot(ponderedBoard[r][c].getIsShot());
+			}
+		}
+		return guess;
+	}
+
 /**
  * If the game is over
  * @param computerBoard
@@ -1152,34 +1393,28 @@ public class MainClass extends JFrame{
 		ArrayList<Boolean> shotsHit = new ArrayList<Boolean>();
 		ArrayList<Integer> XGuesses = new ArrayList<Integer>();
 		ArrayList<Character> YGuesses = new ArrayList<Character>();
-		int[] shipHitCount = new int[5];
 		char unknown = '?';
-
-		int boardLength = 10;
-		int numShips = 5;
-		int longestShipLength = 5;
 		char water = '-';
-//	char[][] board = new char[boardLength][boardLength];
 
-		Ship[] ships = new Ship[numShips];
-		ships[0] = new Ship("Carrier", 5);
-		ships[1] = new Ship("Battleship", 4);
-		ships[2] = new Ship("Cruiser", 3);
-		ships[3] = new Ship("Submarine", 3);
-		ships[4] = new Ship("Destroyer", 2);
+		// board size and fleet of the loaded profile
+		rows = profile.getRows();
+		columns = profile.getColumns();
+		ships = profile.createShips();
+		shipHitCount = new int[ships.length];
 
 		// setUp();
 
-		computerBoard = initializeUserBoard(boardLength);
+		computerBoard = initializeUserBoard(rows, columns);
 		placeShipsSimple(computerBoard, ships, water);
 
 
-		userBoard = initializeUserBoard(boardLength);
+		userBoard = initializeUserBoard(rows, columns);
 
 //
-		for(int a = 0; a < boardLength; a++){
-			aiLearningBoard[a] = new double[boardLength];
-			for(int b = 0; b < boardLength; b++){
+		aiLearningBoard = new double[rows][];
+		for(int a = 0; a < rows; a++){
+			aiLearningBoard[a] = new double[columns];
+			for(int b = 0; b < columns; b++){
 				aiLearningBoard[a][b] = 0.0;
 			}
 		}
@@ -1192,9 +1427,20 @@ public class MainClass extends JFrame{
 
 
 	public static void main(String[] args) {
+		Log.configure(Log.INFO);
+
+		// loads tuned AI constants if a profile file is given
+		if (args.length > 0) {
+			try {
+				profile = AIProfile.load(Paths.get(args[0]));
+			}
+			catch (IOException e) {
+				System.out.println("Could not load AI profile " + args[0] + ", using defaults.");
+			}
+		}
 
 		MainClass main = new MainClass();
-		main.initGui();
+		SwingUtilities.invokeLater(main::initGui);
 
 
 
@@ -0,0 +1,240 @@
+/*
+Project: Battleship
+File: BoardView.java
+Description: Paints one board as a single component from a flat array of cell states, repainting only the cells that change and finding the clicked cell arithmetically. Compatible with GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package battleshipgui;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.function.IntConsumer;
+
+import javax.swing.JComponent;
+
+public final class BoardView extends JComponent {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final byte EMPTY = 0;
+	public static final byte MISS = 1;
+	public static final byte HIT = 2;
+	public static final byte SUNK = 3;
+
+	static final Color GRID_COLOR = new Color(70, 90, 120);
+	static final Color[] CELL_COLORS = {new Color(200, 225, 245), new Color(150, 160, 170), new Color(225, 80, 70), new Color(120, 30, 30)};
+	static final int MIN_CELL_SIZE = 8;
+
+	private final int rows;
+	private final int columns;
+	// cell = row * columns + column
+	private final byte[] cellState;
+	private final char[] cellMark;
+	private transient IntConsumer cellListener;
+	private transient HeatMapOverlay overlay;
+
+	/**
+	 * Creates an empty board
+	 *
+	 * @param rows - number of rows
+	 * @param columns - number of columns
+	 */
+	public BoardView(int rows, int columns) {
+		this.rows = rows;
+		this.columns = columns;
+		this.cellState = new byte[rows * columns];
+		this.cellMark = new char[rows * columns];
+		setOpaque(true);
+		setBackground(Color.WHITE);
+		addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				int cell = cellAt(e.getX(), e.getY());
+				if (cell != -1 && cellListener != null) {
+					cellListener.accept(cell);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Changes one cell and repaints only that cell
+	 *
+	 * @param row - row of the cell
+	 * @param column - column of the cell
+	 * @param state - EMPTY, MISS, HIT or SUNK
+	 * @param mark - character drawn in the cell, or 0 for none
+	 */
+	public void setCell(int row, int column, byte state, char mark) {
+		int cell = row * columns + column;
+		if (cellState[cell] == state && cellMark[cell] == mark) {
+			return;
+		}
+		cellState[cell] = state;
+		cellMark[cell] = mark;
+		repaint(cellBounds(row, column));
+	}
+
+	/**
+	 * Draws a probability map over the board while the overlay is enabled
+	 *
+	 * @param newOverlay - overlay to draw, or null for none
+	 */
+	public void setOverlay(HeatMapOverlay newOverlay) {
+		overlay = newOverlay;
+		repaintBoard();
+	}
+
+	/**
+	 * Repaints all cells but not the coordinate labels; safe to call from any thread
+	 */
+	public void repaintBoard() {
+		int size = cellSize();
+		repaint(size, size, size * columns, size * rows);
+	}
+
+	public byte getCellState(int row, int column) {
+		return cellState[row * columns + column];
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Sets what happens when the user clicks a cell
+	 *
+	 * @param listener - receives the clicked cell as row * columns + column
+	 */
+	public void setCellListener(IntConsumer listener) {
+		cellListener = listener;
+	}
+
+	/**
+	 * Finds the cell under a point
+	 *
+	 * @param x - x coordinate in pixels
+	 * @param y - y coordinate in pixels
+	 * @return cell as row * columns + column, or -1 if the point is not on a cell
+	 */
+	public int cellAt(int x, int y) {
+		int size = cellSize();
+		int column = x / size - 1;
+		int row = y / size - 1;
+		if (x < size || y < size || row >= rows || column >= columns) {
+			return -1;
+		}
+		return row * columns + column;
+	}
+
+	/**
+	 * Names a row the way the user types it: A - Z, then AA, AB, ...
+	 *
+	 * @param row - row index
+	 * @return row name
+	 */
+	public static String rowName(int row) {
+		String name = "";
+		for (int r = row + 1; r > 0; r = (r - 1) / 26) {
+			name = (char) ('A' + (r - 1) % 26) + name;
+		}
+		return name;
+	}
+
+	/**
+	 * Converts a row name (A - Z, AA, AB, ...) back to its row index
+	 *
+	 * @param name - row name, in upper case
+	 * @return row index
+	 */
+	public static int rowIndex(String name) {
+		int row = 0;
+		for (int i = 0; i < name.length(); i++) {
+			row = row * 26 + (name.charAt(i) - 'A' + 1);
+		}
+		return row - 1;
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		int size = Math.max(MIN_CELL_SIZE, 480 / (Math.max(rows, columns) + 1));
+		return new Dimension(size * (columns + 1), size * (rows + 1));
+	}
+
+	/**
+	 * Paints only the cells inside the clip, so repainting one changed cell costs the same on any board size
+	 */
+	@Override
+	protected void paintComponent(Graphics g) {
+		int size = cellSize();
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		}
+		g.setColor(getBackground());
+		g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+		// rows and columns shifted by one for the coordinate labels
+		int firstColumn = Math.max(0, clip.x / size);
+		int lastColumn = Math.min(columns, (clip.x + clip.width - 1) / size);
+		int firstRow = Math.max(0, clip.y / size);
+		int lastRow = Math.min(rows, (clip.y + clip.height - 1) / size);
+
+		FontMetrics metrics = g.getFontMetrics();
+		for (int r = firstRow; r <= lastRow; r++) {
+			for (int c = firstColumn; c <= lastColumn; c++) {
+				int x = c * size;
+				int y = r * size;
+				if (r == 0 && c == 0) {
+					continue;
+				}
+				if (r == 0 || c == 0) {
+					String label = r == 0 ? Integer.toString(c) : rowName(r - 1);
+					g.setColor(Color.BLACK);
+					drawCentered(g, metrics, label, x, y, size);
+					continue;
+				}
+
+				int cell = (r - 1) * columns + (c - 1);
+				g.setColor(CELL_COLORS[cellState[cell]]);
+				g.fillRect(x, y, size, size);
+				g.setColor(GRID_COLOR);
+				g.drawRect(x, y, size - 1, size - 1);
+				if (cellMark[cell] != 0 && size >= 2 * MIN_CELL_SIZE) {
+					g.setColor(Color.BLACK);
+					drawCentered(g, metrics, String.valueOf(cellMark[cell]), x, y, size);
+				}
+			}
+		}
+
+		// one pixel per cell, scaled up; drawing respects the clip
+		if (overlay != null && overlay.getEnabled()) {
+			g.drawImage(overlay.latest(), size, size, size * columns, size * rows, null);
+		}
+	}
+
+	private void drawCentered(Graphics g, FontMetrics metrics, String text, int x, int y, int size) {
+		g.drawString(text, x + (size - metrics.stringWidth(text)) / 2, y + (size - metrics.getHeight()) / 2 + metrics.getAscent());
+	}
+
+	private Rectangle cellBounds(int row, int column) {
+		int size = cellSize();
+		return new Rectangle((column + 1) * size, (row + 1) * size, size, size);
+	}
+
+	private int cellSize() {
+		return Math.max(1, Math.min(getWidth() / (columns + 1), getHeight() / (rows + 1)));
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+Project: Battleship
+File: HeatMapOverlay.java
+Description: Turns the AI's probability map into a translucent image drawn over a board, written on the AI's thread and handed to the event dispatch thread without locks. Compatible with GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package battleshipgui;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class HeatMapOverlay {
+
+	static final int LEVELS = 256;
+	static final int ALPHA = 150;
+
+	// colour of every probability level, from cold (blue) to hot (red), computed once
+	static final int[] COLOURS = new int[LEVELS];
+
+	static {
+		for (int level = 0; level < LEVELS; level++) {
+			float heat = level / (float) (LEVELS - 1);
+			int red = Math.round(255 * Math.min(1, 2 * heat));
+			int green = Math.round(255 * (1 - Math.abs(2 * heat - 1)));
+			int blue = Math.round(255 * Math.min(1, 2 * (1 - heat)));
+			COLOURS[level] = ALPHA << 24 | red << 16 | green << 8 | blue;
+		}
+	}
+
+	/**
+	 * One image of the map, one pixel per cell, with the level each pixel was last drawn at
+	 */
+	static final class Frame {
+
+		final BufferedImage image;
+		final int[] pixels;
+		final byte[] levels;
+		boolean fresh = false;
+
+		Frame(int rows, int columns) {
+			image = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_ARGB);
+			pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			levels = new byte[rows * columns];
+			for (int cell = 0; cell < pixels.length; cell++) {
+				pixels[cell] = COLOURS[0];
+			}
+		}
+	}
+
+	private final int rows;
+	private final int columns;
+	// triple buffering: the AI's thread draws into back, the event dispatch thread paints front, and they swap through middle
+	private Frame back;
+	private final AtomicReference<Frame> middle;
+	private Frame front;
+	private volatile boolean enabled = false;
+
+	/**
+	 * Creates an overlay for a board
+	 *
+	 * @param rows - number of rows
+	 * @param columns - number of columns
+	 */
+	public HeatMapOverlay(int rows, int columns) {
+		this.rows = rows;
+		this.columns = columns;
+		this.back = new Frame(rows, columns);
+		this.middle = new AtomicReference<Frame>(new Frame(rows, columns));
+		this.front = new Frame(rows, columns);
+	}
+
+	/**
+	 * Draws a probability map into the back image and publishes it; called only from the AI's thread
+	 * - only cells whose colour level changed are written
+	 *
+	 * @param probabilities - probability of every cell, any scale
+	 */
+	public void update(double[][] probabilities) {
+		double max = 0;
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				max = Math.max(max, probabilities[r][c]);
+			}
+		}
+		double scale = max > 0 ? (LEVELS - 1) / max : 0;
+
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				int cell = r * columns + c;
+				int level = (int) (Math.max(0, probabilities[r][c]) * scale);
+				if ((back.levels[cell] & 0xFF) != level) {
+					back.levels[cell] = (byte) level;
+					back.pixels[cell] = COLOURS[level];
+				}
+			}
+		}
+
+		back.fresh = true;
+		back = middle.getAndSet(back);
+	}
+
+	/**
+	 * Returns the newest published image; called only from the event dispatch thread
+	 *
+	 * @return image with one pixel per cell
+	 */
+	public BufferedImage latest() {
+		if (middle.get().fresh) {
+			front.fresh = false;
+			front = middle.getAndSet(front);
+		}
+		return front.image;
+	}
+
+	public boolean getEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean newEnabled) {
+		enabled = newEnabled;
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+Project: Battleship
+File: AIEvents.java
+Description: JDK Flight Recorder events for the AI's guesses, ship placements and the start and end of every game, so AI latency can be read next to GC and CPU in one recording. All events are off unless enabled in the recording settings. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// recorded with e.g. java -XX:StartFlightRecording:+battleship.Guess#enabled=true,+battleship.GameEnd#enabled=true,filename=ai.jfr
+public class AIEvents {
+
+	private static final AtomicLong gameIds = new AtomicLong();
+
+	/**
+	 * Gives every game an id that its start and end events share
+	 *
+	 * @return new game id
+	 */
+	static long nextGameId() {
+		return gameIds.incrementAndGet();
+	}
+
+	static String modeName(int mode) {
+		switch (mode) {
+			case BattleshipNoGUI.MODE_TARGET:
+				return "target";
+			case BattleshipNoGUI.MODE_PARITY:
+				return "parity";
+			case BattleshipNoGUI.MODE_RANDOM:
+				return "random";
+			default:
+				return "heat map";
+		}
+	}
+
+	@Name("battleship.Guess")
+	@Label("AI Guess")
+	@Description("One guess of the expert AI")
+	@Category({"Battleship", "AI"})
+	@Enabled(false)
+	@StackTrace(false)
+	static class Guess extends Event {
+
+		@Label("Branch")
+		@Description("Target, parity or heat map")
+		String branch;
+
+		@Label("Cells Evaluated")
+		int cellsEvaluated;
+
+		@Label("Guess Number")
+		int guessNumber;
+	}
+
+	@Name("battleship.Placement")
+	@Label("Ship Placement")
+	@Description("Placement of one ship on the AI's board, with the number of positions tried")
+	@Category({"Battleship", "AI"})
+	@Enabled(false)
+	@StackTrace(false)
+	static class Placement extends Event {
+
+		@Label("Algorithm")
+		String algorithm;
+
+		@Label("Ship")
+		String ship;
+
+		@Label("Orientation")
+		String orientation;
+
+		@Label("Attempts")
+		int attempts;
+	}
+
+	@Name("battleship.GameStart")
+	@Label("Game Start")
+	@Category({"Battleship", "Game"})
+	@Enabled(false)
+	@StackTrace(false)
+	static class GameStart extends Event {
+
+		@Label("Game Id")
+		long gameId;
+
+		@Label("Expert")
+		boolean expert;
+	}
+
+	@Name("battleship.GameEnd")
+	@Label("Game End")
+	@Category({"Battleship", "Game"})
+	@Enabled(false)
+	@StackTrace(false)
+	static class GameEnd extends Event {
+
+		@Label("Game Id")
+		long gameId;
+
+		@Label("Winner")
+		String winner;
+
+		@Label("AI Guesses")
+		int guesses;
+	}
+
+}
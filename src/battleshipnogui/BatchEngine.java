@@ -0,0 +1,453 @@
+/*
+Project: Battleship
+File: BatchEngine.java
+Description: Self-play engine that holds many games in structure-of-arrays form, one bit per game in every cell's long, and advances 64 games per kernel with shared parity, heat-map and resolution steps. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+Layout: games are split into groups of 64. For every group and cell there is one long per property (shot, occupied by ship s, hit on ship s),
+and bit g of that long belongs to game g of the group. A kernel that walks the cells of the board (100 on the standard board) therefore works on 64 games at once.
+The heat map is kept in bit-sliced counters: plane k of a cell holds bit k of every game's placement count for that cell.
+*/
+public class BatchEngine {
+
+	public static final int GAMES_PER_GROUP = 64;
+
+	private final int rows;
+	private final int columns;
+	private final int cells;
+	// enough bits for the most placements that can cover one cell (2 orientations * the lengths of every ship)
+	private final int counterPlanes;
+	private final int games;
+	private final int groups;
+	private final int[] shipLengths;
+	private final int[][][] placementsByShip;
+	private final AIProfile profile;
+	private final Random random;
+	private final boolean[] parityCell;
+
+	// per group and cell: bit g is game g of the group
+	private final long[] shot;
+	private final long[][] shipCells;
+	private final long[][] shipHits;
+	// per group: games still playing, and games in which ship s is still afloat
+	private final long[] active;
+	private final long[][] afloat;
+	// per game
+	private final int[] hitCounts;
+	private final int[] shots;
+
+	// scratch space shared by the kernels of one step
+	private final long[] counters;
+	private final long[] eligible;
+	private final long[] focus;
+	private final long[] focusShip;
+
+	/**
+	 * Creates the games and places their hidden ships the same way SelfPlay does for the same seeds
+	 *
+	 * @param games - number of games
+	 * @param seed - seed of the first game's placement; later games use consecutive seeds, and the AI's guesses use seed itself
+	 * @param placementId - algorithm used to place the hidden ships (SelfPlay.PLACEMENT_EXPERT or SelfPlay.PLACEMENT_SIMPLE)
+	 * @param profile - tunable constants of the expert AI, board size and fleet; sparse boards are not simulated
+	 */
+	public BatchEngine(int games, long seed, int placementId, AIProfile profile) {
+		if (profile.isSparse()) {
+			throw new IllegalArgumentException("batch self-play needs a board with a Block per cell, not a sparse " + profile.getRows() + "x" + profile.getColumns() + " board");
+		}
+		this.games = games;
+		this.groups = (games + GAMES_PER_GROUP - 1) / GAMES_PER_GROUP;
+		this.profile = profile;
+		this.random = new Random(seed);
+		this.rows = profile.getRows();
+		this.columns = profile.getColumns();
+		this.cells = rows * columns;
+
+		Ship[] fleet = profile.createShips();
+		shipLengths = new int[fleet.length];
+		placementsByShip = new int[fleet.length][][];
+		int fleetLength = 0;
+		for (int s = 0; s < fleet.length; s++) {
+			shipLengths[s] = fleet[s].getLength();
+			placementsByShip[s] = placements(shipLengths[s]);
+			fleetLength += shipLengths[s];
+		}
+		counterPlanes = 32 - Integer.numberOfLeadingZeros(2 * fleetLength);
+		counters = new long[counterPlanes * cells];
+		eligible = new long[cells];
+		focus = new long[cells];
+
+		parityCell = new boolean[cells];
+		for (int cell = 0; cell < cells; cell++) {
+			parityCell[cell] = (cell / columns + cell % columns + 1) % profile.getParityModulus() == 0;
+		}
+
+		shot = new long[groups * cells];
+		shipCells = new long[fleet.length][groups * cells];
+		shipHits = new long[fleet.length][groups * cells];
+		active = new long[groups];
+		afloat = new long[fleet.length][groups];
+		hitCounts = new int[fleet.length * games];
+		shots = new int[games];
+		focusShip = new long[fleet.length];
+
+		GameState previous = BattleshipNoGUI.state();
+		try {
+			for (int g = 0; g < games; g++) {
+				placeGame(g, seed + g, placementId);
+			}
+		}
+		finally {
+			BattleshipNoGUI.setState(previous);
+		}
+	}
+
+	/**
+	 * Lists every placement of a ship on the board as cell indices
+	 * - a horizontal placement starts at (a, b) and a vertical one at (b, a), interleaved in the same order on every board shape
+	 *
+	 * @param length - length of the ship
+	 * @return placements, each an array of length cell indices
+	 */
+	private int[][] placements(int length) {
+		ArrayList<int[]> placements = new ArrayList<int[]>();
+		int longest = Math.max(rows, columns);
+		for (int a = 0; a < longest; a++) {
+			for (int b = 0; b + length <= longest; b++) {
+				if (a < rows && b + length <= columns) {
+					int[] horizontal = new int[length];
+					for (int i = 0; i < length; i++) {
+						horizontal[i] = a * columns + b + i;
+					}
+					placements.add(horizontal);
+				}
+				if (a < columns && b + length <= rows) {
+					int[] vertical = new int[length];
+					for (int i = 0; i < length; i++) {
+						vertical[i] = (b + i) * columns + a;
+					}
+					placements.add(vertical);
+				}
+			}
+		}
+		return placements.toArray(new int[0][]);
+	}
+
+	private void placeGame(int game, long seed, int placementId) {
+		BattleshipNoGUI.resetGame(seed, profile);
+		Ship[] ships = profile.createShips();
+		Block[][] answerBoard = new Block[rows][columns];
+		if (placementId == SelfPlay.PLACEMENT_SIMPLE) {
+			BattleshipNoGUI.placeShipsSimple(answerBoard, ships, '-');
+		}
+		else {
+			BattleshipNoGUI.placeShips(answerBoard, ships, '-');
+		}
+
+		int group = game / GAMES_PER_GROUP;
+		long bit = 1L << (game % GAMES_PER_GROUP);
+		active[group] |= bit;
+		for (int s = 0; s < ships.length; s++) {
+			afloat[s][group] |= bit;
+		}
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				char occupation = answerBoard[r][c].getOccupation();
+				if (occupation != '-') {
+					shipCells[BattleshipNoGUI.letterToInt(occupation)][group * cells + r * columns + c] |= bit;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Lets the AI take one shot in every unfinished game
+	 *
+	 * @return whether any game is still unfinished
+	 */
+	public boolean step() {
+		boolean anyActive = false;
+		for (int group = 0; group < groups; group++) {
+			if (active[group] != 0) {
+				stepGroup(group);
+				anyActive |= active[group] != 0;
+			}
+		}
+		return anyActive;
+	}
+
+	/**
+	 * Plays every game to the end
+	 *
+	 * @return total number of shots taken
+	 */
+	public long run() {
+		while (step()) {
+			// every step is one shot per unfinished game
+		}
+		long total = 0;
+		for (int g = 0; g < games; g++) {
+			total += shots[g];
+		}
+		return total;
+	}
+
+	private void stepGroup(int group) {
+		int base = group * cells;
+		long playing = active[group];
+
+		// mode of every game, like expertGuess: target a damaged ship, otherwise parity for the first guesses, otherwise the heat map
+		long targetGames = 0;
+		long parityGames = 0;
+		for (int s = 0; s < focusShip.length; s++) {
+			focusShip[s] = 0;
+		}
+		for (long remaining = playing; remaining != 0; remaining &= remaining - 1) {
+			int b = Long.numberOfTrailingZeros(remaining);
+			int game = group * GAMES_PER_GROUP + b;
+			long bit = 1L << b;
+			boolean target = false;
+			for (int s = 0; s < shipLengths.length && !target; s++) {
+				int hits = hitCounts[s * games + game];
+				if (hits > 0 && hits < shipLengths[s]) {
+					focusShip[s] |= bit;
+					target = true;
+				}
+			}
+			if (target) {
+				targetGames |= bit;
+			}
+			else if (shots[game] < profile.getParityGuesses()) {
+				parityGames |= bit;
+			}
+		}
+
+		targetKernel(base, playing, targetGames);
+		long parityOk = parityKernel(base, playing, parityGames);
+		heatKernel(group, base, playing);
+		maxKernel(parityOk);
+		chooseAndResolve(group, base, playing);
+	}
+
+	/**
+	 * Marks the unshot cells next to the damaged ship of every game in target mode, along the ship's line once two adjacent segments are known
+	 */
+	private void targetKernel(int base, long playing, long targetGames) {
+		long horizontalPair = 0;
+		long verticalPair = 0;
+		for (int cell = 0; cell < cells; cell++) {
+			long hits = 0;
+			for (int s = 0; s < focusShip.length; s++) {
+				hits |= shipHits[s][base + cell] & focusShip[s];
+			}
+			focus[cell] = hits;
+		}
+		for (int cell = 0; cell < cells; cell++) {
+			if (cell % columns < columns - 1) {
+				horizontalPair |= focus[cell] & focus[cell + 1];
+			}
+			if (cell < cells - columns) {
+				verticalPair |= focus[cell] & focus[cell + columns];
+			}
+		}
+
+		long withCandidates = 0;
+		for (int cell = 0; cell < cells; cell++) {
+			int c = cell % columns;
+			long horizontal = (c > 0 ? focus[cell - 1] : 0) | (c < columns - 1 ? focus[cell + 1] : 0);
+			long vertical = (cell >= columns ? focus[cell - columns] : 0) | (cell < cells - columns ? focus[cell + columns] : 0);
+			long candidates = playing & targetGames & ~shot[base + cell] & ((horizontal & ~verticalPair) | (vertical & ~horizontalPair));
+			eligible[cell] = candidates;
+			withCandidates |= candidates;
+		}
+
+		// games without a target candidate (every neighbour already shot) hunt over the whole board instead
+		long hunting = playing & ~withCandidates;
+		for (int cell = 0; cell < cells; cell++) {
+			eligible[cell] |= hunting & ~shot[base + cell];
+		}
+	}
+
+	/**
+	 * Restricts games in the parity phase to unshot parity cells
+	 *
+	 * @return games that are in the parity phase and still have an unshot parity cell
+	 */
+	private long parityKernel(int base, long playing, long parityGames) {
+		long parityOk = 0;
+		for (int cell = 0; cell < cells; cell++) {
+			if (parityCell[cell]) {
+				parityOk |= parityGames & ~shot[base + cell];
+			}
+		}
+		for (int cell = 0; cell < cells; cell++) {
+			if (!parityCell[cell]) {
+				eligible[cell] &= ~parityOk;
+			}
+		}
+		return parityOk;
+	}
+
+	/**
+	 * Counts, for every cell and game, the placements of the game's afloat ships that avoid every shot cell
+	 */
+	private void heatKernel(int group, int base, long playing) {
+		Arrays.fill(counters, 0);
+		for (int s = 0; s < shipLengths.length; s++) {
+			long shipAfloat = playing & afloat[s][group];
+			if (shipAfloat == 0) {
+				continue;
+			}
+			for (int[] placement : placementsByShip[s]) {
+				long blocked = 0;
+				for (int cell : placement) {
+					blocked |= shot[base + cell];
+				}
+				long valid = shipAfloat & ~blocked;
+				if (valid == 0) {
+					continue;
+				}
+				for (int cell : placement) {
+					// adds one to the bit-sliced counter of every game in valid
+					long carry = valid;
+					for (int plane = 0; carry != 0 && plane < counterPlanes; plane++) {
+						int index = plane * cells + cell;
+						long overflow = counters[index] & carry;
+						counters[index] ^= carry;
+						carry = overflow;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Keeps, for every game outside the parity phase, only the eligible cells with the highest placement count
+	 */
+	private void maxKernel(long parityOk) {
+		for (int plane = counterPlanes - 1; plane >= 0; plane--) {
+			long any = 0;
+			for (int cell = 0; cell < cells; cell++) {
+				any |= eligible[cell] & counters[plane * cells + cell];
+			}
+			// games with a candidate whose count has this bit drop the candidates without it (parity games choose at random)
+			any &= ~parityOk;
+			for (int cell = 0; cell < cells; cell++) {
+				eligible[cell] &= counters[plane * cells + cell] | ~any;
+			}
+		}
+	}
+
+	/**
+	 * Picks one of the remaining cells of every game at random and resolves the shot
+	 */
+	private void chooseAndResolve(int group, int base, long playing) {
+		for (long remaining = playing; remaining != 0; remaining &= remaining - 1) {
+			int b = Long.numberOfTrailingZeros(remaining);
+			int count = 0;
+			for (int cell = 0; cell < cells; cell++) {
+				count += (int) (eligible[cell] >>> b) & 1;
+			}
+			int pick = random.nextInt(count);
+			for (int cell = 0; cell < cells; cell++) {
+				if ((eligible[cell] >>> b & 1) != 0 && pick-- == 0) {
+					resolve(group, base, b, cell);
+					break;
+				}
+			}
+		}
+	}
+
+	private void resolve(int group, int base, int b, int cell) {
+		int game = group * GAMES_PER_GROUP + b;
+		long bit = 1L << b;
+		shot[base + cell] |= bit;
+		shots[game]++;
+
+		for (int s = 0; s < shipLengths.length; s++) {
+			if ((shipCells[s][base + cell] & bit) != 0) {
+				shipHits[s][base + cell] |= bit;
+				if (++hitCounts[s * games + game] == shipLengths[s]) {
+					afloat[s][group] &= ~bit;
+					long stillAfloat = 0;
+					for (int t = 0; t < shipLengths.length; t++) {
+						stillAfloat |= afloat[t][group];
+					}
+					if ((stillAfloat & bit) == 0) {
+						active[group] &= ~bit;
+					}
+				}
+				return;
+			}
+		}
+	}
+
+	public int getGameCount() {
+		return games;
+	}
+
+	/**
+	 * Returns the number of shots a game has taken so far (to win, once the game is finished)
+	 *
+	 * @param game - index of the game
+	 * @return number of shots
+	 */
+	public int getShots(int game) {
+		return shots[game];
+	}
+
+	public boolean getFinished(int game) {
+		return (active[game / GAMES_PER_GROUP] & 1L << (game % GAMES_PER_GROUP)) == 0;
+	}
+
+	/**
+	 * Plays games with the batch engine and with one SelfPlay game per thread and compares their throughput
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		Log.configure(Log.OFF);
+
+		// warms up both engines so the comparison is not dominated by compilation
+		new BatchEngine(2000, seed, SelfPlay.PLACEMENT_EXPERT, AIProfile.defaults()).run();
+		SelfPlay.playParallel(2000, seed, SelfPlay.STRATEGY_EXPERT, threads);
+
+		// each thread plays its own engine over a share of the games
+		long start = System.nanoTime();
+		long[] totals = new long[threads];
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			int index = t;
+			int share = games / threads + (t < games % threads ? 1 : 0);
+			long firstSeed = seed + (long) t * (games / threads) + Math.min(t, games % threads);
+			workers[t] = new Thread(() -> {
+				BatchEngine engine = new BatchEngine(share, firstSeed, SelfPlay.PLACEMENT_EXPERT, AIProfile.defaults());
+				totals[index] = engine.run();
+			}, "batch-engine-" + t);
+			workers[t].start();
+		}
+		long batchShots = 0;
+		for (int t = 0; t < threads; t++) {
+			workers[t].join();
+			batchShots += totals[t];
+		}
+		double batchSeconds = (System.nanoTime() - start) / 1e9;
+
+		start = System.nanoTime();
+		long selfPlayShots = SelfPlay.playParallel(games, seed, SelfPlay.STRATEGY_EXPERT, threads);
+		double selfPlaySeconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(String.format("Batch engine: %d games in %.2f s (%.0f games/s), average %.2f shots", games, batchSeconds, games / batchSeconds, (double) batchShots / games));
+		System.out.println(String.format("Per-game threads: %d games in %.2f s (%.0f games/s), average %.2f shots", games, selfPlaySeconds, games / selfPlaySeconds, (double) selfPlayShots / games));
+	}
+
+}
@@ -9,31 +9,82 @@ Author: Emily Au
 package src;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntBinaryOperator;
 import java.io.*;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 
 public class BattleshipNoGUI {
 	
+	// guessing modes of the expert guess algorithm
+	
+	public static final int MODE_TARGET = 0;
+	public static final int MODE_PARITY = 1;
+	public static final int MODE_HEAT_MAP = 2;
+	public static final int MODE_RANDOM = 3;
+	
+	// random cells drawn by a sparse guess before it scans the board for an unshot cell
+	static final int MAX_RANDOM_DRAWS = 64;
+	
 	// global variables
 	
-	static boolean gameOver = false;
-	static XYCoordinate lastHit = new XYCoordinate();
-	static int numGuesses = 0;
-	static boolean targetMode = false;
-	static boolean computerWin = false;
-	static boolean userWin = false;
+	static SimulationStats stats = null;
+	
+	// state of the game being played on the current thread
+	static final ThreadLocal<GameState> currentState = ThreadLocal.withInitial(GameState::new);
+	
+	/**
+	 * Returns the state of the game being played on the current thread
+	 * 
+	 * @return game state of the current thread
+	 */
+	public static GameState state() {
+		return currentState.get();
+	}
+	
+	/**
+	 * Sets the state of the game being played on the current thread
+	 * 
+	 * @param state - game state to play with
+	 */
+	public static void setState(GameState state) {
+		currentState.set(state);
+	}
+	
+	/**
+	 * Resets the game state of the current thread so that a new game can be played in the same run
+	 * 
+	 * @param seed - seed for the random number generator used by placement and guessing
+	 */
+	public static void resetGame(long seed) {
+		currentState.set(new GameState(seed));
+	}
+	
+	/**
+	 * Resets the game state of the current thread, playing the new game with the given AI profile
+	 * 
+	 * @param seed - seed for the random number generator used by placement and guessing
+	 * @param profile - tunable constants of the expert AI
+	 */
+	public static void resetGame(long seed, AIProfile profile) {
+		GameState state = new GameState(seed);
+		state.profile = profile;
+		currentState.set(state);
+	}
 	
 	/**
 	 * Initializes and returns the board of Blocks the user will refer to while guessing
 	 * 
-	 * @param boardLength - board dimensions
+	 * @param rows - number of rows of the board
+	 * @param columns - number of columns of the board
 	 * @return 2D Block array (board) that user will guess from
 	 */
-	public static Block[][] initializeUserBoard(int boardLength) {
-		Block[][] userBoard = new Block[boardLength][boardLength];
-		for (int r = 0; r < boardLength; r++) {
-			for (int c = 0; c < boardLength; c++) {
+	public static Block[][] initializeUserBoard(int rows, int columns) {
+		Block[][] userBoard = new Block[rows][columns];
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
 				userBoard[r][c] = new Block(c + 1, intToLetter(r), '?');
 			}
 		}
@@ -60,6 +111,68 @@ public class BattleshipNoGUI {
 		return (char) (integer + 65);
 	}
 	
+	/**
+	 * Names a row: A to Z, then AA, AB, ... ZZ, AAA, ... for boards with more than 26 rows
+	 * 
+	 * @param row - row index
+	 * @return name of the row
+	 */
+	public static String rowName(int row) {
+		if (row < 26) {
+			return Character.toString(intToLetter(row));
+		}
+		StringBuilder name = new StringBuilder(4);
+		for (int rest = row + 1; rest > 0; rest = (rest - 1) / 26) {
+			name.append(intToLetter((rest - 1) % 26));
+		}
+		return name.reverse().toString();
+	}
+	
+	/**
+	 * Names a cell as its row name followed by its column number, e.g. B7
+	 * 
+	 * @param row - row index
+	 * @param column - column index
+	 * @return name of the cell
+	 */
+	public static String cellName(int row, int column) {
+		return rowName(row) + (column + 1);
+	}
+	
+	/**
+	 * Reads a cell name such as B7, AB12 or ABCD123456 (case-insensitive); the caller checks it against the board size
+	 * 
+	 * @param cell - cell name
+	 * @return XY coordinate of the cell, or null if it is not a cell name
+	 */
+	public static XYCoordinate parseCell(String cell) {
+		if (cell == null) {
+			return null;
+		}
+		int letters = 0;
+		int row = -1;
+		while (letters < cell.length() && letters < 4) {
+			char letter = Character.toUpperCase(cell.charAt(letters));
+			if (letter < 'A' || letter > 'Z') {
+				break;
+			}
+			row = (row + 1) * 26 + letterToInt(letter);
+			letters++;
+		}
+		int column = 0;
+		for (int i = letters; i < cell.length(); i++) {
+			char digit = cell.charAt(i);
+			if (digit < '0' || digit > '9' || i - letters >= 7) {
+				return null;
+			}
+			column = column * 10 + (digit - '0');
+		}
+		if (letters == 0 || letters == cell.length() || column < 1) {
+			return null;
+		}
+		return new XYCoordinate(column - 1, row);
+	}
+	
 	/**
 	 * Returns a random integer with value weighting implemented
 	 * 
@@ -73,7 +186,7 @@ public class BattleshipNoGUI {
 		}
 		
 		int index = 0;
-		for (double r = Math.random() * totalWeight; index < board.length - 1; ++index) {
+		for (double r = state().random.nextDouble() * totalWeight; index < board.length - 1; ++index) {
 			r -= board[index][0];
 			if (r <= 0) {
 				break;
@@ -82,6 +195,28 @@ public class BattleshipNoGUI {
 		return index;
 	}
 	
+	/**
+	 * Returns a random column index with value weighting implemented
+	 * 
+	 * @param board - 2D double array of values to be selected from
+	 * @return index of chosen random weighted column
+	 */
+	public static int weightedRandomColumn(double[][] board) {
+		double totalWeight = 0;
+		for (int c = 0; c < board[0].length; c++) {
+			totalWeight += board[0][c];
+		}
+		
+		int index = 0;
+		for (double r = state().random.nextDouble() * totalWeight; index < board[0].length - 1; ++index) {
+			r -= board[0][index];
+			if (r <= 0) {
+				break;
+			}
+		}
+		return index;
+	}
+	
 	/**
 	 * Expert ship placement algorithm: uses random weighted placement to determine locations for placement
 	 * 
@@ -92,28 +227,28 @@ public class BattleshipNoGUI {
 	public static void placeShips(Block[][] board, Ship[] ships, char water) {
 		// initializes all blocks of board to water
 		for (int r = 0; r < board.length; r++) {
-			for (int c = 0; c < board.length; c++) {
+			for (int c = 0; c < board[r].length; c++) {
 				board[r][c] = new Block(r, intToLetter(c), water);
 			}
 		}
 		
-		int[] temp = new int[5];
+		int[] temp = new int[ships.length];
 		
 		// generates inverted heat map for empty board
 		double[][] heatMap = generateOverallHeatMap(board, ships, temp, water);
 		for (int r = 0; r < heatMap.length; r++) {
-			for (int c = 0; c < heatMap.length; c++) {
+			for (int c = 0; c < heatMap[r].length; c++) {
 				heatMap[r][c] = 1 / heatMap[r][c];
 			}
 		}
 		
 		// placing ships
 		int shipsPlaced = 0;
-		while (shipsPlaced < 5) {
+		while (shipsPlaced < ships.length) {
 			boolean validPlacement = false;
 			String orientation;
 			
-			int zeroOrOne = (int)(Math.random()*2);
+			int zeroOrOne = (int)(state().random.nextDouble()*2);
 			
 			// determines orientation of ship to be placed
 			if (zeroOrOne == 0) {
@@ -124,19 +259,24 @@ public class BattleshipNoGUI {
 			
 			ships[shipsPlaced].setOrientation(orientation);
 			
+			AIEvents.Placement event = new AIEvents.Placement();
+			event.begin();
+			int attempts = 0;
+			
 			do {
 				XYCoordinate initialCoordinate;
 				validPlacement = true;
+				attempts++;
 				int xIndex, yIndex;
 				
 				if (orientation.equals("horizontal")) {
 					while (true) {
 						// generates weighted random "starting coordinate"
 						xIndex = weightedRandom(heatMap);
-						yIndex = weightedRandom(heatMap);
+						yIndex = weightedRandomColumn(heatMap);
 						
 						// checks if ship placement is valid in board boundaries
-						if (yIndex < board.length - ships[shipsPlaced].getLength()) {
+						if (yIndex < board[0].length - ships[shipsPlaced].getLength()) {
 							break;
 						}
 					}
@@ -161,7 +301,7 @@ public class BattleshipNoGUI {
 					while (true) {
 						// generates weighted random "starting coordinate"
 						xIndex = weightedRandom(heatMap);
-						yIndex = weightedRandom(heatMap);
+						yIndex = weightedRandomColumn(heatMap);
 						
 						// checks if ship placement is valid in board boundaries
 						if (xIndex < board.length - ships[shipsPlaced].getLength()) {
@@ -187,6 +327,15 @@ public class BattleshipNoGUI {
 				}
 			} while(validPlacement != true);
 			
+			event.end();
+			if (event.shouldCommit()) {
+				event.algorithm = "weighted";
+				event.ship = ships[shipsPlaced].getName();
+				event.orientation = orientation;
+				event.attempts = attempts;
+				event.commit();
+			}
+			
 			shipsPlaced++;
 		}
 	}
@@ -201,7 +350,7 @@ public class BattleshipNoGUI {
 	public static void placeShipsSimple(Block[][] board, Ship[] ships, char water) {
 		// initializes all blocks of board to water
 		for (int r = 0; r < board.length; r++) {
-			for (int c = 0; c < board.length; c++) {
+			for (int c = 0; c < board[r].length; c++) {
 				board[r][c] = new Block(r, intToLetter(c), water);
 			}
 		}
@@ -209,11 +358,11 @@ public class BattleshipNoGUI {
 		int shipsPlaced = 0;
 		
 		// placing ships
-		while (shipsPlaced < 5) {
+		while (shipsPlaced < ships.length) {
 			boolean validPlacement = false;
 			String orientation;
 			
-			int zeroOrOne = (int)(Math.random()*2);
+			int zeroOrOne = (int)(state().random.nextDouble()*2);
 			
 			// determines orientation of ship to be placed
 			if (zeroOrOne == 0) {
@@ -224,13 +373,18 @@ public class BattleshipNoGUI {
 			
 			ships[shipsPlaced].setOrientation(orientation);
 			
+			AIEvents.Placement event = new AIEvents.Placement();
+			event.begin();
+			int attempts = 0;
+			
 			do {
 				XYCoordinate initialCoordinate;
 				validPlacement = true;
+				attempts++;
 				
 				if (orientation.equals("horizontal")) {
 					// generates random "starting coordinate"
-					initialCoordinate = new XYCoordinate((int)(Math.random()*(board.length - ships[shipsPlaced].getLength())), (int)(Math.random()*board.length));
+					initialCoordinate = new XYCoordinate((int)(state().random.nextDouble()*(board[0].length - ships[shipsPlaced].getLength())), (int)(state().random.nextDouble()*board.length));
 					
 					// checks if ship placement does not overlap other ships
 					for (int c = initialCoordinate.getX(); c < initialCoordinate.getX() + ships[shipsPlaced].getLength(); c++) {
@@ -248,7 +402,7 @@ public class BattleshipNoGUI {
 					
 				} else {
 					// generates random "starting coordinate"
-					initialCoordinate = new XYCoordinate((int)(Math.random()*board.length), (int)(Math.random()*(board.length - ships[shipsPlaced].getLength())));
+					initialCoordinate = new XYCoordinate((int)(state().random.nextDouble()*board[0].length), (int)(state().random.nextDouble()*(board.length - ships[shipsPlaced].getLength())));
 					
 					// checks if ship placement does not overlap other ships
 					for (int r = initialCoordinate.getY(); r < initialCoordinate.getY() + ships[shipsPlaced].getLength(); r++) {
@@ -266,6 +420,15 @@ public class BattleshipNoGUI {
 				}				
 			} while(validPlacement != true);
 			
+			event.end();
+			if (event.shouldCommit()) {
+				event.algorithm = "random";
+				event.ship = ships[shipsPlaced].getName();
+				event.orientation = orientation;
+				event.attempts = attempts;
+				event.commit();
+			}
+			
 			shipsPlaced++;
 		}
 	}
@@ -279,11 +442,11 @@ public class BattleshipNoGUI {
 	 * @return 2D double array of probability values
 	 */
 	public static double[][] generateHeatMapPerShip(Block[][] board, char water, int shipLength) {
-		double[][] heatMap = new double[board.length][board.length];
+		double[][] heatMap = new double[board.length][board[0].length];
 		int sum = 0;
 		
 		for (int r = 0; r < board.length; r++) {
-			for (int c = 0; c < board.length; c++) {
+			for (int c = 0; c < board[r].length; c++) {
 				
 				// horizontal placement
 				boolean validPlacement = true;
@@ -333,7 +496,7 @@ public class BattleshipNoGUI {
 		
 		// changes each value of all heat map coordinates to the probability of ship occupation 
 		for (int r = 0; r < board.length; r++) {
-			for (int c = 0; c < board.length; c++) {
+			for (int c = 0; c < board[r].length; c++) {
 				heatMap[r][c] = heatMap[r][c] / sum;
 			}
 		}
@@ -351,7 +514,7 @@ public class BattleshipNoGUI {
 	 * @return 2D double array of total probability values
 	 */
 	public static double[][] generateOverallHeatMap(Block[][] board, Ship[] ships, int[] shipHitCount, char water) {
-		double[][] heatMap = new double[board.length][board.length];
+		double[][] heatMap = new double[board.length][board[0].length];
 		
 		for (int s = 0; s < ships.length; s++) {
 			// generate individual heat maps for ships that are not sunk
@@ -360,7 +523,7 @@ public class BattleshipNoGUI {
 				
 				// add ship heat map to total overall heat map
 				for (int r = 0; r < board.length; r++) {
-					for (int c = 0; c < board.length; c++) {
+					for (int c = 0; c < board[r].length; c++) {
 						heatMap[r][c] += shipHeatMap[r][c];
 					}
 				}
@@ -376,12 +539,24 @@ public class BattleshipNoGUI {
 	 * @param board - 2D double array (heat map) to be displayed
 	 */
 	public static void displayHeatMap(double[][] board) {
+		state().out.print(heatMapText(board));
+	}
+	
+	/**
+	 * Writes 2D double array (heat map) as text, one line per row
+	 * 
+	 * @param board - 2D double array (heat map) to be written
+	 * @return text of the heat map
+	 */
+	public static String heatMapText(double[][] board) {
+		StringBuilder text = new StringBuilder(board.length * board[0].length * 6);
 		for (int r = 0; r < board.length; r++) {
-			for (int c = 0; c < board.length; c++ ) {
-				System.out.print(String.format( "%.3f", board[r][c]) + " ");
+			for (int c = 0; c < board[r].length; c++ ) {
+				text.append(String.format( "%.3f", board[r][c])).append(' ');
 			}
-			System.out.println("");
+			text.append(System.lineSeparator());
 		}
+		return text.toString();
 	}
 	
 	/**
@@ -390,25 +565,37 @@ public class BattleshipNoGUI {
 	 * @param board - 2D Block array (board) to be displayed
 	 */
 	public static void displayBoard(Block[][] board) {
+		state().out.print(boardText(board));
+	}
+	
+	/**
+	 * Writes 2D Block array (board) as text, one line per row
+	 * 
+	 * @param board - 2D Block array (board) to be written
+	 * @return text of the board
+	 */
+	public static String boardText(Block[][] board) {
+		StringBuilder text = new StringBuilder(board.length * (board[0].length * 2 + 2));
 		for (int r = 0; r < board.length; r++) {
-			for (int c = 0; c < board.length; c++ ) {
-				System.out.print(board[r][c].getOccupation() + " ");
+			for (int c = 0; c < board[r].length; c++ ) {
+				text.append(board[r][c].getOccupation()).append(' ');
 			}
-			System.out.println("");
+			text.append(System.lineSeparator());
 		}
+		return text.toString();
 	}
 	
 	public static void writeBoardToFile(Block[][] board) {
 		try (BufferedWriter writer = new BufferedWriter(new FileWriter("AIShipPlacement.txt"))){
 			for (int r = 0; r < board.length; r++) {
-				for (int c = 0; c < board.length; c++) {
+				for (int c = 0; c < board[r].length; c++) {
 					writer.write(board[r][c].getOccupation() + " ");
 				}
 				writer.newLine();
 			}
 		}
 		catch(IOException e) {
-			e.printStackTrace();
+			Log.error("could not write the AI's ship placement: {}", e);
 		}
 	}
 	
@@ -423,8 +610,8 @@ public class BattleshipNoGUI {
 		
 		while (true) {
 			// generates random coordinate values
-			int randomX = (int) (Math.random()*10);
-			int randomY = (int) (Math.random()*10);
+			int randomX = (int) (state().random.nextDouble()*board[0].length);
+			int randomY = (int) (state().random.nextDouble()*board.length);
 			
 			// checks if coordinate is valid to guess
 			if (board[randomY][randomX].getIsShot() == false) {
@@ -447,17 +634,18 @@ public class BattleshipNoGUI {
 	 */
 	public static XYCoordinate huntParity(Block[][] board, int longestShipLength) {
 		XYCoordinate guessCoordinate = new XYCoordinate();
+		state().parityDraws = 0;
 		
 		while (true) {
+			state().parityDraws++;
 			// generates random coordinate values
-			int randomX = (int) (Math.random()*10), randomYInt = (int) (Math.random()*10);
-			char randomY = intToLetter(randomYInt);
+			int randomX = (int) (state().random.nextDouble()*board[0].length), randomYInt = (int) (state().random.nextDouble()*board.length);
 			
 			// checks if coordinate falls under parity coordinates and is valid to guess
-			if (((randomX + randomYInt + 1) % longestShipLength == 0) && (board[randomX][randomYInt].getIsShot() == false)) {
+			if (((randomX + randomYInt + 1) % longestShipLength == 0) && (board[randomYInt][randomX].getIsShot() == false)) {
 				guessCoordinate.setX(randomX);
 				guessCoordinate.setY(randomYInt);
-				board[randomX][randomYInt].setIsShot(true);
+				board[randomYInt][randomX].setIsShot(true);
 				break;
 			}
 		}
@@ -479,18 +667,20 @@ public class BattleshipNoGUI {
 		
 		// generates total overall heat map to be referenced
 		double[][] heatMap = generateOverallHeatMap(board, ships, shipHitCount, unknown);
-		displayHeatMap(heatMap);
+		if (Log.enabled(Log.TRACE)) {
+			Log.trace("AI heat map\n{}", heatMapText(heatMap));
+		}
 		int guessX = 0;
 		int guessY = 0;
 		
 		// searches through heat map for coordinate with highest probability of ship occupation
 		for (int r = 0; r < board.length; r++) {
-			for (int c = 0; c < board.length; c++) {
+			for (int c = 0; c < board[r].length; c++) {
 				if (heatMap[r][c] > heatMap[guessY][guessX]) {
 					guessX = c;
 					guessY = r;
 				} else if (heatMap[r][c] == heatMap[guessY][guessX]) {
-					if (((int) (Math.random())*2) == 0) {
+					if (((int) (state().random.nextDouble())*2) == 0) {
 						guessX = c;
 						guessY = r;
 					}
@@ -500,150 +690,181 @@ public class BattleshipNoGUI {
 		
 		guessCoordinate.setX(guessX);
 		guessCoordinate.setY(guessY);
-		board[guessX][guessY].setIsShot(true);
+		board[guessY][guessX].setIsShot(true);
 		
 		return guessCoordinate;
 	}
 	
 	/**
-	 * Assuming a ship has been hit but not sunk, hunts a coordinate based on the previously "hit" coordinate(s)
-	 * - if only one segment of a ship has been hit, search in directions surrounding ship
-	 * - if multiple segments of a ship has been hit, search in orientation of ship segments (if segments share the same X coordinate, search vertically; if segments share the same Y Coordinate, search horizontally)
+	 * Assuming a ship has been hit but not sunk, targets the most likely cell of the damaged ships (see targetActiveHits)
 	 * 
 	 * @param board - 2D Block array (board) to be assessed for guessing
 	 * @param ships - array of ships to be hunted
 	 * @param shipHitCount - integer array of number of shots that have hit each ship
 	 * @param unknown - character to represent empty, guessed coordinates
-	 * @return XY coordinate to be guessed
+	 * @return XY coordinate to be guessed, or null if no placement of a damaged ship fits its hits
 	 */
-	public static XYCoordinate target(Block[][] board, Ship[] ships, int[] shipHitCount, char unknown) {	
-		XYCoordinate guessCoordinate = new XYCoordinate();		
-		
-		int lastHitX = lastHit.getX();
-		int lastHitY = lastHit.getY();
+	public static XYCoordinate target(Block[][] board, Ship[] ships, int[] shipHitCount, char unknown) {
+		XYCoordinate guessCoordinate = targetActiveHits(board.length, board[0].length, ships, shipHitCount, (row, column) -> {
+			char occupation = board[row][column].getOccupation();
+			return occupation == unknown ? SparseBoard.NOT_SHOT : occupation == '-' ? SparseBoard.MISS : letterToInt(occupation);
+		});
 		
-		XYCoordinate firstShip = new XYCoordinate();
-		XYCoordinate lastShip = new XYCoordinate();
-		
-		boolean validFirstShip = false;
-		boolean targetShip = false;
-		int targetShipIndex = 0;
+		if (guessCoordinate != null) {
+			board[guessCoordinate.getY()][guessCoordinate.getX()].setIsShot(true);
+		}
+		return guessCoordinate;
+	}
+	
+	/**
+	 * Targets the most likely cell of the ships that have been hit but not sunk, looking only at the placements that cross their hits
+	 * - every damaged ship is placed in every position, in a line through all of its hits, whose other cells were not shot; such positions lie within
+	 *   the ship's length - 1 of its hits, so at most twice its length of them are checked, however large the board is
+	 * - each ship's positions are equally likely, so a cell's probability for the ship is the share of its positions covering the cell;
+	 *   the probabilities of all damaged ships are added and the most likely cell guessed, ties broken by the placements of the ships not sunk through the cell, then at random
+	 * - the hits come from the game state's active hits, not from the board
+	 * 
+	 * @param rows - number of rows of the board
+	 * @param columns - number of columns of the board
+	 * @param ships - array of ships to be hunted
+	 * @param shipHitCount - integer array of number of shots that have hit each ship
+	 * @param cellState - state of a cell given its row and column: SparseBoard.NOT_SHOT, SparseBoard.MISS or the index of the ship that was hit
+	 * @return XY coordinate to be guessed, or null if no placement of a damaged ship fits its hits
+	 */
+	static XYCoordinate targetActiveHits(int rows, int columns, Ship[] ships, int[] shipHitCount, IntBinaryOperator cellState) {
+		// probability of every candidate cell, in the order the cells were first found
+		LinkedHashMap<Long, Double> odds = new LinkedHashMap<Long, Double>();
+		state().targetCells = 0;
 		
-		// searches for the first and last ship segment of the shortest ship shot but not sunk
 		for (int s = 0; s < ships.length; s++) {
-			if (targetShip == false) {
-				// if ship is shot but not sunk
-				if ((shipHitCount[s] > 0) && (shipHitCount[s] < ships[s].getLength())) {
-					for (int r = 0; r < board.length; r++) {
-						for (int c = 0; c < board.length; c++) {
-							if (board[r][c].getOccupation() == intToLetter(s)) {
-								targetShip = true;
-								targetShipIndex = s;
-								if (validFirstShip == false) {
-									firstShip.setX(c);
-									firstShip.setY(r);
-									validFirstShip = true;
-								}
-								lastShip.setX(c);
-								lastShip.setY(r);
-							}
-						}
-					}
-				}
+			int length = ships[s].getLength();
+			if (shipHitCount[s] == 0 || shipHitCount[s] == length) {
+				continue;
 			}
-		}
-				
-		// if one segment of the targeted ship has been hit
-		
-		if ((firstShip.getX() == lastShip.getX()) && (firstShip.getY() == lastShip.getY())) {
 			
-			boolean canShootVertical = false;
-			boolean canShootHorizontal = false;
+			// bounds of the ship's hits
+			int firstRow = Integer.MAX_VALUE, lastRow = -1, firstColumn = Integer.MAX_VALUE, lastColumn = -1;
+			for (int[] hit : state().activeHits) {
+				if (hit[0] == s) {
+					firstRow = Math.min(firstRow, hit[2]);
+					lastRow = Math.max(lastRow, hit[2]);
+					firstColumn = Math.min(firstColumn, hit[1]);
+					lastColumn = Math.max(lastColumn, hit[1]);
+				}
+			}
+			if (lastRow == -1 || lastRow - firstRow >= length || lastColumn - firstColumn >= length) {
+				continue;
+			}
 			
-			// determines if ship has the possibility to be placed vertically
-			for (int r = firstShip.getY() - ships[targetShipIndex].getLength() + 1; r <= firstShip.getY(); r++) {
-				boolean validVertical = true;
-				for (int i = r; i < r + ships[targetShipIndex].getLength() - 1; i++) {
-					try {
-						if ((board[i][firstShip.getX()].getOccupation() != unknown) && (board[i][firstShip.getX()].getOccupation() != intToLetter(targetShipIndex))) {
-							validVertical = false;
-						}
+			// positions through every hit: along the row if the hits share it, along the column if they share it
+			ArrayList<int[]> positions = new ArrayList<int[]>();
+			for (int horizontal = 1; horizontal >= 0; horizontal--) {
+				if (horizontal == 1 ? firstRow != lastRow : firstColumn != lastColumn) {
+					continue;
+				}
+				int from = horizontal == 1 ? lastColumn - length + 1 : lastRow - length + 1;
+				int to = horizontal == 1 ? firstColumn : firstRow;
+				int limit = (horizontal == 1 ? columns : rows) - length;
+				for (int first = Math.max(0, from); first <= Math.min(to, limit); first++) {
+					boolean fits = true;
+					for (int i = 0; i < length && fits; i++) {
+						int state = horizontal == 1 ? cellState.applyAsInt(firstRow, first + i) : cellState.applyAsInt(first + i, firstColumn);
+						state().targetCells++;
+						fits = state == SparseBoard.NOT_SHOT || state == s;
 					}
-					catch (ArrayIndexOutOfBoundsException e) {
-						validVertical = false;
+					if (fits) {
+						positions.add(new int[] {horizontal, first});
 					}
 				}
-				if (validVertical) {
-					canShootVertical = true;
-				}
 			}
 			
-			// determines if ship has the possibility to be placed horizontally
-			for (int c = firstShip.getX() - ships[targetShipIndex].getLength() + 1; c <= firstShip.getX(); c++) {
-				boolean validHorizontal = true;
-				for (int i = c; i < c + ships[targetShipIndex].getLength() - 1; i++) {
-					try {
-						if ((board[firstShip.getY()][i].getOccupation() != unknown) && (board[firstShip.getY()][i].getOccupation() != intToLetter(targetShipIndex))) {
-							validHorizontal = false;
-						}
+			for (int[] position : positions) {
+				for (int i = 0; i < length; i++) {
+					int r = position[0] == 1 ? firstRow : position[1] + i;
+					int c = position[0] == 1 ? position[1] + i : firstColumn;
+					if (cellState.applyAsInt(r, c) == SparseBoard.NOT_SHOT) {
+						odds.merge((long) r * columns + c, 1.0 / positions.size(), Double::sum);
 					}
-					catch (ArrayIndexOutOfBoundsException e) {
-						validHorizontal = false;
-					}
-				}
-				if (validHorizontal) {
-					canShootHorizontal = true;
 				}
 			}
-						
-			// if circumstances allow, shoot up
-			if ((lastHitY != 0) && (board[lastHitY - 1][lastHitX].getOccupation() == unknown) && canShootVertical) {
-				guessCoordinate.setX(lastHitX);
-				guessCoordinate.setY(lastHitY - 1);
+		}
+		
+		// equally likely cells are told apart by the placements of the ships not sunk through them, as in the heat map
+		double best = 0;
+		int mostPlacements = 0;
+		int ties = 0;
+		long guess = -1;
+		for (Map.Entry<Long, Double> candidate : odds.entrySet()) {
+			if (candidate.getValue() < best) {
+				continue;
 			}
-			// if circumstances allow, shoot left
-			else if ((lastHitX != 0) && (board[lastHitY][lastHitX - 1].getOccupation() == unknown) && canShootHorizontal) {
-				guessCoordinate.setX(lastHitX - 1);
-				guessCoordinate.setY(lastHitY);
+			int r = (int) (candidate.getKey() / columns);
+			int c = (int) (candidate.getKey() % columns);
+			int placements = 0;
+			for (int s = 0; s < ships.length; s++) {
+				if (shipHitCount[s] < ships[s].getLength()) {
+					placements += openPlacements(rows, columns, r, c, ships[s].getLength(), s, cellState);
+				}
 			}
-			// if circumstances allow, shoot down
-			else if ((lastHitY != board.length - 1) && (board[lastHitY + 1][lastHitX].getOccupation() == unknown) && canShootVertical) {
-				guessCoordinate.setX(lastHitX);
-				guessCoordinate.setY(lastHitY + 1);
+			if (candidate.getValue() > best || placements > mostPlacements) {
+				best = candidate.getValue();
+				mostPlacements = placements;
+				ties = 1;
+				guess = candidate.getKey();
 			}
-			// if circumstances allow, shoot right
-			else if ((lastHitX != board.length - 1) && (board[lastHitY][lastHitX + 1].getOccupation() == unknown) && canShootHorizontal) {
-				guessCoordinate.setX(lastHitX + 1);
-				guessCoordinate.setY(lastHitY);
+			else if (placements == mostPlacements && state().random.nextDouble()*(++ties) < 1) {
+				guess = candidate.getKey();
 			}
 		}
-		
-		// if multiple segments of the targeted ship has been hit
-		
-		// if circumstances allow, shoot vertical - shoot above first ship segment
-		if ((firstShip.getY() > 0) && firstShip.getX() == lastShip.getX() && (board[firstShip.getY() - 1][firstShip.getX()].getOccupation() == unknown)) {
-			guessCoordinate.setX(firstShip.getX());
-			guessCoordinate.setY(firstShip.getY() - 1);
+		if (guess == -1) {
+			return null;
 		}
-		// if circumstances allow, shoot horizontal - shoot to the left of first ship segment
-		else if ((firstShip.getX() > 0) && (firstShip.getY() == lastShip.getY()) && (board[firstShip.getY()][firstShip.getX() - 1].getOccupation() == unknown)) {
-			guessCoordinate.setX(firstShip.getX() - 1);
-			guessCoordinate.setY(firstShip.getY());
+		return new XYCoordinate((int) (guess % columns), (int) (guess / columns));
+	}
+	
+	/**
+	 * Counts the placements of a ship through a cell whose cells are not shot or hit by the ship itself
+	 * 
+	 * @param length - length of the ship
+	 * @param ship - index of the ship
+	 * @param cellState - state of a cell given its row and column (see targetActiveHits)
+	 * @return number of horizontal and vertical placements
+	 */
+	private static int openPlacements(int rows, int columns, int row, int column, int length, int ship, IntBinaryOperator cellState) {
+		int placements = 0;
+		for (int horizontal = 1; horizontal >= 0; horizontal--) {
+			int at = horizontal == 1 ? column : row;
+			int limit = (horizontal == 1 ? columns : rows) - length;
+			for (int first = Math.max(0, at - length + 1); first <= Math.min(at, limit); first++) {
+				boolean fits = true;
+				for (int i = 0; i < length && fits; i++) {
+					int state = horizontal == 1 ? cellState.applyAsInt(row, first + i) : cellState.applyAsInt(first + i, column);
+					state().targetCells++;
+					fits = state == SparseBoard.NOT_SHOT || state == ship;
+				}
+				if (fits) {
+					placements++;
+				}
+			}
 		}
-		// if circumstances allow, shoot vertical - shoot below last ship segment
-		else if ((lastShip.getY() < board.length - 1) && (firstShip.getX() == lastShip.getX()) && (board[lastShip.getY() + 1][lastShip.getX()].getOccupation() == unknown)) {
-			guessCoordinate.setX(lastShip.getX());
-			guessCoordinate.setY(lastShip.getY() + 1);
+		return placements;
+	}
+	
+	/**
+	 * Records a hit of the AI on the list of active hits, and drops the hits of a ship once it is sunk
+	 * 
+	 * @param ships - array of ships to be hunted
+	 * @param shipHitCount - integer array of number of shots that have hit each ship, including this one
+	 * @param shipIndex - index of the ship that was hit
+	 * @param coordinate - coordinate that was hit
+	 */
+	static void recordActiveHit(Ship[] ships, int[] shipHitCount, int shipIndex, XYCoordinate coordinate) {
+		if (shipHitCount[shipIndex] == ships[shipIndex].getLength()) {
+			state().activeHits.removeIf(hit -> hit[0] == shipIndex);
 		}
-		// if circumstances allow, shoot horizontal - shoot to the right of last ship segment
-		else if ((lastShip.getX() < board.length - 1) && (firstShip.getY() == lastShip.getY()) && (board[lastShip.getY()][lastShip.getX() + 1].getOccupation() == unknown)) {
-			guessCoordinate.setX(lastShip.getX() + 1);
-			guessCoordinate.setY(lastShip.getY());
+		else {
+			state().activeHits.add(new int[] {shipIndex, coordinate.getX(), coordinate.getY()});
 		}
-		
-		board[guessCoordinate.getX()][guessCoordinate.getY()].setIsShot(true);
-		
-		return guessCoordinate;
 	}
 	
 	/**
@@ -659,19 +880,233 @@ public class BattleshipNoGUI {
 	 * @return XY coordinate to be guessed
 	 */
 	public static XYCoordinate expertGuess(Block[][] board, Ship[] ships, ArrayList<Boolean> shotsHit, int[] shipHitCount, XYCoordinate lastHit, int numGuesses, char unknown) {
-		XYCoordinate guessCoordinate = new XYCoordinate();
+		XYCoordinate guessCoordinate = null;
+		long start = stats != null ? System.nanoTime() : 0;
+		AIEvents.Guess event = new AIEvents.Guess();
+		event.begin();
 		
 		// if a ship(s) has been shot but not sunk
-		if (targetMode == true) {
+		if (state().targetMode == true) {
+			state().lastGuessMode = MODE_TARGET;
 			guessCoordinate = target(board, ships, shipHitCount, unknown);
 		}
-		else if (numGuesses < 7) {
-			guessCoordinate = huntParity(board, 4);
+		// hunts when no ship is damaged, or when the answers leave no position for the damaged ships
+		if (guessCoordinate == null && numGuesses < state().profile.getParityGuesses()) {
+			state().lastGuessMode = MODE_PARITY;
+			guessCoordinate = huntParity(board, state().profile.getParityModulus());
 		}
-		else {
+		else if (guessCoordinate == null) {
+			state().lastGuessMode = MODE_HEAT_MAP;
 			guessCoordinate = huntHeatMap(board, ships, shipHitCount, unknown);
 		}
 		
+		if (stats != null) {
+			stats.recordMove(state().lastGuessMode, System.nanoTime() - start);
+		}
+		
+		event.end();
+		if (event.shouldCommit()) {
+			event.branch = AIEvents.modeName(state().lastGuessMode);
+			event.guessNumber = numGuesses + 1;
+			if (state().lastGuessMode == MODE_PARITY) {
+				event.cellsEvaluated = state().parityDraws;
+			}
+			else if (state().lastGuessMode == MODE_TARGET) {
+				event.cellsEvaluated = state().targetCells;
+			}
+			else {
+				// one heat map per ship that is not sunk
+				for (int s = 0; s < ships.length; s++) {
+					if (shipHitCount[s] != ships[s].getLength()) {
+						event.cellsEvaluated += board.length * board[0].length;
+					}
+				}
+			}
+			event.commit();
+		}
+		
+		return guessCoordinate;
+	}
+	
+	/**
+	 * Simple guess algorithm on a sparse board: guesses a random cell that has not been fired on before
+	 * - after MAX_RANDOM_DRAWS shot cells in a row, scans the board for an unshot cell instead (see scanUnshot)
+	 * 
+	 * @param board - the AI's view of the user's board
+	 * @return XY coordinate to be guessed, or null if every cell has been shot
+	 */
+	public static XYCoordinate simpleGuess(SparseBoard board) {
+		for (int draw = 0; draw < MAX_RANDOM_DRAWS; draw++) {
+			int randomX = (int) (state().random.nextDouble()*board.getColumns());
+			int randomY = (int) (state().random.nextDouble()*board.getRows());
+			
+			if (!board.isShot(board.cell(randomY, randomX))) {
+				return new XYCoordinate(randomX, randomY);
+			}
+		}
+		return scanUnshot(board, 1);
+	}
+	
+	/**
+	 * Hunts a coordinate on a sparse board using the parity method
+	 * - after MAX_RANDOM_DRAWS draws, scans the parity cells for an unshot one instead (see scanUnshot)
+	 * 
+	 * @param board - the AI's view of the user's board
+	 * @param longestShipLength - target ship length of ship
+	 * @return XY coordinate to be guessed, or null if every parity cell has been shot
+	 */
+	public static XYCoordinate huntParity(SparseBoard board, int longestShipLength) {
+		state().parityDraws = 0;
+		
+		while (state().parityDraws < MAX_RANDOM_DRAWS) {
+			state().parityDraws++;
+			int randomX = (int) (state().random.nextDouble()*board.getColumns());
+			int randomY = (int) (state().random.nextDouble()*board.getRows());
+			
+			if (((randomX + randomY + 1) % longestShipLength == 0) && !board.isShot(board.cell(randomY, randomX))) {
+				return new XYCoordinate(randomX, randomY);
+			}
+		}
+		return scanUnshot(board, longestShipLength);
+	}
+	
+	/**
+	 * Scans a sparse board in row-major order, from a random cell on and wrapping around, for the first unshot parity cell
+	 * - every cell passed over has been shot, so at most the board's shot count + 1 parity cells are looked at
+	 * 
+	 * @param board - the AI's view of the user's board
+	 * @param modulus - parity modulus, 1 to scan every cell
+	 * @return XY coordinate of the unshot cell, or null if every parity cell has been shot
+	 */
+	static XYCoordinate scanUnshot(SparseBoard board, int modulus) {
+		int rows = board.getRows();
+		int columns = board.getColumns();
+		int startRow = (int) (state().random.nextDouble()*rows);
+		int startColumn = (int) (state().random.nextDouble()*columns);
+		long budget = board.getShotCount() + 1L;
+		
+		// the start row comes round again last, for the parity cells left of the start column
+		for (int r = 0; r <= rows && budget > 0; r++) {
+			int row = (startRow + r) % rows;
+			// first column of the row with (column + row + 1) % modulus == 0
+			int first = (modulus - (row + 1) % modulus) % modulus;
+			int column = r == 0 ? startColumn + Math.floorMod(first - startColumn, modulus) : first;
+			for (; column < columns && budget > 0; column += modulus, budget--) {
+				state().parityDraws++;
+				if (!board.isShot(board.cell(row, column))) {
+					return new XYCoordinate(column, row);
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Hunts a coordinate on a sparse board using the heat map method, coarse to fine: the board's hunt grid descends from the whole board
+	 * to the leaf tile with the most placements, and the exact heat map of that tile alone is generated and its hottest cell guessed
+	 * - without a hunt grid (see SparseBoard.trackHunt), a random leaf-sized region is searched instead
+	 * 
+	 * @param board - the AI's view of the user's board
+	 * @param ships - array of ships to be hunted
+	 * @param shipHitCount - integer array of number of shots that have hit each ship
+	 * @return XY coordinate to be guessed
+	 */
+	public static XYCoordinate huntHeatMap(SparseBoard board, Ship[] ships, int[] shipHitCount) {
+		int height = Math.min(HuntGrid.LEAF_SIDE, board.getRows());
+		int width = Math.min(HuntGrid.LEAF_SIDE, board.getColumns());
+		int top;
+		int left;
+		
+		HuntGrid grid = board.getHuntGrid();
+		if (grid != null) {
+			XYCoordinate leaf = grid.bestLeaf(ships, shipHitCount, state().random);
+			if (leaf == null) {
+				return simpleGuess(board);
+			}
+			top = leaf.getY();
+			left = leaf.getX();
+			height = Math.min(height, board.getRows() - top);
+			width = Math.min(width, board.getColumns() - left);
+		}
+		else {
+			top = (int) (state().random.nextDouble()*(board.getRows() - height + 1));
+			left = (int) (state().random.nextDouble()*(board.getColumns() - width + 1));
+		}
+		double[][] heatMap = board.heatMap(top, left, height, width, ships, shipHitCount);
+		
+		// hottest cell of the region, ties broken at random
+		double best = 0;
+		int ties = 0;
+		int guessX = 0;
+		int guessY = 0;
+		for (int r = 0; r < height; r++) {
+			for (int c = 0; c < width; c++) {
+				if (heatMap[r][c] > best) {
+					best = heatMap[r][c];
+					ties = 1;
+					guessX = left + c;
+					guessY = top + r;
+				}
+				else if (heatMap[r][c] == best && best > 0 && state().random.nextDouble()*(++ties) < 1) {
+					guessX = left + c;
+					guessY = top + r;
+				}
+			}
+		}
+		if (best == 0) {
+			return simpleGuess(board);
+		}
+		return new XYCoordinate(guessX, guessY);
+	}
+	
+	/**
+	 * Assuming a ship has been hit but not sunk, targets the most likely cell of the damaged ships on a sparse board (see targetActiveHits)
+	 * 
+	 * @param board - the AI's view of the user's board
+	 * @param ships - array of ships to be hunted
+	 * @param shipHitCount - integer array of number of shots that have hit each ship
+	 * @return XY coordinate to be guessed, or null if no placement of a damaged ship fits its hits
+	 */
+	public static XYCoordinate target(SparseBoard board, Ship[] ships, int[] shipHitCount) {
+		return targetActiveHits(board.getRows(), board.getColumns(), ships, shipHitCount, (row, column) -> board.shotAt(board.cell(row, column)));
+	}
+	
+	/**
+	 * Expert guess algorithm on a sparse board: targets ships that have been hit, otherwise hunts by parity and then by regional heat maps
+	 * 
+	 * @param board - the AI's view of the user's board
+	 * @param ships - array of ships to be hunted
+	 * @param shipHitCount - integer array of number of shots that have hit each ship
+	 * @param numGuesses - number of guesses AI has taken
+	 * @return XY coordinate to be guessed
+	 */
+	public static XYCoordinate expertGuess(SparseBoard board, Ship[] ships, int[] shipHitCount, int numGuesses) {
+		XYCoordinate guessCoordinate = null;
+		AIEvents.Guess event = new AIEvents.Guess();
+		event.begin();
+		
+		if (state().targetMode == true) {
+			state().lastGuessMode = MODE_TARGET;
+			guessCoordinate = target(board, ships, shipHitCount);
+		}
+		if (guessCoordinate == null && numGuesses < state().profile.getParityGuesses()) {
+			state().lastGuessMode = MODE_PARITY;
+			guessCoordinate = huntParity(board, state().profile.getParityModulus());
+		}
+		// once every parity cell has been shot, the heat map hunts the rest
+		if (guessCoordinate == null) {
+			state().lastGuessMode = MODE_HEAT_MAP;
+			guessCoordinate = huntHeatMap(board, ships, shipHitCount);
+		}
+		
+		event.end();
+		if (event.shouldCommit()) {
+			event.branch = AIEvents.modeName(state().lastGuessMode);
+			event.guessNumber = numGuesses + 1;
+			event.cellsEvaluated = state().lastGuessMode == MODE_PARITY ? state().parityDraws : state().lastGuessMode == MODE_TARGET ? state().targetCells : HuntGrid.LEAF_SIDE * HuntGrid.LEAF_SIDE;
+			event.commit();
+		}
+		
 		return guessCoordinate;
 	}
 	
@@ -681,7 +1116,7 @@ public class BattleshipNoGUI {
 		int hitX = 0;
 		int hitY = 0;
 		for (int r = 0; r < unknownBoard.length; r++) {
-			for (int c = 0; c < unknownBoard.length; c++) {
+			for (int c = 0; c < unknownBoard[r].length; c++) {
 				for (int s = 0; s < ships.length; s++) {
 					if (c == coordinateShot.getX() && r == coordinateShot.getY()) {
 						if (answerBoard[r][c].getOccupation() == intToLetter(s)) {
@@ -700,39 +1135,55 @@ public class BattleshipNoGUI {
 		if (shipIndex != -1) {
 			shotsHit.add(true);
 			shipHitCount[shipIndex]++;
-			lastHit.setX(hitX);
-			lastHit.setY(hitY);
+			recordActiveHit(ships, shipHitCount, shipIndex, coordinateShot);
+			state().lastHit.setX(hitX);
+			state().lastHit.setY(hitY);
 			if (shipHitCount[shipIndex] == ships[shipIndex].getLength()) {
-				System.out.println("Sunk, " + ships[shipIndex].getName());
-				targetMode = false;
+				if (Log.enabled(Log.DEBUG)) {
+					Log.debug("AI shot {}: sunk {}", cellName(coordinateShot.getY(), coordinateShot.getX()), ships[shipIndex].getName());
+				}
+				state().targetMode = false;
 								
 				for (int s = 0; s < ships.length; s++) {
 					if (shipHitCount[s] > 0 && shipHitCount[s] < ships[s].getLength()) {
-						targetMode = true;
+						state().targetMode = true;
 					}
 				}
 				
-				gameOver = true;
+				state().gameOver = true;
 				for (int i = 0; i < ships.length; i++) {
 					if (shipHitCount[i] != ships[i].getLength()) {
-						gameOver = false;
+						state().gameOver = false;
 					}
 				}
 			}
 			else {
-				System.out.println("Hit, " + ships[shipIndex].getName());
-				targetMode = true;
+				if (Log.enabled(Log.DEBUG)) {
+					Log.debug("AI shot {}: hit {}", cellName(coordinateShot.getY(), coordinateShot.getX()), ships[shipIndex].getName());
+				}
+				state().targetMode = true;
 			}
 		}
 		else {
-			System.out.println("Miss");
+			if (Log.enabled(Log.DEBUG)) {
+				Log.debug("AI shot {}: miss", cellName(coordinateShot.getY(), coordinateShot.getX()));
+			}
 			shotsHit.add(false);
 			unknownBoard[coordinateShot.getY()][coordinateShot.getX()].setOccupation('-');
 		}
 		
-		displayBoard(unknownBoard);
+		if (Log.enabled(Log.TRACE)) {
+			Log.trace("AI's view of the board\n{}", boardText(unknownBoard));
+		}
 				
-		numGuesses++;
+		state().numGuesses++;
+		
+		if (stats != null) {
+			stats.recordShot(coordinateShot.getY() * unknownBoard[0].length + coordinateShot.getX(), shipIndex != -1);
+			if (state().gameOver) {
+				stats.recordGameOver(state().numGuesses);
+			}
+		}
 	}
 	
 	/**
@@ -746,61 +1197,91 @@ public class BattleshipNoGUI {
 	 * @param shot - whether AI's shot was a hit or miss
 	 */
 	public static void checkComputerGuess(Block[][] unknownBoard, Ship[] ships, ArrayList<Boolean> shotsHit, int[] computerShipHitCount, XYCoordinate coordinateShot, String shot) {
-		int hitX = coordinateShot.getX();
-		int hitY = coordinateShot.getY();
+		int shipIndex = recordComputerGuess(ships, shotsHit, computerShipHitCount, coordinateShot, shot);
+		unknownBoard[coordinateShot.getY()][coordinateShot.getX()].setOccupation(shipIndex == -1 ? '-' : intToLetter(shipIndex));
+		
+		if (stats != null) {
+			stats.recordShot(coordinateShot.getY() * unknownBoard[0].length + coordinateShot.getX(), shipIndex != -1);
+			if (state().gameOver) {
+				stats.recordGameOver(state().numGuesses);
+			}
+		}
+	}
+	
+	/**
+	 * Updates statistics based on whether the AI's guess was a hit or a miss, on a sparse board
+	 * 
+	 * @param unknownBoard - the AI's view of the user's board
+	 * @param ships - array of ships to be hunted
+	 * @param shotsHit - boolean array to track whether AI's guesses are hits or misses
+	 * @param computerShipHitCount - integer array of AI's number of shots that have hit each ship
+	 * @param coordinateShot - last coordinate that AI guessed to shoot at
+	 * @param shot - whether AI's shot was a hit or miss
+	 */
+	public static void checkComputerGuess(SparseBoard unknownBoard, Ship[] ships, ArrayList<Boolean> shotsHit, int[] computerShipHitCount, XYCoordinate coordinateShot, String shot) {
+		int shipIndex = recordComputerGuess(ships, shotsHit, computerShipHitCount, coordinateShot, shot);
+		unknownBoard.markShot(unknownBoard.cell(coordinateShot.getY(), coordinateShot.getX()), shipIndex);
+	}
+	
+	/**
+	 * Updates the hit counts, target mode and game over state for the user's answer to the AI's guess; the caller marks its board
+	 * 
+	 * @return index of the ship that was hit, or -1 for a miss
+	 */
+	private static int recordComputerGuess(Ship[] ships, ArrayList<Boolean> shotsHit, int[] computerShipHitCount, XYCoordinate coordinateShot, String shot) {
+		int shipIndex = -1;
 		
 		// if computer's guess hit ship
 		if (!(shot.equals("-"))) {
 			shotsHit.add(true);
-			lastHit.setX(hitX);
-			lastHit.setY(hitY);
-			int shipIndex = 0;
+			state().lastHit.setX(coordinateShot.getX());
+			state().lastHit.setY(coordinateShot.getY());
 			
 			// determine ship that computer shot
 			for (int s = 0; s < ships.length; s++) {
 				if (shot.equals(ships[s].getName())) {
-					unknownBoard[hitY][hitX].setOccupation(intToLetter(s));
 					computerShipHitCount[s]++;
 					shipIndex = s;
 				}
 			}
+			recordActiveHit(ships, computerShipHitCount, shipIndex, coordinateShot);
 			
 			// if shot destroyed ship
 			if (computerShipHitCount[shipIndex] == ships[shipIndex].getLength()) {
-				targetMode = false;
+				state().targetMode = false;
 				
 				for (int s = 0; s < ships.length; s++) {
 					// if any other ships are shot but not sunk
 					if (computerShipHitCount[s] > 0 && computerShipHitCount[s] < ships[s].getLength()) {
-						targetMode = true;
+						state().targetMode = true;
 					}
 				}
 			}
 			// if any ship has been shot but not sunk
 			else {
-				targetMode = true;
+				state().targetMode = true;
 			}
 		}
 		// if computer's guess is a miss
 		else {
 			shotsHit.add(false);
-			unknownBoard[coordinateShot.getY()][coordinateShot.getX()].setOccupation('-');
 		}
 		
-		gameOver = true;
+		state().gameOver = true;
 		
 		for (int s = 0; s < ships.length; s++) {
 			if (computerShipHitCount[s] != ships[s].getLength()) {
-				gameOver = false;
+				state().gameOver = false;
 			}
 		}
 		
 		// if computer wins
-		if (gameOver) {
-			computerWin = true;
+		if (state().gameOver) {
+			state().computerWin = true;
 		}
 		
-		numGuesses++;
+		state().numGuesses++;
+		return shipIndex;
 	}
 	
 	/**
@@ -817,7 +1298,7 @@ public class BattleshipNoGUI {
 		
 		// checks if user's guess hit ship
 		for (int r = 0; r < computerBoard.length; r++) {
-			for (int c = 0; c < computerBoard.length; c++) {
+			for (int c = 0; c < computerBoard[r].length; c++) {
 				for (int s = 0; s < ships.length; s++) {
 					if (c == coordinateGuessed.getX() && r == coordinateGuessed.getY()) {
 						if (computerBoard[r][c].getOccupation() == intToLetter(s)) {
@@ -835,82 +1316,65 @@ public class BattleshipNoGUI {
 			
 			// if shot destroyed ship
 			if (userShipHitCount[shipIndex] == ships[shipIndex].getLength()) {
-				System.out.println("Sunk, " + ships[shipIndex].getName());
+				state().out.println("Sunk, " + ships[shipIndex].getName());
 			}
 			// if ship is shot but not sunk
 			else {
-				System.out.println("Hit, " + ships[shipIndex].getName());
+				state().out.println("Hit, " + ships[shipIndex].getName());
 			}
 		}
 		// if user's guess is a miss
 		else {
-			System.out.println("Miss");
+			state().out.println("Miss");
 		}
 		
-		gameOver = true;
+		state().gameOver = true;
 		
 		for (int s = 0; s < ships.length; s++) {
 			// if any ships are not sunk yet
 			if (userShipHitCount[s] != ships[s].getLength()) {
-				gameOver = false;
+				state().gameOver = false;
 			}
 		}
 		
-		if (gameOver) {
-			userWin = true;
+		if (state().gameOver) {
+			state().userWin = true;
 		}
 	}
 	
-	public static void main(String[] args) {
-		
-		// declaring variables
-		
-		ArrayList<Boolean> shotsHit = new ArrayList<Boolean>();
-		int boardLength = 10;
-		int numShips = 5;
-		int longestShipLength = 5;
-		int[] shipHitCount = new int[numShips];
-		int[] computerShipHitCount = new int[numShips];
-		int[] userShipHitCount = new int[numShips];
-		
-		Block[][] computerBoard = new Block[boardLength][boardLength];
-		Ship[] ships = new Ship[numShips];
-		char water = '-';
-		char unknown = '?';
-		
-		ships[0] = new Ship("Carrier", 5);
-		ships[1] = new Ship("Battleship", 4);
-		ships[2] = new Ship("Cruiser", 3);
-		ships[3] = new Ship("Submarine", 3);
-		ships[4] = new Ship("Destroyer", 2);
-		
-		// place ships on board
-		placeShips(computerBoard, ships, water);
-		writeBoardToFile(computerBoard);
-		
-		Block[][] userBoard = initializeUserBoard(boardLength);
-				
-		Scanner scan = new Scanner(System.in);
-		Block[][] userGuessesBoard = initializeUserBoard(boardLength);
+	/**
+	 * Plays one interactive game: prompts are printed to the game's output stream and answers are read from the scanner
+	 * 
+	 * @param game - game to be played
+	 * @param scan - scanner the user's answers and guesses are read from
+	 */
+	public static void play(Game game, Scanner scan) {
+		PrintStream out = game.getOut();
+		Ship[] ships = game.getShips();
+		TerminalRenderer renderer = game.getRenderer();
 		
-		System.out.println("Welcome to Battleship!\n");
+		if (renderer != null) {
+			renderer.start();
+			drawBoards(game, renderer);
+		}
+		out.println("Welcome to Battleship!\n");
 		
-		int coinToss = (int) (Math.random()*2);
+		int coinToss = game.coinToss();
 		
 		if (coinToss == 0) {
-			System.out.println("Coin toss has determined that the AI guesses first.");
+			out.println("Coin toss has determined that the AI guesses first.");
 		}
 		else {
-			System.out.println("Coin toss has determined that the user guesses first.");
+			out.println("Coin toss has determined that the user guesses first.");
 		}
 		
 		// game in session
-		while (!gameOver) {
+		while (!game.getGameOver()) {
 			// computer's turn
 			
 			if (coinToss == 0) {
-				XYCoordinate guess = expertGuess(userBoard, ships, shotsHit, computerShipHitCount, lastHit, numGuesses, unknown);
-				System.out.println("Computer guessed: " + intToLetter(guess.getY()) + "" + (guess.getX() + 1));
+				XYCoordinate guess = game.computerMove();
+				out.println("Computer guessed: " + cellName(guess.getY(), guess.getX()));
 				
 				String shot;
 				boolean validInput;
@@ -918,7 +1382,7 @@ public class BattleshipNoGUI {
 				// gather user input for ship hit/miss confirmation
 				do {
 					validInput = false;
-					System.out.println("Please input name of ship (\"-\" for miss):");
+					out.println("Please input name of ship (\"-\" for miss):");
 					shot = scan.nextLine();
 					
 					if (shot.equals("-")) {
@@ -937,66 +1401,103 @@ public class BattleshipNoGUI {
 				} while (validInput == false);
 				
 				// check computer's guess for ship hit/sunk/miss on user's board
-				checkComputerGuess(userBoard, ships, shotsHit, computerShipHitCount, guess, shot);
-				displayBoard(userBoard);
+				game.answerComputerMove(shot);
+				if (renderer != null) {
+					drawBoards(game, renderer);
+				}
+				else {
+					game.displayUserBoard();
+				}
 			}
 			
-			if (computerWin) {
+			if (game.getComputerWin()) {
 				break;
 			}
 			
 			// user's turn
 			
-			boolean validGuess;
-			char userGuessY;
-			int userGuessX = 0;
+			XYCoordinate userGuess;
 			
-			// gather user input for user's guess
+			// gather user input for user's guess (A1 to the last row and column of the board)
 			do {
-				validGuess = false;
-				System.out.println("Please input your guess:");
-				String userGuessXY = scan.nextLine();
-				userGuessY = userGuessXY.charAt(0);
-				for (int i = 0; i < 10; i++) {
-					if (userGuessY == intToLetter(i)) {
-						validGuess = true;
-					}
-				}
-				if (userGuessXY.length() == 2) {
-					userGuessX = Integer.parseInt(userGuessXY.substring(1));
-				}
-				else if (userGuessXY.length() == 3) {
-					userGuessX = Integer.parseInt(userGuessXY.substring(1, 3));
-					if (userGuessX > 10) {
-						validGuess = false;
-					}
-				} else {
-					validGuess = false;
-				}
-			} while (validGuess == false);
-			
-			XYCoordinate userGuess = new XYCoordinate();
-			userGuess.setX(userGuessX - 1);
-			userGuess.setY(letterToInt(userGuessY));
+				out.println("Please input your guess:");
+				userGuess = parseCell(scan.nextLine());
+			} while (userGuess == null || game.cellIndex(userGuess.getY(), userGuess.getX()) == -1);
 			
 			// check user's guess for ship hit/sunk/miss on computer's board
-			checkUserGuess(computerBoard, ships, userShipHitCount, userGuess);
+			game.userShot(userGuess);
+			if (renderer != null) {
+				drawBoards(game, renderer);
+			}
 			
 			coinToss = 0;
 			
-			if (userWin) {
+			if (game.getUserWin()) {
 				break;
 			}
 		}
 		
 		// game over
-		if (computerWin) {
-			System.out.println("\nGAME OVER, you lose. Better luck next time!");
+		if (game.getComputerWin()) {
+			out.println("\nGAME OVER, you lose. Better luck next time!");
+		}
+		else if (game.getUserWin()) {
+			out.println("\nGAME OVER, you win! Congratulations!");
+		}
+		if (renderer != null) {
+			renderer.stop();
 		}
-		else if (userWin) {
-			System.out.println("\nGAME OVER, you win! Congratulations!");
+	}
+	
+	/**
+	 * Redraws the changed cells of the console panels: the AI's shots at the user, the user's shots at the AI and the AI's heat map
+	 * 
+	 * @param game - game being played
+	 * @param renderer - terminal renderer set up with three panels
+	 */
+	static void drawBoards(Game game, TerminalRenderer renderer) {
+		renderer.drawBoard(0, game.getUserBoard(), false);
+		renderer.drawBoard(1, game.getComputerBoard(), true);
+		renderer.drawHeatMap(2, game.heatMap());
+		renderer.present();
+	}
+	
+	public static void main(String[] args) {
+		Log.configure(Log.INFO);
+		
+		// loads tuned AI constants if a profile file is given
+		AIProfile profile = AIProfile.defaults();
+		if (args.length > 0) {
+			try {
+				profile = AIProfile.load(new File(args[0]).toPath());
+			}
+			catch (IOException e) {
+				System.out.println("Could not load AI profile " + args[0] + ", using defaults.");
+			}
+		}
+		
+		// place ships on board
+		Game game = new Game(true, profile, System.out);
+		if (!game.isSparse()) {
+			writeBoardToFile(game.getComputerBoard());
 		}
 		
+		// computes the AI's next shot for every possible answer while the user is typing
+		ExecutorService ponderExecutor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), runnable -> {
+			Thread thread = new Thread(runnable, "ponder");
+			thread.setDaemon(true);
+			return thread;
+		});
+		game.setPonderExecutor(ponderExecutor);
+		
+		// -Dbattleship.ansi=true draws the boards in place instead of printing them after every move (not sparse boards, which are too large to draw)
+		if (Boolean.getBoolean("battleship.ansi") && !game.isSparse()) {
+			game.setRenderer(new TerminalRenderer(System.out, game.getRows(), game.getColumns(), "AI's shots", "Your shots", "AI heat map"));
+		}
+		
+		play(game, new Scanner(System.in));
+		ponderExecutor.shutdownNow();
+		
 	}
 
-}
\ No newline at end of file
+}
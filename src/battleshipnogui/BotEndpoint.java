@@ -0,0 +1,514 @@
+/*
+Project: Battleship
+File: BotEndpoint.java
+Description: Non-blocking endpoint for automated opponents that plays many games per connection with fixed-size binary frames instead of text prompts, on a few selector threads with pooled direct buffers. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Frame layout (8 bytes, big-endian), in both directions:
+	int  game id (chosen by the client, unique per connection)
+	byte type
+	byte cell, low 8 bits (cell = row * columns + column)
+	byte value, unsigned (0 - 255, so ship index + 1 fits for every fleet a profile allows)
+	byte cell, high 8 bits (0 on boards of up to 256 cells, such as the standard 10x10 board)
+
+Client to endpoint:
+	NEW_GAME  value bit 0 set for the simple (Easy) AI
+	SHOT      the client fires at cell
+	RESULT    answer to the AI's shot at cell: 0 for a miss, ship index + 1 for a hit
+Endpoint to client:
+	NEW_GAME  game created; value 1 if the AI shoots first (a SHOT follows)
+	RESULT    result of the client's shot at cell: 0 for a miss, ship index + 1 for a hit
+	SUNK      the client's shot at cell sank ship index value - 1
+	SHOT      the AI fires at cell; the client answers with RESULT
+	GAME_OVER value WINNER_CLIENT or WINNER_AI; the game id can be reused
+	ERROR     value is one of the ERROR_ codes; the frame that caused it is ignored
+
+Frames can be pipelined: a client may send frames for many games without waiting for the answers, which are sent back in order per game.
+*/
+public class BotEndpoint {
+
+	static final int FRAME_SIZE = 8;
+	// frames carry 16-bit cells
+	static final int MAX_CELLS = 1 << 16;
+
+	static final byte NEW_GAME = 1;
+	static final byte SHOT = 2;
+	static final byte RESULT = 3;
+	static final byte SUNK = 4;
+	static final byte GAME_OVER = 5;
+	static final byte ERROR = 6;
+
+	static final byte WINNER_CLIENT = 1;
+	static final byte WINNER_AI = 2;
+
+	static final byte ERROR_UNKNOWN_FRAME = 1;
+	static final byte ERROR_UNKNOWN_GAME = 2;
+	static final byte ERROR_GAME_EXISTS = 3;
+	static final byte ERROR_NOT_YOUR_TURN = 4;
+	static final byte ERROR_BAD_CELL = 5;
+	static final byte ERROR_ALREADY_SHOT = 6;
+	static final byte ERROR_TOO_MANY_GAMES = 7;
+
+	static final int BUFFER_SIZE = 64 * 1024;
+	static final int MAX_GAMES_PER_CONNECTION = 4096;
+	// connections whose answers pile up beyond this many buffers are not read from until the client catches up
+	static final int MAX_PENDING_BUFFERS = 16;
+
+	// the engine's console messages are not needed by bots
+	static final PrintStream NO_OUTPUT = new PrintStream(OutputStream.nullOutputStream());
+
+	private final ServerSocketChannel serverChannel;
+	private final EventLoop[] loops;
+	private final AIProfile profile;
+	private final LongAdder framesIn = new LongAdder();
+	private final LongAdder framesOut = new LongAdder();
+	private final LongAdder gamesStarted = new LongAdder();
+	private final LongAdder gamesFinished = new LongAdder();
+
+	/**
+	 * Opens the endpoint on the loopback interface
+	 *
+	 * @param port - port to listen on
+	 * @param threads - number of selector threads; the AI's moves are computed on them
+	 * @param profile - tunable constants of the expert AI, board size and fleet; the board must have at most 65536 cells
+	 */
+	public BotEndpoint(int port, int threads, AIProfile profile) throws IOException {
+		if ((long) profile.getRows() * profile.getColumns() > MAX_CELLS) {
+			throw new IllegalArgumentException("frames address at most " + MAX_CELLS + " cells");
+		}
+		this.profile = profile;
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+
+		loops = new EventLoop[threads];
+		for (int i = 0; i < threads; i++) {
+			loops[i] = new EventLoop();
+			Thread thread = new Thread(loops[i], "bot-endpoint-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Accepts connections until the endpoint is closed, handing them to the selector threads in turn
+	 */
+	public void serve() throws IOException {
+		int next = 0;
+		while (serverChannel.isOpen()) {
+			SocketChannel channel;
+			try {
+				channel = serverChannel.accept();
+			}
+			catch (IOException e) {
+				if (!serverChannel.isOpen()) {
+					return;
+				}
+				throw e;
+			}
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			loops[next].register(channel);
+			next = (next + 1) % loops.length;
+		}
+	}
+
+	public int getPort() throws IOException {
+		return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+	}
+
+	public void close() throws IOException {
+		serverChannel.close();
+		for (EventLoop loop : loops) {
+			loop.selector.wakeup();
+		}
+	}
+
+	/**
+	 * Summarizes the traffic since the endpoint was opened
+	 *
+	 * @return report line
+	 */
+	public String report() {
+		return "games started=" + gamesStarted.sum() + " finished=" + gamesFinished.sum() + " frames in=" + framesIn.sum() + " out=" + framesOut.sum();
+	}
+
+	/**
+	 * One selector thread with its own buffer pool; every connection stays on the thread it was given to
+	 */
+	private final class EventLoop implements Runnable {
+
+		private final Selector selector;
+		private final ConcurrentLinkedQueue<SocketChannel> newChannels = new ConcurrentLinkedQueue<SocketChannel>();
+		private final ArrayDeque<ByteBuffer> pool = new ArrayDeque<ByteBuffer>();
+		// the client shots of the read burst being handled, at most one per game, fired in one Game.resolveShots call
+		private final int[] batchIds = new int[BUFFER_SIZE / FRAME_SIZE];
+		private final Session[] batchSessions = new Session[BUFFER_SIZE / FRAME_SIZE];
+		private final Game[] batchGames = new Game[BUFFER_SIZE / FRAME_SIZE];
+		private final int[] batchGameIndices = new int[BUFFER_SIZE / FRAME_SIZE];
+		private final long[] batchCells = new long[BUFFER_SIZE / FRAME_SIZE];
+		private final int[] batchResults = new int[BUFFER_SIZE / FRAME_SIZE];
+		private int batchSize = 0;
+
+		EventLoop() throws IOException {
+			selector = Selector.open();
+			for (int i = 0; i < batchGameIndices.length; i++) {
+				batchGameIndices[i] = i;
+			}
+		}
+
+		void register(SocketChannel channel) {
+			newChannels.add(channel);
+			selector.wakeup();
+		}
+
+		ByteBuffer takeBuffer() {
+			ByteBuffer buffer = pool.poll();
+			return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+
+		void releaseBuffer(ByteBuffer buffer) {
+			buffer.clear();
+			pool.push(buffer);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (serverChannel.isOpen()) {
+					selector.select();
+
+					SocketChannel channel;
+					while ((channel = newChannels.poll()) != null) {
+						Connection connection = new Connection(this, channel);
+						connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+					}
+
+					for (SelectionKey key : selector.selectedKeys()) {
+						Connection connection = (Connection) key.attachment();
+						try {
+							if (key.isValid() && key.isWritable()) {
+								connection.flush();
+							}
+							if (key.isValid() && key.isReadable()) {
+								connection.read();
+							}
+						}
+						catch (IOException e) {
+							connection.close();
+						}
+					}
+					selector.selectedKeys().clear();
+				}
+			}
+			catch (IOException e) {
+				Log.error("bot endpoint stopped: {}", e);
+			}
+		}
+	}
+
+	/**
+	 * Per-game state of a connection: the game and whether the AI is waiting for the client to answer its shot
+	 */
+	private static final class Session {
+
+		final Game game;
+		boolean awaitingAnswer = false;
+		// whether a shot of the client waits in the event loop's batch
+		boolean batched = false;
+
+		Session(Game game) {
+			this.game = game;
+		}
+	}
+
+	private final class Connection {
+
+		private final EventLoop loop;
+		private final SocketChannel channel;
+		private final HashMap<Integer, Session> sessions = new HashMap<Integer, Session>();
+		private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<ByteBuffer>();
+		private ByteBuffer in;
+		private ByteBuffer out;
+		private boolean closed = false;
+		SelectionKey key;
+
+		Connection(EventLoop loop, SocketChannel channel) {
+			this.loop = loop;
+			this.channel = channel;
+			in = loop.takeBuffer();
+			out = loop.takeBuffer();
+		}
+
+		/**
+		 * Reads whatever has arrived, handles every complete frame and sends all answers with as few writes as possible
+		 * - the client's shots are collected and fired in one batch, which is resolved early when another frame of a batched game comes
+		 */
+		void read() throws IOException {
+			int read = channel.read(in);
+			if (read < 0) {
+				close();
+				return;
+			}
+
+			in.flip();
+			int frames = 0;
+			while (in.remaining() >= FRAME_SIZE) {
+				int gameId = in.getInt();
+				byte type = in.get();
+				int cell = in.get() & 0xFF;
+				int value = in.get() & 0xFF;
+				cell |= (in.get() & 0xFF) << 8;
+				handle(gameId, type, cell, value);
+				frames++;
+			}
+			resolveBatch();
+			in.compact();
+			framesIn.add(frames);
+
+			flush();
+		}
+
+		void handle(int gameId, byte type, int cell, int value) {
+			Session session = sessions.get(gameId);
+			// the game's answers are sent in order, so its batched shot is answered first
+			if (session != null && session.batched) {
+				resolveBatch();
+				session = sessions.get(gameId);
+			}
+
+			if (type == NEW_GAME) {
+				if (session != null) {
+					send(gameId, ERROR, cell, ERROR_GAME_EXISTS);
+				}
+				else if (sessions.size() >= MAX_GAMES_PER_CONNECTION) {
+					send(gameId, ERROR, cell, ERROR_TOO_MANY_GAMES);
+				}
+				else {
+					session = new Session(new Game((value & 1) == 0, profile, NO_OUTPUT));
+					sessions.put(gameId, session);
+					gamesStarted.increment();
+
+					boolean aiFirst = session.game.coinToss() == 0;
+					send(gameId, NEW_GAME, 0, aiFirst ? 1 : 0);
+					if (aiFirst) {
+						aiMove(gameId, session);
+					}
+				}
+				return;
+			}
+
+			if (session == null) {
+				send(gameId, ERROR, cell, ERROR_UNKNOWN_GAME);
+				return;
+			}
+			if (cell >= session.game.getRows() * session.game.getColumns()) {
+				send(gameId, ERROR, cell, ERROR_BAD_CELL);
+				return;
+			}
+
+			if (type == SHOT) {
+				clientShot(gameId, session, cell);
+			}
+			else if (type == RESULT) {
+				clientAnswer(gameId, session, cell, value);
+			}
+			else {
+				send(gameId, ERROR, cell, ERROR_UNKNOWN_FRAME);
+			}
+		}
+
+		void clientShot(int gameId, Session session, int cell) {
+			if (session.awaitingAnswer) {
+				send(gameId, ERROR, cell, ERROR_NOT_YOUR_TURN);
+				return;
+			}
+			int i = loop.batchSize++;
+			loop.batchIds[i] = gameId;
+			loop.batchSessions[i] = session;
+			loop.batchGames[i] = session.game;
+			loop.batchCells[i] = cell;
+			session.batched = true;
+		}
+
+		/**
+		 * Fires the batched shots of the client and answers them in the order they came
+		 */
+		void resolveBatch() {
+			int count = loop.batchSize;
+			if (count == 0) {
+				return;
+			}
+			Game.resolveShots(loop.batchGames, loop.batchGameIndices, loop.batchCells, loop.batchResults, count);
+			loop.batchSize = 0;
+			for (int i = 0; i < count; i++) {
+				Session session = loop.batchSessions[i];
+				session.batched = false;
+				loop.batchSessions[i] = null;
+				loop.batchGames[i] = null;
+				shotResult(loop.batchIds[i], session, (int) loop.batchCells[i], loop.batchResults[i]);
+			}
+		}
+
+		void shotResult(int gameId, Session session, int cell, int result) {
+			if ((result & Game.SHOT_KIND_MASK) == Game.SHOT_INVALID) {
+				send(gameId, ERROR, cell, ERROR_ALREADY_SHOT);
+				return;
+			}
+
+			int shipId = result >>> Game.SHOT_SHIP_SHIFT & 0xFF;
+			send(gameId, RESULT, cell, shipId);
+			if ((result & Game.SHOT_KIND_MASK) == Game.SHOT_SUNK) {
+				send(gameId, SUNK, cell, shipId);
+			}
+
+			if ((result & Game.SHOT_GAME_OVER) != 0) {
+				finish(gameId, WINNER_CLIENT);
+			}
+			else {
+				aiMove(gameId, session);
+			}
+		}
+
+		void clientAnswer(int gameId, Session session, int cell, int value) {
+			Game game = session.game;
+			XYCoordinate guess = game.getPendingGuess();
+
+			if (!session.awaitingAnswer || cell != game.cellIndex(guess.getY(), guess.getX())) {
+				send(gameId, ERROR, cell, ERROR_NOT_YOUR_TURN);
+				return;
+			}
+			Ship[] ships = game.getShips();
+			if (value > ships.length) {
+				send(gameId, ERROR, cell, ERROR_UNKNOWN_FRAME);
+				return;
+			}
+
+			session.awaitingAnswer = false;
+			game.answerComputerMove(value == 0 ? "-" : ships[value - 1].getName());
+			if (game.getComputerWin()) {
+				finish(gameId, WINNER_AI);
+			}
+		}
+
+		void aiMove(int gameId, Session session) {
+			XYCoordinate guess = session.game.computerMove();
+			session.awaitingAnswer = true;
+			send(gameId, SHOT, (int) session.game.cellIndex(guess.getY(), guess.getX()), 0);
+		}
+
+		void finish(int gameId, byte winner) {
+			sessions.remove(gameId);
+			gamesFinished.increment();
+			send(gameId, GAME_OVER, 0, winner);
+		}
+
+		/**
+		 * Queues one frame; full buffers are kept in order until the channel accepts them
+		 */
+		void send(int gameId, byte type, int cell, int value) {
+			if (out.remaining() < FRAME_SIZE) {
+				out.flip();
+				pending.add(out);
+				out = loop.takeBuffer();
+			}
+			out.putInt(gameId);
+			out.put(type);
+			out.put((byte) cell);
+			out.put((byte) value);
+			out.put((byte) (cell >>> 8));
+			framesOut.increment();
+		}
+
+		void flush() throws IOException {
+			if (out.position() > 0) {
+				out.flip();
+				pending.add(out);
+				out = loop.takeBuffer();
+			}
+
+			while (!pending.isEmpty()) {
+				ByteBuffer head = pending.peek();
+				channel.write(head);
+				if (head.hasRemaining()) {
+					break;
+				}
+				loop.releaseBuffer(pending.poll());
+			}
+
+			if (key.isValid()) {
+				int ops = pending.size() < MAX_PENDING_BUFFERS ? SelectionKey.OP_READ : 0;
+				key.interestOps(pending.isEmpty() ? ops : ops | SelectionKey.OP_WRITE);
+			}
+		}
+
+		void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			key.cancel();
+			try {
+				channel.close();
+			}
+			catch (IOException e) {
+				// the connection is gone either way
+			}
+			loop.releaseBuffer(in);
+			loop.releaseBuffer(out);
+			for (ByteBuffer buffer : pending) {
+				loop.releaseBuffer(buffer);
+			}
+			pending.clear();
+			sessions.clear();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 4041;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		AIProfile profile = args.length > 2 ? AIProfile.load(Paths.get(args[2])) : AIProfile.defaults();
+
+		Log.configure(Log.WARN);
+		BotEndpoint endpoint = new BotEndpoint(port, threads, profile);
+		System.out.println("Battleship bot endpoint listening on port " + endpoint.getPort());
+		Metrics.startFromProperties(System.out);
+
+		Thread reporter = new Thread(() -> {
+			try {
+				while (true) {
+					Thread.sleep(10000);
+					System.out.println(endpoint.report());
+				}
+			}
+			catch (InterruptedException e) {
+				// endpoint shutting down
+			}
+		}, "bot-endpoint-report");
+		reporter.setDaemon(true);
+		reporter.start();
+
+		endpoint.serve();
+	}
+
+}
@@ -0,0 +1,269 @@
+/*
+Project: Battleship
+File: ColumnCodec.java
+Description: Encodes and decodes a chunk of integer column values using run-length, dictionary or bit-packed encoding. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+class ColumnCodec {
+
+	static final byte RUN_LENGTH = 1;
+	static final byte DICTIONARY = 2;
+	static final byte BIT_PACKED = 3;
+	static final byte RAW_FLOAT = 4;
+
+	static final int MAX_DICTIONARY_SIZE = 256;
+
+	/**
+	 * Encodes integer values with whichever encoding produces the fewest bytes
+	 *
+	 * @param values - column values
+	 * @param count - number of values to encode
+	 * @param out - stream the encoding byte and encoded values are written to
+	 */
+	static void encodeLongs(long[] values, int count, ByteArrayOutputStream out) {
+		ByteArrayOutputStream runLength = new ByteArrayOutputStream();
+		encodeRunLength(values, count, runLength);
+
+		ByteArrayOutputStream best = runLength;
+		byte bestEncoding = RUN_LENGTH;
+
+		ByteArrayOutputStream bitPacked = new ByteArrayOutputStream();
+		encodeBitPacked(values, count, bitPacked);
+		if (bitPacked.size() < best.size()) {
+			best = bitPacked;
+			bestEncoding = BIT_PACKED;
+		}
+
+		ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+		if (encodeDictionary(values, count, dictionary) && dictionary.size() < best.size()) {
+			best = dictionary;
+			bestEncoding = DICTIONARY;
+		}
+
+		out.write(bestEncoding);
+		out.write(best.toByteArray(), 0, best.size());
+	}
+
+	/**
+	 * Decodes integer values written by encodeLongs
+	 *
+	 * @param in - buffer positioned at the encoding byte
+	 * @param count - number of values encoded
+	 * @return decoded values
+	 */
+	static long[] decodeLongs(ByteBuffer in, int count) {
+		long[] values = new long[count];
+		byte encoding = in.get();
+
+		if (encoding == RUN_LENGTH) {
+			int index = 0;
+			while (index < count) {
+				long value = zigZagDecode(readVarLong(in));
+				int run = (int) readVarLong(in);
+				Arrays.fill(values, index, index + run, value);
+				index += run;
+			}
+		}
+		else if (encoding == BIT_PACKED) {
+			long min = zigZagDecode(readVarLong(in));
+			int width = in.get();
+			unpack(in, values, count, width);
+			for (int i = 0; i < count; i++) {
+				values[i] += min;
+			}
+		}
+		else if (encoding == DICTIONARY) {
+			int dictionarySize = (int) readVarLong(in);
+			long[] dictionary = new long[dictionarySize];
+			for (int d = 0; d < dictionarySize; d++) {
+				dictionary[d] = zigZagDecode(readVarLong(in));
+			}
+			unpack(in, values, count, bitWidth(dictionarySize - 1));
+			for (int i = 0; i < count; i++) {
+				values[i] = dictionary[(int) values[i]];
+			}
+		}
+		else {
+			throw new IllegalArgumentException("Unknown integer column encoding " + encoding);
+		}
+
+		return values;
+	}
+
+	/**
+	 * Encodes float values as their raw bits
+	 *
+	 * @param values - column values
+	 * @param count - number of values to encode
+	 * @param out - stream the encoding byte and encoded values are written to
+	 */
+	static void encodeFloats(float[] values, int count, ByteArrayOutputStream out) {
+		out.write(RAW_FLOAT);
+		ByteBuffer buffer = ByteBuffer.allocate(count * 4);
+		for (int i = 0; i < count; i++) {
+			buffer.putFloat(values[i]);
+		}
+		out.write(buffer.array(), 0, buffer.position());
+	}
+
+	/**
+	 * Decodes float values written by encodeFloats
+	 *
+	 * @param in - buffer positioned at the encoding byte
+	 * @param count - number of values encoded
+	 * @return decoded values
+	 */
+	static float[] decodeFloats(ByteBuffer in, int count) {
+		byte encoding = in.get();
+		if (encoding != RAW_FLOAT) {
+			throw new IllegalArgumentException("Unknown float column encoding " + encoding);
+		}
+		float[] values = new float[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = in.getFloat();
+		}
+		return values;
+	}
+
+	private static void encodeRunLength(long[] values, int count, ByteArrayOutputStream out) {
+		int index = 0;
+		while (index < count) {
+			int run = 1;
+			while (index + run < count && values[index + run] == values[index]) {
+				run++;
+			}
+			writeVarLong(out, zigZagEncode(values[index]));
+			writeVarLong(out, run);
+			index += run;
+		}
+	}
+
+	private static void encodeBitPacked(long[] values, int count, ByteArrayOutputStream out) {
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		for (int i = 0; i < count; i++) {
+			min = Math.min(min, values[i]);
+			max = Math.max(max, values[i]);
+		}
+		if (count == 0) {
+			min = 0;
+			max = 0;
+		}
+
+		int width = bitWidth(max - min);
+		writeVarLong(out, zigZagEncode(min));
+		out.write(width);
+
+		long[] offsets = new long[count];
+		for (int i = 0; i < count; i++) {
+			offsets[i] = values[i] - min;
+		}
+		pack(out, offsets, count, width);
+	}
+
+	private static boolean encodeDictionary(long[] values, int count, ByteArrayOutputStream out) {
+		long[] dictionary = new long[MAX_DICTIONARY_SIZE];
+		int dictionarySize = 0;
+		long[] indices = new long[count];
+
+		// builds the dictionary in order of first appearance, giving up once it grows too large
+		for (int i = 0; i < count; i++) {
+			int d = 0;
+			while (d < dictionarySize && dictionary[d] != values[i]) {
+				d++;
+			}
+			if (d == dictionarySize) {
+				if (dictionarySize == MAX_DICTIONARY_SIZE) {
+					return false;
+				}
+				dictionary[dictionarySize++] = values[i];
+			}
+			indices[i] = d;
+		}
+
+		writeVarLong(out, dictionarySize);
+		for (int d = 0; d < dictionarySize; d++) {
+			writeVarLong(out, zigZagEncode(dictionary[d]));
+		}
+		pack(out, indices, count, bitWidth(dictionarySize - 1));
+		return true;
+	}
+
+	private static void pack(ByteArrayOutputStream out, long[] values, int count, int width) {
+		long buffer = 0;
+		int bits = 0;
+		for (int i = 0; i < count; i++) {
+			for (int b = 0; b < width; b++) {
+				buffer |= ((values[i] >>> b) & 1L) << bits;
+				bits++;
+				if (bits == 8) {
+					out.write((int) buffer);
+					buffer = 0;
+					bits = 0;
+				}
+			}
+		}
+		if (bits > 0) {
+			out.write((int) buffer);
+		}
+	}
+
+	private static void unpack(ByteBuffer in, long[] values, int count, int width) {
+		int current = 0;
+		int bits = 8;
+		for (int i = 0; i < count; i++) {
+			long value = 0;
+			for (int b = 0; b < width; b++) {
+				if (bits == 8) {
+					current = in.get() & 0xFF;
+					bits = 0;
+				}
+				value |= (long) ((current >>> bits) & 1) << b;
+				bits++;
+			}
+			values[i] = value;
+		}
+	}
+
+	private static int bitWidth(long value) {
+		return 64 - Long.numberOfLeadingZeros(value);
+	}
+
+	private static long zigZagEncode(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long zigZagDecode(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeVarLong(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static long readVarLong(ByteBuffer in) {
+		long value = 0;
+		int shift = 0;
+		while (true) {
+			int b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+			shift += 7;
+		}
+	}
+
+}
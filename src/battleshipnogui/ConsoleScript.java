@@ -0,0 +1,346 @@
+/*
+Project: Battleship
+File: ConsoleScript.java
+Description: Plays scripted games through the console game's own prompts and input parsing at full speed, with buffered output and one summary line per game, for regression runs and load tests of the console path. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+Script format (one game per block, # starts a comment):
+	game <name> [seed <n>] [easy] [repeat <n>]   repeat plays the game n times with seeds n, n + 1, ...
+	userfleet <ship> <cell> <h|v> ...            the scripted user's ships; the answers to the AI's guesses come from them
+	aifleet <ship> <cell> <h|v> ...              optional, replaces the AI's own placement
+	shots <cell> ...                             optional, the user's first guesses; after them the user guesses A1, A2, ... skipping cells already shot
+	end
+Summary line per game: <name> seed=<n> winner=ai|user ai_shots=<n> user_shots=<n> us=<microseconds>
+*/
+public class ConsoleScript {
+
+	/**
+	 * One game block of a script
+	 */
+	static final class ScriptedGame {
+
+		String name;
+		long seed;
+		boolean expert = true;
+		int repeat = 1;
+		String[] userFleet;
+		String[] aiFleet;
+		List<String> shots = new ArrayList<String>();
+	}
+
+	/**
+	 * Types the scripted user's lines into the console game, one line each time the game reads, until the game is over
+	 */
+	static final class ScriptedPlayer implements Readable {
+
+		private final Game game;
+		// only the scripted user's ship cells, so scripts can play on boards of any size
+		private final SparseBoard userLayout;
+		private final List<String> shots;
+		private int nextShot = 0;
+		private long nextCell = 0;
+		private String unread = "";
+		int answers = 0;
+		int guesses = 0;
+
+		ScriptedPlayer(Game game, SparseBoard userLayout, List<String> shots) {
+			this.game = game;
+			this.userLayout = userLayout;
+			this.shots = shots;
+		}
+
+		@Override
+		public int read(CharBuffer buffer) {
+			// the scanner's buffer may have less room than a line, so the rest is kept for the next read
+			if (!unread.isEmpty()) {
+				return readUnread(buffer);
+			}
+			if (game.getGameOver()) {
+				return -1;
+			}
+			String line;
+			if (game.getAwaitingAnswer()) {
+				XYCoordinate guess = game.getPendingGuess();
+				int ship = userLayout.shipAt(userLayout.cell(guess.getY(), guess.getX()));
+				line = ship == -1 ? "-" : game.getShips()[ship].getName();
+				answers++;
+			}
+			else {
+				line = nextGuess();
+				guesses++;
+			}
+			unread = line + "\n";
+			return readUnread(buffer);
+		}
+
+		private int readUnread(CharBuffer buffer) {
+			int count = Math.min(buffer.remaining(), unread.length());
+			buffer.put(unread, 0, count);
+			unread = unread.substring(count);
+			return count;
+		}
+
+		private String nextGuess() {
+			if (nextShot < shots.size()) {
+				return shots.get(nextShot++);
+			}
+			int columns = game.getColumns();
+			while (nextCell < (long) game.getRows() * columns - 1 && game.isUserShot(nextCell)) {
+				nextCell++;
+			}
+			return BattleshipNoGUI.cellName((int) (nextCell / columns), (int) (nextCell % columns));
+		}
+	}
+
+	/**
+	 * Reads every game block of a script
+	 *
+	 * @param in - script text
+	 * @return games in script order
+	 * @throws IOException if a line cannot be read or understood
+	 */
+	static List<ScriptedGame> parse(BufferedReader in) throws IOException {
+		List<ScriptedGame> games = new ArrayList<ScriptedGame>();
+		ScriptedGame current = null;
+		String line;
+		int lineNumber = 0;
+		while ((line = in.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] words = line.split("\\s+");
+			try {
+				if (words[0].equals("game")) {
+					current = new ScriptedGame();
+					current.name = words.length > 1 ? words[1] : "game" + (games.size() + 1);
+					current.seed = games.size() + 1;
+					for (int w = 2; w < words.length; w++) {
+						if (words[w].equals("easy")) {
+							current.expert = false;
+						}
+						else if (words[w].equals("seed")) {
+							current.seed = Long.parseLong(words[++w]);
+						}
+						else if (words[w].equals("repeat")) {
+							current.repeat = Integer.parseInt(words[++w]);
+						}
+					}
+				}
+				else if (current == null) {
+					throw new IOException("line " + lineNumber + ": expected game");
+				}
+				else if (words[0].equals("userfleet")) {
+					current.userFleet = words;
+				}
+				else if (words[0].equals("aifleet")) {
+					current.aiFleet = words;
+				}
+				else if (words[0].equals("shots")) {
+					for (int w = 1; w < words.length; w++) {
+						current.shots.add(words[w]);
+					}
+				}
+				else if (words[0].equals("end")) {
+					if (current.userFleet == null) {
+						throw new IOException("line " + lineNumber + ": game " + current.name + " has no userfleet");
+					}
+					games.add(current);
+					current = null;
+				}
+				else {
+					throw new IOException("line " + lineNumber + ": unknown command " + words[0]);
+				}
+			}
+			catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				throw new IOException("line " + lineNumber + ": " + line);
+			}
+		}
+		if (current != null) {
+			throw new IOException("game " + current.name + " has no end");
+		}
+		return games;
+	}
+
+	/**
+	 * Plays one game through BattleshipNoGUI.play
+	 *
+	 * @param script - game block
+	 * @param seed - seed of this repetition
+	 * @param profile - AI constants, board size and fleet
+	 * @param transcript - stream the console output goes to
+	 * @return summary line
+	 */
+	static String playGame(ScriptedGame script, long seed, AIProfile profile, PrintStream transcript) {
+		long start = System.nanoTime();
+		Game game = new Game(script.expert, profile, transcript, seed);
+		Ship[] ships = game.getShips();
+
+		Fleet userFleet = Fleet.parse(script.userFleet, 1, ships);
+		SparseBoard userLayout = new SparseBoard(game.getRows(), game.getColumns(), 64);
+		if (userFleet == null || !userFleet.placeOn(userLayout, ships)) {
+			return script.name + " seed=" + seed + " error=userfleet";
+		}
+		if (script.aiFleet != null) {
+			Fleet aiFleet = Fleet.parse(script.aiFleet, 1, ships);
+			if (aiFleet == null || !game.setFleet(aiFleet)) {
+				return script.name + " seed=" + seed + " error=aifleet";
+			}
+		}
+
+		ScriptedPlayer player = new ScriptedPlayer(game, userLayout, script.shots);
+		BattleshipNoGUI.play(game, new Scanner(player));
+		transcript.flush();
+
+		long micros = (System.nanoTime() - start) / 1000;
+		return script.name + " seed=" + seed + " winner=" + (game.getComputerWin() ? "ai" : "user") + " ai_shots=" + player.answers
+				+ " user_shots=" + player.guesses + " us=" + micros;
+	}
+
+	/**
+	 * Plays every game of a script, on several threads if asked, and writes the summaries in script order as the games finish
+	 *
+	 * @param games - game blocks
+	 * @param threads - number of threads playing games
+	 * @param profile - AI constants, board size and fleet of every game
+	 * @param summary - stream the summary lines are written to
+	 * @param transcript - stream the console output of every game is written to, in script order, or null for none
+	 * @return number of games played
+	 */
+	static long run(List<ScriptedGame> games, int threads, AIProfile profile, PrintStream summary, OutputStream transcript) throws IOException, InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		// games in flight, oldest first; at most a few per thread, so memory does not grow with the number of games
+		ArrayDeque<Future<String[]>> results = new ArrayDeque<Future<String[]>>();
+		int window = threads * 4;
+		long played = 0;
+		try {
+			for (ScriptedGame script : games) {
+				for (int r = 0; r < script.repeat; r++) {
+					if (results.size() == window) {
+						write(results.poll(), summary, transcript);
+						played++;
+					}
+					long seed = script.seed + r;
+					results.add(pool.submit(() -> {
+						if (transcript == null) {
+							return new String[] {playGame(script, seed, profile, Game.NO_OUTPUT), null};
+						}
+						ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+						PrintStream out = new PrintStream(buffer, false, StandardCharsets.UTF_8);
+						String line = playGame(script, seed, profile, out);
+						return new String[] {line, buffer.toString(StandardCharsets.UTF_8)};
+					}));
+				}
+			}
+			while (!results.isEmpty()) {
+				write(results.poll(), summary, transcript);
+				played++;
+			}
+			return played;
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Waits for a game and writes its summary line and transcript
+	 */
+	private static void write(Future<String[]> result, PrintStream summary, OutputStream transcript) throws IOException, InterruptedException {
+		String[] played;
+		try {
+			played = result.get();
+		}
+		catch (ExecutionException e) {
+			throw new IOException("scripted game failed", e.getCause());
+		}
+		summary.println(played[0]);
+		if (transcript != null) {
+			transcript.write(played[1].getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		// ConsoleScript [script | -] [-threads n] [-profile file] [-summary file] [-transcript file] [-verbose]
+		String scriptPath = "-";
+		String summaryPath = null;
+		String transcriptPath = null;
+		int threads = 1;
+		AIProfile profile = AIProfile.defaults();
+		Log.configure(Log.OFF);
+		for (int a = 0; a < args.length; a++) {
+			switch (args[a]) {
+				case "-threads":
+					threads = Math.max(1, Integer.parseInt(args[++a]));
+					break;
+				case "-profile":
+					profile = AIProfile.load(Paths.get(args[++a]));
+					break;
+				case "-summary":
+					summaryPath = args[++a];
+					break;
+				case "-transcript":
+					transcriptPath = args[++a];
+					break;
+				case "-verbose":
+					Log.setLevel(Log.TRACE);
+					break;
+				default:
+					scriptPath = args[a];
+			}
+		}
+
+		List<ScriptedGame> games;
+		try (InputStream in = scriptPath.equals("-") ? System.in : new FileInputStream(scriptPath)) {
+			games = parse(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+		}
+
+		OutputStream summaryStream = summaryPath == null ? System.out : new FileOutputStream(summaryPath);
+		OutputStream transcript = transcriptPath == null ? null : new BufferedOutputStream(new FileOutputStream(transcriptPath), 1 << 16);
+		PrintStream summary = new PrintStream(new BufferedOutputStream(summaryStream, 1 << 16), false, StandardCharsets.UTF_8);
+		long start = System.nanoTime();
+		long played;
+		try {
+			played = run(games, threads, profile, summary, transcript);
+		}
+		finally {
+			summary.flush();
+			if (transcript != null) {
+				transcript.close();
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		summary.println("games=" + played + " seconds=" + String.format("%.3f", seconds) + " games_per_second=" + String.format("%.0f", played / seconds));
+		summary.close();
+		Log.flush(1000);
+	}
+
+}
@@ -0,0 +1,427 @@
+/*
+Project: Battleship
+File: EngineProtocol.java
+Description: Line-based engine protocol over standard input and output, in the spirit of UCI for chess engines, so tournament managers, bots and other front ends can drive the AI without its console or GUI. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+Commands (one per line, answers in brackets):
+	battleship                        [id name, id author, option lines, battleshipok]
+	isready                           [readyok]
+	setoption name <n> value <v>      difficulty easy|hard, movetime <ms> (0 = no limit), profile <path>
+	newgame [seed]                    new game with the AI's ships placed by its own algorithm
+	setfleet <ship> <cell> <h|v> ...  places the AI's ships instead, e.g. setfleet Carrier A1 h Battleship C3 v ...
+	fleet                             [fleet <ship> <cell> <h|v> ...]
+	go [movetime <ms>]                starts thinking about the AI's shot [bestshot <cell>]
+	stop                              answers the running go at once with the best shot available
+	result miss | hit <ship> | sunk <ship>   result of the AI's last shot [gameover ai if it won]
+	shot <cell>                       the opponent shoots at the AI [result miss | hit <ship> | sunk <ship>, gameover opponent]
+	quit
+Errors are reported as info string error <message>.
+*/
+public class EngineProtocol {
+
+	private final BufferedReader in;
+	private final PrintStream out;
+	private final ExecutorService searcher;
+	private final ScheduledExecutorService clock;
+
+	private boolean expert = true;
+	private long defaultMoveTime = 0;
+	private AIProfile profile = AIProfile.defaults();
+	private Game game;
+	private Search search;
+
+	/**
+	 * One go command: answered exactly once, by the search finishing, the clock running out or stop
+	 */
+	private static final class Search {
+
+		final AtomicBoolean answered = new AtomicBoolean();
+		Future<?> task;
+		ScheduledFuture<?> timer;
+	}
+
+	/**
+	 * Creates an engine talking over a pair of streams
+	 *
+	 * @param input - commands
+	 * @param output - answers
+	 */
+	public EngineProtocol(Reader input, PrintStream output) {
+		this.in = new BufferedReader(input);
+		this.out = output;
+		this.searcher = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "engine-search"));
+		this.clock = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "engine-clock"));
+	}
+
+	/**
+	 * Reads and executes commands until quit or the end of input
+	 */
+	public void run() throws IOException {
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] words = line.trim().split("\\s+");
+				if (words[0].equals("quit")) {
+					break;
+				}
+				if (!words[0].isEmpty()) {
+					execute(words);
+				}
+			}
+		}
+		finally {
+			searcher.shutdownNow();
+			clock.shutdownNow();
+		}
+	}
+
+	/**
+	 * Executes one command
+	 *
+	 * @param words - command followed by its arguments
+	 */
+	void execute(String[] words) {
+		switch (words[0]) {
+			case "battleship":
+				send("id name Battleship AI");
+				send("id author Emily Au");
+				send("option name difficulty type combo default hard var easy var hard");
+				send("option name movetime type spin default 0 min 0 max 600000");
+				send("option name profile type string default <defaults>");
+				send("battleshipok");
+				break;
+			case "isready":
+				send("readyok");
+				break;
+			case "setoption":
+				setOption(words);
+				break;
+			case "newgame":
+				newGame(words);
+				break;
+			case "setfleet":
+				setFleet(words);
+				break;
+			case "fleet":
+				sendFleet();
+				break;
+			case "go":
+				go(words);
+				break;
+			case "stop":
+				stop();
+				break;
+			case "result":
+				result(words);
+				break;
+			case "shot":
+				shot(words);
+				break;
+			default:
+				error("unknown command " + words[0]);
+		}
+	}
+
+	private void setOption(String[] words) {
+		if (words.length < 5 || !words[1].equals("name") || !words[3].equals("value")) {
+			error("usage: setoption name <name> value <value>");
+			return;
+		}
+		String value = words[4];
+		switch (words[2].toLowerCase()) {
+			case "difficulty":
+				expert = !value.equalsIgnoreCase("easy");
+				break;
+			case "movetime":
+				try {
+					defaultMoveTime = Math.max(0, Long.parseLong(value));
+				}
+				catch (NumberFormatException e) {
+					error("movetime must be a number of milliseconds");
+				}
+				break;
+			case "profile":
+				try {
+					profile = AIProfile.load(Paths.get(value));
+				}
+				catch (IOException e) {
+					error("could not load profile " + value);
+				}
+				break;
+			default:
+				error("unknown option " + words[2]);
+		}
+	}
+
+	private synchronized void newGame(String[] words) {
+		abandonSearch();
+		if (words.length > 1) {
+			try {
+				game = new Game(expert, profile, Game.NO_OUTPUT, Long.parseLong(words[1]));
+				return;
+			}
+			catch (NumberFormatException e) {
+				error("seed must be a number");
+				return;
+			}
+		}
+		game = new Game(expert, profile, Game.NO_OUTPUT);
+	}
+
+	private synchronized void setFleet(String[] words) {
+		if (!requireGame()) {
+			return;
+		}
+		Fleet fleet = Fleet.parse(words, 1, game.getShips());
+		if (fleet == null) {
+			error("usage: setfleet <ship> <cell> <h|v> for every ship");
+			return;
+		}
+		if (!game.setFleet(fleet)) {
+			error("ships must fit on the board without overlapping, before the first shot");
+		}
+	}
+
+	private synchronized void sendFleet() {
+		if (!requireGame()) {
+			return;
+		}
+		StringBuilder line = new StringBuilder("fleet");
+		Ship[] ships = game.getShips();
+		int columns = game.getColumns();
+		for (int s = 0; s < ships.length; s++) {
+			long start = game.shipStart(s);
+			boolean horizontal = "horizontal".equals(ships[s].getOrientation());
+			line.append(' ').append(ships[s].getName()).append(' ').append(BattleshipNoGUI.cellName((int) (start / columns), (int) (start % columns))).append(horizontal ? " h" : " v");
+		}
+		send(line.toString());
+	}
+
+	/**
+	 * Starts thinking about the AI's next shot on a copy of the game; the answer comes from whichever happens first of the search finishing, the move time running out and stop
+	 */
+	private synchronized void go(String[] words) {
+		if (!requireGame()) {
+			return;
+		}
+		if (game.getGameOver()) {
+			error("the game is over");
+			return;
+		}
+		if (search != null) {
+			error("already thinking");
+			return;
+		}
+		if (game.getAwaitingAnswer()) {
+			// the last shot has no result yet, so it is still the best shot
+			send("bestshot " + cellName(game.getPendingGuess()));
+			return;
+		}
+
+		long moveTime = defaultMoveTime;
+		for (int w = 1; w + 1 < words.length; w += 2) {
+			if (words[w].equals("movetime")) {
+				try {
+					moveTime = Long.parseLong(words[w + 1]);
+				}
+				catch (NumberFormatException e) {
+					error("movetime must be a number of milliseconds");
+					return;
+				}
+			}
+		}
+
+		Callable<Game.PonderedMove> work;
+		try {
+			work = game.searchMove();
+		}
+		catch (IOException e) {
+			error("could not copy the game");
+			return;
+		}
+		Search current = new Search();
+		search = current;
+		current.task = searcher.submit(() -> {
+			Game.PonderedMove move = null;
+			try {
+				move = work.call();
+			}
+			catch (Exception e) {
+				// answered with a quick shot below
+			}
+			finish(current, move);
+		});
+		if (moveTime > 0) {
+			current.timer = clock.schedule(() -> finish(current, null), moveTime, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void stop() {
+		Search current;
+		synchronized (this) {
+			current = search;
+		}
+		if (current != null) {
+			finish(current, null);
+			current.task.cancel(true);
+		}
+	}
+
+	/**
+	 * Answers a go once: with the searched move if there is one, otherwise with a quick random shot
+	 *
+	 * @param current - go being answered
+	 * @param move - move found by the search, or null if there was no time
+	 */
+	private void finish(Search current, Game.PonderedMove move) {
+		if (!current.answered.compareAndSet(false, true)) {
+			return;
+		}
+		synchronized (this) {
+			if (search != current) {
+				return;
+			}
+			search = null;
+			if (current.timer != null) {
+				current.timer.cancel(false);
+			}
+			XYCoordinate guess = move != null ? game.adoptMove(move) : game.quickMove();
+			send("bestshot " + cellName(guess));
+		}
+	}
+
+	private synchronized void result(String[] words) {
+		if (!requireGame()) {
+			return;
+		}
+		if (search != null || !game.getAwaitingAnswer()) {
+			error("no shot is waiting for a result");
+			return;
+		}
+		String answer;
+		if (words.length == 2 && words[1].equals("miss")) {
+			answer = "-";
+		}
+		else if (words.length == 3 && (words[1].equals("hit") || words[1].equals("sunk")) && shipIndex(words[2]) != -1) {
+			answer = game.getShips()[shipIndex(words[2])].getName();
+		}
+		else {
+			error("usage: result miss | result hit <ship> | result sunk <ship>");
+			return;
+		}
+		game.answerComputerMove(answer);
+		if (game.getComputerWin()) {
+			send("gameover ai");
+		}
+	}
+
+	private synchronized void shot(String[] words) {
+		if (!requireGame()) {
+			return;
+		}
+		XYCoordinate cell = words.length == 2 ? BattleshipNoGUI.parseCell(words[1]) : null;
+		long index = cell == null ? -1 : game.cellIndex(cell.getY(), cell.getX());
+		if (index == -1) {
+			error("usage: shot <cell>, a cell on the board");
+			return;
+		}
+		int result = game.resolveShot(index);
+		int kind = result & Game.SHOT_KIND_MASK;
+		if (kind == Game.SHOT_INVALID) {
+			error("cell was already shot or the game is over");
+			return;
+		}
+		if (kind == Game.SHOT_MISS) {
+			send("result miss");
+		}
+		else {
+			String ship = game.getShips()[(result >>> Game.SHOT_SHIP_SHIFT & 0xFF) - 1].getName();
+			send("result " + (kind == Game.SHOT_SUNK ? "sunk " : "hit ") + ship);
+		}
+		if ((result & Game.SHOT_GAME_OVER) != 0) {
+			send("gameover opponent");
+		}
+	}
+
+	/**
+	 * Drops the running search without answering it; called while holding the lock
+	 */
+	private void abandonSearch() {
+		if (search != null) {
+			search.answered.set(true);
+			search.task.cancel(true);
+			if (search.timer != null) {
+				search.timer.cancel(false);
+			}
+			search = null;
+		}
+	}
+
+	private boolean requireGame() {
+		if (game == null) {
+			error("no game, send newgame first");
+			return false;
+		}
+		return true;
+	}
+
+	private int shipIndex(String name) {
+		Ship[] ships = game.getShips();
+		for (int s = 0; s < ships.length; s++) {
+			if (ships[s].getName().equalsIgnoreCase(name)) {
+				return s;
+			}
+		}
+		return -1;
+	}
+
+	private void send(String line) {
+		synchronized (out) {
+			out.println(line);
+			out.flush();
+		}
+	}
+
+	private void error(String message) {
+		send("info string error " + message);
+	}
+
+	static String cellName(XYCoordinate coordinate) {
+		return BattleshipNoGUI.cellName(coordinate.getY(), coordinate.getX());
+	}
+
+	private static Thread daemon(Runnable runnable, String name) {
+		Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	public static void main(String[] args) throws IOException {
+		Log.configure(Log.WARN);
+		PrintStream out = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+		new EngineProtocol(new InputStreamReader(System.in, StandardCharsets.UTF_8), out).run();
+	}
+
+}
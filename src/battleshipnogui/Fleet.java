@@ -0,0 +1,106 @@
+/*
+Project: Battleship
+File: Fleet.java
+Description: Position of every ship of a fleet, parsed from text like "Carrier A1 h Battleship C3 v ..." as used by the engine protocol and scripted games. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.util.Arrays;
+
+public class Fleet {
+
+	final int[] rows;
+	final int[] columns;
+	final boolean[] horizontal;
+
+	private Fleet(int ships) {
+		rows = new int[ships];
+		columns = new int[ships];
+		horizontal = new boolean[ships];
+	}
+
+	/**
+	 * Parses a position for every ship: ship name, first cell (such as A1 or J10) and h or v, repeated
+	 *
+	 * @param words - words holding the positions
+	 * @param from - index of the first word of the positions
+	 * @param ships - ships of the fleet
+	 * @return fleet, or null if a ship is missing or a position cannot be read
+	 */
+	public static Fleet parse(String[] words, int from, Ship[] ships) {
+		Fleet fleet = new Fleet(ships.length);
+		boolean[] given = new boolean[ships.length];
+		if ((words.length - from) % 3 != 0) {
+			return null;
+		}
+		for (int w = from; w + 2 < words.length; w += 3) {
+			int s = -1;
+			for (int i = 0; i < ships.length; i++) {
+				if (ships[i].getName().equalsIgnoreCase(words[w])) {
+					s = i;
+				}
+			}
+			XYCoordinate cell = BattleshipNoGUI.parseCell(words[w + 1]);
+			if (s == -1 || cell == null || !(words[w + 2].equals("h") || words[w + 2].equals("v"))) {
+				return null;
+			}
+			fleet.rows[s] = cell.getY();
+			fleet.columns[s] = cell.getX();
+			fleet.horizontal[s] = words[w + 2].equals("h");
+			given[s] = true;
+		}
+		for (boolean g : given) {
+			if (!g) {
+				return null;
+			}
+		}
+		return fleet;
+	}
+
+	/**
+	 * Lays the fleet out on a board
+	 *
+	 * @param ships - ships of the fleet, for their lengths
+	 * @param boardRows - number of rows of the board
+	 * @param boardColumns - number of columns of the board
+	 * @param water - character for cells without a ship
+	 * @return board of ship letters (A for the first ship, ...), or null if a ship leaves the board or ships overlap
+	 */
+	public char[][] layout(Ship[] ships, int boardRows, int boardColumns, char water) {
+		char[][] board = new char[boardRows][boardColumns];
+		for (char[] row : board) {
+			Arrays.fill(row, water);
+		}
+		for (int s = 0; s < ships.length; s++) {
+			for (int i = 0; i < ships[s].getLength(); i++) {
+				int r = rows[s] + (horizontal[s] ? 0 : i);
+				int c = columns[s] + (horizontal[s] ? i : 0);
+				if (r < 0 || r >= board.length || c < 0 || c >= boardColumns || board[r][c] != water) {
+					return null;
+				}
+				board[r][c] = BattleshipNoGUI.intToLetter(s);
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * Places the fleet on a sparse board, keeping only its ship cells
+	 *
+	 * @param board - board with no ships yet
+	 * @param ships - ships of the fleet, for their lengths
+	 * @return whether every ship fit on the board without overlapping; if not, the board is left partly placed
+	 */
+	public boolean placeOn(SparseBoard board, Ship[] ships) {
+		for (int s = 0; s < ships.length; s++) {
+			if (!board.place(s, rows[s], columns[s], ships[s].getLength(), horizontal[s])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,1023 @@
+/*
+Project: Battleship
+File: Game.java
+Description: One game between the user and the AI with its own boards, fleet and game state, so that many games can be hosted in the same program. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+
+public class Game {
+
+	static final char WATER = '-';
+	static final char UNKNOWN = '?';
+
+	// version of the format written by writeTo and read by readFrom
+	static final int FORMAT_VERSION = 1;
+	static final int NO_GUESS = -1;
+
+	// packed shot results of resolveShot: the kind in bits 0 - 7, the ship index + 1 in bits 8 - 15 and the game over flag in bit 16
+	public static final int SHOT_MISS = 0;
+	public static final int SHOT_HIT = 1;
+	public static final int SHOT_SUNK = 2;
+	public static final int SHOT_INVALID = 3;
+	public static final int SHOT_KIND_MASK = 0xFF;
+	public static final int SHOT_SHIP_SHIFT = 8;
+	public static final int SHOT_GAME_OVER = 1 << 16;
+
+	// move latency of the expert AI by strategy (BattleshipNoGUI.MODE_ constants) and of the simple AI
+	private static final Metrics.Histogram[] EXPERT_MOVES = new Metrics.Histogram[BattleshipNoGUI.MODE_RANDOM];
+	private static final Metrics.Histogram SIMPLE_MOVES = Metrics.histogram(Metrics.MOVE, "difficulty", "simple", "strategy", "random");
+	private static final Metrics.Histogram RESOLVED_SHOTS = Metrics.histogram(Metrics.SHOT, "path", "resolve");
+	private static final Metrics.Histogram PRINTED_SHOTS = Metrics.histogram(Metrics.SHOT, "path", "console");
+	// a batch of resolved shots is timed as a whole, so the batch APIs add no per-shot overhead
+	private static final Metrics.Histogram RESOLVED_BATCHES = Metrics.histogram(Metrics.SHOT, "path", "batch");
+	private static final Metrics.Histogram WEIGHTED_PLACEMENTS = Metrics.histogram(Metrics.PLACEMENT, "algorithm", "weighted");
+	private static final Metrics.Histogram RANDOM_PLACEMENTS = Metrics.histogram(Metrics.PLACEMENT, "algorithm", "random");
+	private static final Metrics.Counter GAMES_STARTED = Metrics.counter(Metrics.GAMES_STARTED);
+	private static final Metrics.Counter AI_WINS = Metrics.counter(Metrics.GAMES_FINISHED, "winner", "AI");
+	private static final Metrics.Counter USER_WINS = Metrics.counter(Metrics.GAMES_FINISHED, "winner", "user");
+
+	static {
+		for (int mode = 0; mode < EXPERT_MOVES.length; mode++) {
+			EXPERT_MOVES[mode] = Metrics.histogram(Metrics.MOVE, "difficulty", "expert", "strategy", AIEvents.modeName(mode));
+		}
+	}
+
+	// speculative copies of the game and scripted games without a transcript do not print anything; the board printing
+	// goes through print(String) once per cell, so it is dropped before PrintStream locks and encodes it
+	static final PrintStream NO_OUTPUT = new PrintStream(OutputStream.nullOutputStream()) {
+
+		@Override
+		public void print(String text) {
+		}
+
+		@Override
+		public void println(String line) {
+		}
+
+		@Override
+		public void println() {
+		}
+	};
+
+	private final GameState state;
+	private final boolean expert;
+	private final int rows;
+	private final int columns;
+	private final Ship[] ships;
+	// a profile's board is played either on a Block per cell or, for large mostly-water boards, on SparseBoards; the other pair is null
+	private final Block[][] computerBoard;
+	private final Block[][] userBoard;
+	private final SparseBoard sparseComputerBoard;
+	private final SparseBoard sparseUserBoard;
+	private final int[] computerShipHitCount;
+	private final int[] userShipHitCount;
+	private final ArrayList<Boolean> shotsHit = new ArrayList<Boolean>();
+	private XYCoordinate pendingGuess;
+	private boolean awaitingAnswer = false;
+	private boolean userTurn = false;
+	private LongConsumer moveListener;
+	private ExecutorService ponderExecutor;
+	private HashMap<String, Future<PonderedMove>> pondering;
+	private Future<PonderedMove> ponderedMove;
+	// id shared by the game's start and end recorder events; pondering copies record no end
+	private final long eventId = AIEvents.nextGameId();
+	private boolean speculative = false;
+	// draws the boards in place on an ANSI terminal instead of printing them, if set
+	private TerminalRenderer renderer;
+
+	/**
+	 * AI move computed in advance for one possible answer: the guess and everything guessing changed in the game
+	 */
+	static final class PonderedMove {
+
+		final XYCoordinate guess;
+		final long randomState;
+		final int lastGuessMode;
+		final boolean[] shot;
+
+		PonderedMove(Game game) {
+			guess = game.pendingGuess;
+			randomState = ((GameRandom) game.state.random).getState();
+			lastGuessMode = game.state.lastGuessMode;
+			// guessing on a sparse board marks nothing until the answer comes
+			if (game.userBoard == null) {
+				shot = null;
+				return;
+			}
+			shot = new boolean[game.rows * game.columns];
+			for (int cell = 0; cell < shot.length; cell++) {
+				shot[cell] = game.userBoard[cell / game.columns][cell % game.columns].getIsShot();
+			}
+		}
+	}
+
+	/**
+	 * Creates a game and places the AI's ships
+	 *
+	 * @param expert - whether the AI uses the expert (Hard) or simple (Easy) algorithms
+	 * @param profile - tunable constants of the expert AI, board size and fleet
+	 * @param out - stream the game's messages are printed to
+	 */
+	public Game(boolean expert, AIProfile profile, PrintStream out) {
+		this(expert, profile, out, new Random().nextLong());
+	}
+
+	/**
+	 * Creates a game and places the AI's ships
+	 *
+	 * @param expert - whether the AI uses the expert (Hard) or simple (Easy) algorithms
+	 * @param profile - tunable constants of the expert AI, board size and fleet
+	 * @param out - stream the game's messages are printed to
+	 * @param seed - seed for ship placement and guessing
+	 */
+	public Game(boolean expert, AIProfile profile, PrintStream out, long seed) {
+		this.expert = expert;
+		state = new GameState(seed);
+		state.profile = profile;
+		state.out = out;
+
+		rows = profile.getRows();
+		columns = profile.getColumns();
+		ships = profile.createShips();
+		computerShipHitCount = new int[ships.length];
+		userShipHitCount = new int[ships.length];
+		boolean sparse = profile.isSparse();
+		computerBoard = sparse ? null : new Block[rows][columns];
+		userBoard = sparse ? null : BattleshipNoGUI.initializeUserBoard(rows, columns);
+		sparseComputerBoard = sparse ? new SparseBoard(rows, columns, (int) profile.getFleetCells()) : null;
+		sparseUserBoard = sparse ? new SparseBoard(rows, columns, 0) : null;
+		if (sparse) {
+			sparseUserBoard.trackHunt(ships);
+		}
+
+		GameState previous = bind();
+		long start = System.nanoTime();
+		try {
+			// the weighted placement needs a heat map of the whole board, so sparse boards are placed at random
+			if (sparse) {
+				sparseComputerBoard.placeRandomly(ships, state.random);
+			}
+			else if (expert) {
+				BattleshipNoGUI.placeShips(computerBoard, ships, WATER);
+			}
+			else {
+				BattleshipNoGUI.placeShipsSimple(computerBoard, ships, WATER);
+			}
+		}
+		finally {
+			BattleshipNoGUI.setState(previous);
+		}
+		(expert && !sparse ? WEIGHTED_PLACEMENTS : RANDOM_PLACEMENTS).recordSince(start);
+		GAMES_STARTED.increment();
+
+		AIEvents.GameStart event = new AIEvents.GameStart();
+		if (event.shouldCommit()) {
+			event.gameId = eventId;
+			event.expert = expert;
+			event.commit();
+		}
+	}
+
+	private Game(boolean expert, GameState state) {
+		this.expert = expert;
+		this.state = state;
+		rows = state.profile.getRows();
+		columns = state.profile.getColumns();
+		ships = state.profile.createShips();
+		computerShipHitCount = new int[ships.length];
+		userShipHitCount = new int[ships.length];
+		boolean sparse = state.profile.isSparse();
+		computerBoard = sparse ? null : BattleshipNoGUI.initializeUserBoard(rows, columns);
+		userBoard = sparse ? null : BattleshipNoGUI.initializeUserBoard(rows, columns);
+		sparseComputerBoard = sparse ? new SparseBoard(rows, columns, (int) state.profile.getFleetCells()) : null;
+		sparseUserBoard = sparse ? new SparseBoard(rows, columns, 0) : null;
+		if (sparse) {
+			sparseUserBoard.trackHunt(ships);
+		}
+	}
+
+	/**
+	 * Decides who guesses first
+	 *
+	 * @return 0 if the AI guesses first, 1 if the user guesses first
+	 */
+	public int coinToss() {
+		return (int) (state.random.nextDouble() * 2);
+	}
+
+	/**
+	 * Lets the AI guess a coordinate on the user's board; the answer is given with answerComputerMove
+	 *
+	 * @return XY coordinate the AI guessed
+	 */
+	public XYCoordinate computerMove() {
+		GameState previous = bind();
+		try {
+			long start = System.nanoTime();
+			// the move may already have been computed while the user was answering
+			if (!adoptPonderedMove()) {
+				if (sparseUserBoard != null) {
+					pendingGuess = expert ? BattleshipNoGUI.expertGuess(sparseUserBoard, ships, computerShipHitCount, state.numGuesses) : BattleshipNoGUI.simpleGuess(sparseUserBoard);
+				}
+				else if (expert) {
+					pendingGuess = BattleshipNoGUI.expertGuess(userBoard, ships, shotsHit, computerShipHitCount, state.lastHit, state.numGuesses, UNKNOWN);
+				}
+				else {
+					pendingGuess = BattleshipNoGUI.simpleGuess(userBoard);
+				}
+			}
+			awaitingAnswer = true;
+			long nanos = System.nanoTime() - start;
+			if (!speculative) {
+				(expert ? EXPERT_MOVES[state.lastGuessMode] : SIMPLE_MOVES).record(nanos);
+			}
+			if (moveListener != null) {
+				moveListener.accept(nanos);
+			}
+			startPondering();
+			return pendingGuess;
+		}
+		finally {
+			BattleshipNoGUI.setState(previous);
+		}
+	}
+
+	/**
+	 * Records the user's answer to the AI's last guess
+	 *
+	 * @param shot - name of the ship that was hit, or "-" for a miss
+	 */
+	public void answerComputerMove(String shot) {
+		GameState previous = bind();
+		try {
+			if (sparseUserBoard != null) {
+				BattleshipNoGUI.checkComputerGuess(sparseUserBoard, ships, shotsHit, computerShipHitCount, pendingGuess, shot);
+			}
+			else {
+				BattleshipNoGUI.checkComputerGuess(userBoard, ships, shotsHit, computerShipHitCount, pendingGuess, shot);
+			}
+			awaitingAnswer = false;
+			userTurn = true;
+		}
+		finally {
+			BattleshipNoGUI.setState(previous);
+		}
+		if (state.gameOver) {
+			recordGameEnd();
+		}
+
+		// keeps the move pondered for this answer and drops the others
+		if (pondering != null) {
+			ponderedMove = pondering.remove(shot);
+			for (Future<PonderedMove> other : pondering.values()) {
+				other.cancel(true);
+			}
+			pondering = null;
+		}
+	}
+
+	/**
+	 * Enables pondering: after every AI move, the next move is computed in advance on the executor for every answer the user can give
+	 *
+	 * @param executor - executor the speculative moves run on, or null to stop pondering
+	 */
+	public void setPonderExecutor(ExecutorService executor) {
+		ponderExecutor = executor;
+	}
+
+	/**
+	 * Starts computing the AI's next move for a miss and for a hit on every ship that is not sunk, each on a copy of the game
+	 */
+	private void startPondering() {
+		if (ponderExecutor == null || state.gameOver) {
+			return;
+		}
+		byte[] snapshot;
+		try {
+			snapshot = snapshot();
+		}
+		catch (IOException e) {
+			return;
+		}
+
+		pondering = new HashMap<String, Future<PonderedMove>>();
+		ArrayList<String> answers = new ArrayList<String>();
+		answers.add("-");
+		for (int s = 0; s < ships.length; s++) {
+			if (computerShipHitCount[s] < ships[s].getLength()) {
+				answers.add(ships[s].getName());
+			}
+		}
+		for (String answer : answers) {
+			pondering.put(answer, ponderExecutor.submit(() -> {
+				Game copy = speculativeCopy(snapshot);
+				copy.answerComputerMove(answer);
+				if (copy.getGameOver()) {
+					return null;
+				}
+				copy.computerMove();
+				return new PonderedMove(copy);
+			}));
+		}
+	}
+
+	/**
+	 * Takes over the move pondered for the answer the user gave, waiting for it if it is still being computed
+	 *
+	 * @return whether a pondered move was adopted
+	 */
+	private boolean adoptPonderedMove() {
+		if (ponderedMove == null) {
+			return false;
+		}
+		PonderedMove move;
+		try {
+			move = ponderedMove.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		catch (ExecutionException e) {
+			return false;
+		}
+		finally {
+			ponderedMove = null;
+		}
+		if (move == null) {
+			return false;
+		}
+		apply(move);
+		return true;
+	}
+
+	/**
+	 * Prepares computing the AI's next move on a copy of the game, so it can run on another thread and be abandoned without changing this game
+	 *
+	 * @return task computing the move to hand to adoptMove
+	 */
+	Callable<PonderedMove> searchMove() throws IOException {
+		byte[] snapshot = snapshot();
+		return () -> {
+			Game copy = speculativeCopy(snapshot);
+			copy.computerMove();
+			return new PonderedMove(copy);
+		};
+	}
+
+	/**
+	 * Makes a move computed by searchMove this game's move, as if computerMove had computed it
+	 *
+	 * @param move - move computed on a copy of this game in its current state
+	 * @return XY coordinate the AI guessed
+	 */
+	XYCoordinate adoptMove(PonderedMove move) {
+		apply(move);
+		awaitingAnswer = true;
+		return pendingGuess;
+	}
+
+	/**
+	 * Guesses a random cell that has not been shot, for when there is no time to think
+	 *
+	 * @return XY coordinate the AI guessed
+	 */
+	public XYCoordinate quickMove() {
+		GameState previous = bind();
+		try {
+			pendingGuess = sparseUserBoard != null ? BattleshipNoGUI.simpleGuess(sparseUserBoard) : BattleshipNoGUI.simpleGuess(userBoard);
+			state.lastGuessMode = BattleshipNoGUI.MODE_RANDOM;
+			awaitingAnswer = true;
+			return pendingGuess;
+		}
+		finally {
+			BattleshipNoGUI.setState(previous);
+		}
+	}
+
+	/**
+	 * Replaces the AI's ships with a given fleet; only possible before the user has shot
+	 *
+	 * @param fleet - position of every ship
+	 * @return whether the fleet fits on the board without overlapping and was placed
+	 */
+	public boolean setFleet(Fleet fleet) {
+		if (sparseComputerBoard != null) {
+			if (sparseComputerBoard.getShotCount() > 0) {
+				return false;
+			}
+			SparseBoard placed = new SparseBoard(rows, columns, sparseComputerBoard.getShipCellCount());
+			if (!fleet.placeOn(placed, ships)) {
+				return false;
+			}
+			sparseComputerBoard.clearShips();
+			fleet.placeOn(sparseComputerBoard, ships);
+			for (int s = 0; s < ships.length; s++) {
+				ships[s].setOrientation(fleet.horizontal[s] ? "horizontal" : "vertical");
+			}
+			return true;
+		}
+		char[][] layout = fleet.layout(ships, rows, columns, WATER);
+		if (layout == null) {
+			return false;
+		}
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				if (computerBoard[r][c].getIsShot()) {
+					return false;
+				}
+			}
+		}
+
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				computerBoard[r][c].setOccupation(layout[r][c]);
+			}
+		}
+		for (int s = 0; s < ships.length; s++) {
+			ships[s].setOrientation(fleet.horizontal[s] ? "horizontal" : "vertical");
+		}
+		return true;
+	}
+
+	private void apply(PonderedMove move) {
+		pendingGuess = move.guess;
+		((GameRandom) state.random).setState(move.randomState);
+		state.lastGuessMode = move.lastGuessMode;
+		for (int cell = 0; move.shot != null && cell < move.shot.length; cell++) {
+			userBoard[cell / columns][cell % columns].setIsShot(move.shot[cell]);
+		}
+	}
+
+	private byte[] snapshot() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(384);
+		writeTo(new DataOutputStream(bytes));
+		return bytes.toByteArray();
+	}
+
+	private static Game speculativeCopy(byte[] snapshot) throws IOException {
+		Game copy = readFrom(new DataInputStream(new ByteArrayInputStream(snapshot)), NO_OUTPUT);
+		copy.speculative = true;
+		return copy;
+	}
+
+	/**
+	 * Fires the user's shot at the AI's board
+	 *
+	 * @param coordinate - coordinate the user guessed
+	 * @return index of the ship that was hit, or -1 for a miss
+	 */
+	public int userShot(XYCoordinate coordinate) {
+		if (sparseComputerBoard != null) {
+			return sparseUserShot(coordinate);
+		}
+		Block block = computerBoard[coordinate.getY()][coordinate.getX()];
+		char occupation = block.getOccupation();
+		int shipIndex = occupation == WATER ? -1 : BattleshipNoGUI.letterToInt(occupation);
+
+		block.setIsShot(true);
+		userTurn = false;
+
+		GameState previous = bind();
+		long start = System.nanoTime();
+		try {
+			BattleshipNoGUI.checkUserGuess(computerBoard, ships, userShipHitCount, coordinate);
+		}
+		finally {
+			BattleshipNoGUI.setState(previous);
+		}
+		PRINTED_SHOTS.recordSince(start);
+		if (state.gameOver) {
+			recordGameEnd();
+		}
+		return shipIndex;
+	}
+
+	/**
+	 * Fires the user's shot at a sparse AI board through resolveShot and prints its result as checkUserGuess does
+	 */
+	private int sparseUserShot(XYCoordinate coordinate) {
+		long start = System.nanoTime();
+		int result = resolve(sparseComputerBoard.cell(coordinate.getY(), coordinate.getX()));
+		int kind = result & SHOT_KIND_MASK;
+		int shipIndex = kind == SHOT_HIT || kind == SHOT_SUNK ? (result >>> SHOT_SHIP_SHIFT & 0xFF) - 1 : -1;
+		if (kind == SHOT_INVALID) {
+			state.out.println("Already shot");
+		}
+		else if (shipIndex == -1) {
+			state.out.println("Miss");
+		}
+		else {
+			state.out.println((kind == SHOT_SUNK ? "Sunk, " : "Hit, ") + ships[shipIndex].getName());
+		}
+		PRINTED_SHOTS.recordSince(start);
+		return shipIndex;
+	}
+
+	/**
+	 * Fires the user's shot at the AI's board without printing anything or scanning the board
+	 * - a shot at a cell that was already shot, outside the board or after the game is over is SHOT_INVALID and changes nothing
+	 *
+	 * @param cell - packed cell index (see cellIndex)
+	 * @return packed result (see SHOT_ constants)
+	 */
+	public int resolveShot(long cell) {
+		long start = System.nanoTime();
+		int result = resolve(cell);
+		RESOLVED_SHOTS.recordSince(start);
+		return result;
+	}
+
+	private int resolve(long cell) {
+		if (cell < 0 || cell >= (long) rows * columns || state.gameOver) {
+			return SHOT_INVALID;
+		}
+		int shipIndex;
+		if (sparseComputerBoard != null) {
+			if (sparseComputerBoard.isShot(cell)) {
+				return SHOT_INVALID;
+			}
+			shipIndex = sparseComputerBoard.shoot(cell);
+		}
+		else {
+			Block block = computerBoard[(int) (cell / columns)][(int) (cell % columns)];
+			if (block.getIsShot()) {
+				return SHOT_INVALID;
+			}
+			block.setIsShot(true);
+			char occupation = block.getOccupation();
+			shipIndex = occupation == WATER ? -1 : BattleshipNoGUI.letterToInt(occupation);
+		}
+		userTurn = false;
+
+		if (shipIndex == -1) {
+			return SHOT_MISS;
+		}
+		userShipHitCount[shipIndex]++;
+		if (userShipHitCount[shipIndex] < ships[shipIndex].getLength()) {
+			return SHOT_HIT | (shipIndex + 1) << SHOT_SHIP_SHIFT;
+		}
+
+		int result = SHOT_SUNK | (shipIndex + 1) << SHOT_SHIP_SHIFT;
+		for (int s = 0; s < ships.length; s++) {
+			if (userShipHitCount[s] != ships[s].getLength()) {
+				return result;
+			}
+		}
+		state.gameOver = true;
+		state.userWin = true;
+		recordGameEnd();
+		return result | SHOT_GAME_OVER;
+	}
+
+	private void recordGameEnd() {
+		if (!speculative) {
+			(state.computerWin ? AI_WINS : USER_WINS).increment();
+		}
+		AIEvents.GameEnd event = new AIEvents.GameEnd();
+		if (!speculative && event.shouldCommit()) {
+			event.gameId = eventId;
+			event.winner = state.computerWin ? "AI" : "user";
+			event.guesses = state.numGuesses;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Fires a batch of the user's shots at this game's board
+	 *
+	 * @param cells - packed cell indices (see cellIndex)
+	 * @param offset - index of the first shot in cells and results
+	 * @param count - number of shots
+	 * @param results - array the packed results are written to
+	 */
+	public void resolveShots(long[] cells, int offset, int count, int[] results) {
+		long start = System.nanoTime();
+		for (int i = offset; i < offset + count; i++) {
+			results[i] = resolve(cells[i]);
+		}
+		RESOLVED_BATCHES.recordSince(start);
+	}
+
+	/**
+	 * Fires a batch of the user's shots spread over many games
+	 *
+	 * @param games - games the shots are fired in
+	 * @param gameIndices - index into games of every shot's game
+	 * @param cells - packed cell index of every shot (see cellIndex)
+	 * @param results - array the packed results are written to
+	 * @param count - number of shots
+	 */
+	public static void resolveShots(Game[] games, int[] gameIndices, long[] cells, int[] results, int count) {
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			results[i] = games[gameIndices[i]].resolve(cells[i]);
+		}
+		RESOLVED_BATCHES.recordSince(start);
+	}
+
+	/**
+	 * Prints the AI's view of the user's board to the game's output stream
+	 */
+	public void displayUserBoard() {
+		if (sparseUserBoard != null) {
+			state.out.println("The AI has shot " + sparseUserBoard.getShotCount() + " cells of your " + rows + "x" + columns + " board.");
+			return;
+		}
+		GameState previous = bind();
+		try {
+			BattleshipNoGUI.displayBoard(userBoard);
+		}
+		finally {
+			BattleshipNoGUI.setState(previous);
+		}
+	}
+
+	/**
+	 * Generates the AI's current heat map of the user's board; only for boards with a Block per cell (see heatMap(int, int, int, int))
+	 *
+	 * @return probability of every cell holding a ship that has not been sunk
+	 */
+	public double[][] heatMap() {
+		GameState previous = bind();
+		try {
+			return BattleshipNoGUI.generateOverallHeatMap(userBoard, ships, computerShipHitCount, UNKNOWN);
+		}
+		finally {
+			BattleshipNoGUI.setState(previous);
+		}
+	}
+
+	/**
+	 * Generates the AI's current heat map of a region of the user's board; on sparse boards only the region and its surroundings are looked at
+	 *
+	 * @param top - first row of the region
+	 * @param left - first column of the region
+	 * @param height - number of rows of the region
+	 * @param width - number of columns of the region
+	 * @return likelihood of every cell of the region holding a ship that has not been sunk, any scale, indexed from the region's first row and column
+	 */
+	public double[][] heatMap(int top, int left, int height, int width) {
+		if (sparseUserBoard != null) {
+			return sparseUserBoard.heatMap(top, left, height, width, ships, computerShipHitCount);
+		}
+		double[][] whole = heatMap();
+		double[][] region = new double[height][width];
+		for (int r = 0; r < height; r++) {
+			System.arraycopy(whole[top + r], left, region[r], 0, width);
+		}
+		return region;
+	}
+
+	/**
+	 * Packs a cell of this game's boards into one index, as taken by resolveShot
+	 *
+	 * @param row - row of the cell
+	 * @param column - column of the cell
+	 * @return row * columns + column, or -1 if the cell is not on the board
+	 */
+	public long cellIndex(int row, int column) {
+		if (row < 0 || row >= rows || column < 0 || column >= columns) {
+			return -1;
+		}
+		return (long) row * columns + column;
+	}
+
+	/**
+	 * Checks whether the user has shot a cell of the AI's board
+	 *
+	 * @param cell - packed cell index (see cellIndex)
+	 * @return whether the cell was shot
+	 */
+	public boolean isUserShot(long cell) {
+		if (sparseComputerBoard != null) {
+			return sparseComputerBoard.isShot(cell);
+		}
+		return computerBoard[(int) (cell / columns)][(int) (cell % columns)].getIsShot();
+	}
+
+	/**
+	 * Finds the first cell of one of the AI's ships, in row-major order
+	 *
+	 * @param ship - index of the ship
+	 * @return packed cell index (see cellIndex)
+	 */
+	public long shipStart(int ship) {
+		if (sparseComputerBoard != null) {
+			return sparseComputerBoard.firstCell(ship);
+		}
+		char letter = BattleshipNoGUI.intToLetter(ship);
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				if (computerBoard[r][c].getOccupation() == letter) {
+					return (long) r * columns + c;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Counts the cells the game keeps in memory: every cell of both boards, or the ship and shot cells of sparse boards
+	 *
+	 * @return number of stored cells
+	 */
+	public long getStoredCells() {
+		if (sparseComputerBoard != null) {
+			return sparseComputerBoard.getShipCellCount() + sparseComputerBoard.getShotCount() + sparseUserBoard.getShotCount();
+		}
+		return 2L * rows * columns;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public boolean getGameOver() {
+		return state.gameOver;
+	}
+
+	public boolean getComputerWin() {
+		return state.computerWin;
+	}
+
+	public boolean getUserWin() {
+		return state.userWin;
+	}
+
+	public boolean getExpert() {
+		return expert;
+	}
+
+	public GameState getState() {
+		return state;
+	}
+
+	public Ship[] getShips() {
+		return ships;
+	}
+
+	public Block[][] getComputerBoard() {
+		return computerBoard;
+	}
+
+	public Block[][] getUserBoard() {
+		return userBoard;
+	}
+
+	public boolean isSparse() {
+		return sparseComputerBoard != null;
+	}
+
+	public SparseBoard getSparseComputerBoard() {
+		return sparseComputerBoard;
+	}
+
+	public SparseBoard getSparseUserBoard() {
+		return sparseUserBoard;
+	}
+
+	public int[] getComputerShipHitCount() {
+		return computerShipHitCount;
+	}
+
+	public int[] getUserShipHitCount() {
+		return userShipHitCount;
+	}
+
+	public XYCoordinate getPendingGuess() {
+		return pendingGuess;
+	}
+
+	public boolean getAwaitingAnswer() {
+		return awaitingAnswer;
+	}
+
+	public boolean getUserTurn() {
+		return userTurn;
+	}
+
+	public void setUserTurn(boolean newUserTurn) {
+		userTurn = newUserTurn;
+	}
+
+	public PrintStream getOut() {
+		return state.out;
+	}
+
+	public TerminalRenderer getRenderer() {
+		return renderer;
+	}
+
+	public void setRenderer(TerminalRenderer newRenderer) {
+		renderer = newRenderer;
+	}
+
+	/**
+	 * Sets a listener that receives the time taken by every AI move in nanoseconds
+	 *
+	 * @param newMoveListener - listener, or null
+	 */
+	public void setMoveListener(LongConsumer newMoveListener) {
+		moveListener = newMoveListener;
+	}
+
+	/**
+	 * Writes everything needed to continue the game later in a compact binary form (a few hundred bytes on the standard board)
+	 * - every cell is one byte: its occupation in the low 7 bits and whether it was shot in the high bit
+	 * - sparse boards are written as their ship and shot cells instead (see SparseBoard.writeTo)
+	 * - board sizes, coordinates, hit counts and the guess and shot counts are 32-bit, so every board size a profile allows fits
+	 *
+	 * @param out - stream to write to
+	 */
+	public void writeTo(DataOutputStream out) throws IOException {
+		AIProfile profile = state.profile;
+		out.writeByte(FORMAT_VERSION);
+		out.writeBoolean(expert);
+		out.writeInt(profile.getParityGuesses());
+		out.writeInt(profile.getParityModulus());
+		out.writeDouble(profile.getMissWeight());
+		out.writeDouble(profile.getHitWeight());
+		out.writeInt(rows);
+		out.writeInt(columns);
+		out.writeUTF(profile.getFleet());
+
+		out.writeLong(((GameRandom) state.random).getState());
+		out.writeByte((state.gameOver ? 1 : 0) | (state.targetMode ? 2 : 0) | (state.computerWin ? 4 : 0) | (state.userWin ? 8 : 0)
+				| (awaitingAnswer ? 16 : 0) | (userTurn ? 32 : 0));
+		out.writeInt(state.lastHit.getX());
+		out.writeInt(state.lastHit.getY());
+		out.writeInt(state.numGuesses);
+		out.writeByte(state.lastGuessMode);
+		out.writeInt(pendingGuess == null ? NO_GUESS : pendingGuess.getX());
+		out.writeInt(pendingGuess == null ? NO_GUESS : pendingGuess.getY());
+
+		if (sparseComputerBoard != null) {
+			sparseComputerBoard.writeTo(out);
+			sparseUserBoard.writeTo(out);
+		}
+		else {
+			writeBoard(computerBoard, out);
+			writeBoard(userBoard, out);
+		}
+		for (int s = 0; s < ships.length; s++) {
+			out.writeInt(computerShipHitCount[s]);
+			out.writeInt(userShipHitCount[s]);
+		}
+
+		// the AI's shot history as a bit set
+		out.writeInt(shotsHit.size());
+		int bits = 0;
+		for (int i = 0; i < shotsHit.size(); i++) {
+			if (shotsHit.get(i)) {
+				bits |= 1 << (i % 8);
+			}
+			if (i % 8 == 7 || i == shotsHit.size() - 1) {
+				out.writeByte(bits);
+				bits = 0;
+			}
+		}
+	}
+
+	/**
+	 * Reads a game written by writeTo
+	 *
+	 * @param in - stream to read from
+	 * @param out - stream the restored game's messages are printed to
+	 * @return restored game
+	 */
+	public static Game readFrom(DataInputStream in, PrintStream out) throws IOException {
+		int version = in.readUnsignedByte();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("unsupported game format version " + version);
+		}
+		boolean expert = in.readBoolean();
+		AIProfile profile = new AIProfile(in.readInt(), in.readInt(), in.readDouble(), in.readDouble());
+		try {
+			profile.setBoardSize(in.readInt(), in.readInt());
+			profile.setFleet(in.readUTF());
+			profile.validate();
+		}
+		catch (IllegalArgumentException e) {
+			throw new IOException("invalid board or fleet: " + e.getMessage());
+		}
+
+		GameState state = new GameState(0);
+		((GameRandom) state.random).setState(in.readLong());
+		state.profile = profile;
+		state.out = out;
+		Game game = new Game(expert, state);
+
+		int flags = in.readUnsignedByte();
+		state.gameOver = (flags & 1) != 0;
+		state.targetMode = (flags & 2) != 0;
+		state.computerWin = (flags & 4) != 0;
+		state.userWin = (flags & 8) != 0;
+		game.awaitingAnswer = (flags & 16) != 0;
+		game.userTurn = (flags & 32) != 0;
+		state.lastHit = new XYCoordinate(in.readInt(), in.readInt());
+		state.numGuesses = in.readInt();
+		state.lastGuessMode = in.readUnsignedByte();
+		int guessX = in.readInt();
+		int guessY = in.readInt();
+		if (guessX != NO_GUESS) {
+			game.pendingGuess = new XYCoordinate(guessX, guessY);
+		}
+
+		if (game.sparseComputerBoard != null) {
+			game.sparseComputerBoard.readFrom(in);
+			game.sparseUserBoard.readFrom(in);
+		}
+		else {
+			readBoard(game.computerBoard, in);
+			readBoard(game.userBoard, in);
+		}
+		for (int s = 0; s < game.ships.length; s++) {
+			game.computerShipHitCount[s] = in.readInt();
+			game.userShipHitCount[s] = in.readInt();
+		}
+		// the hits of the ships the AI has damaged but not sunk, for target mode
+		for (int s = 0; s < game.ships.length; s++) {
+			if (game.computerShipHitCount[s] == 0 || game.computerShipHitCount[s] == game.ships[s].getLength()) {
+				continue;
+			}
+			if (game.sparseUserBoard != null) {
+				for (long cell : game.sparseUserBoard.hitCells(s)) {
+					state.activeHits.add(new int[] {s, (int) (cell % game.columns), (int) (cell / game.columns)});
+				}
+			}
+			else {
+				for (int r = 0; r < game.userBoard.length; r++) {
+					for (int c = 0; c < game.userBoard[r].length; c++) {
+						if (game.userBoard[r][c].getOccupation() == BattleshipNoGUI.intToLetter(s)) {
+							state.activeHits.add(new int[] {s, c, r});
+						}
+					}
+				}
+			}
+		}
+
+		int shots = in.readInt();
+		int bits = 0;
+		for (int i = 0; i < shots; i++) {
+			if (i % 8 == 0) {
+				bits = in.readUnsignedByte();
+			}
+			game.shotsHit.add((bits & (1 << (i % 8))) != 0);
+		}
+		return game;
+	}
+
+	private static void writeBoard(Block[][] board, DataOutputStream out) throws IOException {
+		for (int r = 0; r < board.length; r++) {
+			for (int c = 0; c < board[r].length; c++) {
+				out.writeByte((board[r][c].getOccupation() & 0x7F) | (board[r][c].getIsShot() ? 0x80 : 0));
+			}
+		}
+	}
+
+	private static void readBoard(Block[][] board, DataInputStream in) throws IOException {
+		for (int r = 0; r < board.length; r++) {
+			for (int c = 0; c < board[r].length; c++) {
+				int cell = in.readUnsignedByte();
+				board[r][c].setOccupation((char) (cell & 0x7F));
+				board[r][c].setIsShot((cell & 0x80) != 0);
+			}
+		}
+	}
+
+	/**
+	 * Makes this game's state the state of the current thread while one of its moves is played
+	 *
+	 * @return state that was bound before, to be restored afterwards
+	 */
+	final GameState bind() {
+		GameState previous = BattleshipNoGUI.state();
+		BattleshipNoGUI.setState(state);
+		return previous;
+	}
+
+}
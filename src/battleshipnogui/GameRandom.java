@@ -0,0 +1,52 @@
+/*
+Project: Battleship
+File: GameRandom.java
+Description: Random number generator with the same sequence as java.util.Random whose internal state can be read and restored, so a game can be saved and continued exactly where it stopped. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.util.Random;
+
+public class GameRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	private long state;
+
+	public GameRandom(long seed) {
+		super(seed);
+	}
+
+	@Override
+	public synchronized void setSeed(long seed) {
+		super.setSeed(seed);
+		state = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	@Override
+	protected int next(int bits) {
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return (int) (state >>> (48 - bits));
+	}
+
+	/**
+	 * Returns the generator's internal state (not the seed it was created with)
+	 *
+	 * @return 48-bit internal state
+	 */
+	public long getState() {
+		return state;
+	}
+
+	public void setState(long newState) {
+		state = newState & MASK;
+	}
+
+}
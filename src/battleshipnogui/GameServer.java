@@ -0,0 +1,158 @@
+/*
+Project: Battleship
+File: GameServer.java
+Description: Local TCP server that plays the console game with every connection, each session on its own virtual thread with its own game, and reports session count, moves per second and per-move latency. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class GameServer {
+
+	private final ServerSocket serverSocket;
+	private final AIProfile profile;
+	private final boolean expert;
+	private final AtomicInteger activeSessions = new AtomicInteger();
+	private final AtomicLong sessionIds = new AtomicLong();
+	private final LongAdder moves = new LongAdder();
+	private final QuantileSketch moveLatency = new QuantileSketch();
+	private long lastReportMoves = 0;
+	private long lastReportTime = System.nanoTime();
+
+	/**
+	 * Opens the server socket on the loopback interface
+	 *
+	 * @param port - port to listen on
+	 * @param expert - whether the AI uses the expert (Hard) or simple (Easy) algorithms
+	 * @param profile - tunable constants of the expert AI
+	 */
+	public GameServer(int port, boolean expert, AIProfile profile) throws IOException {
+		this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+		this.expert = expert;
+		this.profile = profile;
+	}
+
+	/**
+	 * Accepts connections until the server socket is closed, starting one virtual thread per session
+	 */
+	public void serve() throws IOException {
+		while (!serverSocket.isClosed()) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			}
+			catch (IOException e) {
+				if (serverSocket.isClosed()) {
+					return;
+				}
+				throw e;
+			}
+			Thread.ofVirtual().name("session-" + sessionIds.incrementAndGet()).start(() -> runSession(socket));
+		}
+	}
+
+	/**
+	 * Plays one game over a connection using the same prompts and answers as the console game
+	 *
+	 * @param socket - connection to the player
+	 */
+	void runSession(Socket socket) {
+		activeSessions.incrementAndGet();
+		try (socket) {
+			PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream()), true, StandardCharsets.UTF_8);
+			Scanner scan = new Scanner(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+			Game game = new Game(expert, profile, out);
+			game.setMoveListener(this::recordMove);
+			BattleshipNoGUI.play(game, scan);
+		}
+		catch (NoSuchElementException | IOException e) {
+			// the player disconnected in the middle of the game
+		}
+		finally {
+			activeSessions.decrementAndGet();
+		}
+	}
+
+	void recordMove(long nanos) {
+		moves.increment();
+		synchronized (moveLatency) {
+			moveLatency.record(nanos);
+		}
+	}
+
+	/**
+	 * Summarizes the server's load since the previous report
+	 *
+	 * @return report line
+	 */
+	public synchronized String report() {
+		long now = System.nanoTime();
+		long totalMoves = moves.sum();
+		double movesPerSecond = (totalMoves - lastReportMoves) / ((now - lastReportTime) / 1e9);
+		lastReportMoves = totalMoves;
+		lastReportTime = now;
+
+		long p50;
+		long p99;
+		long max;
+		synchronized (moveLatency) {
+			p50 = moveLatency.quantile(0.5);
+			p99 = moveLatency.quantile(0.99);
+			max = moveLatency.getMax();
+		}
+		return "sessions=" + activeSessions.get() + " total=" + sessionIds.get() + " moves=" + totalMoves
+				+ String.format(" moves/s=%.1f", movesPerSecond) + " move us p50=" + p50 / 1000 + " p99=" + p99 / 1000 + " max=" + max / 1000;
+	}
+
+	public int getActiveSessions() {
+		return activeSessions.get();
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	public void close() throws IOException {
+		serverSocket.close();
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 4040;
+		boolean expert = !(args.length > 1 && args[1].equals("easy"));
+		AIProfile profile = args.length > 2 ? AIProfile.load(Paths.get(args[2])) : AIProfile.defaults();
+
+		GameServer server = new GameServer(port, expert, profile);
+		System.out.println("Battleship server listening on port " + server.getPort());
+		Metrics.startFromProperties(System.out);
+
+		ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+		reporter.scheduleAtFixedRate(() -> System.out.println(server.report()), 10, 10, TimeUnit.SECONDS);
+		try {
+			server.serve();
+		}
+		finally {
+			reporter.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+Project: Battleship
+File: GameState.java
+Description: Holds the per-game state of the AI (target mode, last hit, number of guesses, winner, profile, output stream and random number generator) so that several games can be played at once on different threads. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class GameState {
+
+	boolean gameOver = false;
+	XYCoordinate lastHit = new XYCoordinate();
+	int numGuesses = 0;
+	boolean targetMode = false;
+	boolean computerWin = false;
+	boolean userWin = false;
+	int lastGuessMode = BattleshipNoGUI.MODE_PARITY;
+	// random coordinates drawn by the last parity hunt
+	int parityDraws = 0;
+	// hit cells of the ships that are not sunk yet, as {ship index, x, y}, so target mode never has to look for them on the board
+	ArrayList<int[]> activeHits = new ArrayList<int[]>();
+	// cells looked at by the last target
+	int targetCells = 0;
+	AIProfile profile = AIProfile.defaults();
+	PrintStream out = System.out;
+	Random random;
+
+	public GameState() {
+		random = new Random();
+	}
+
+	public GameState(long seed) {
+		random = new GameRandom(seed);
+	}
+
+	public boolean getGameOver() {
+		return gameOver;
+	}
+
+	public XYCoordinate getLastHit() {
+		return lastHit;
+	}
+
+	public int getNumGuesses() {
+		return numGuesses;
+	}
+
+	public boolean getTargetMode() {
+		return targetMode;
+	}
+
+	public boolean getComputerWin() {
+		return computerWin;
+	}
+
+	public boolean getUserWin() {
+		return userWin;
+	}
+
+	public int getLastGuessMode() {
+		return lastGuessMode;
+	}
+
+	public AIProfile getProfile() {
+		return profile;
+	}
+
+	public void setProfile(AIProfile newProfile) {
+		profile = newProfile;
+	}
+
+	public PrintStream getOut() {
+		return out;
+	}
+
+	public void setOut(PrintStream newOut) {
+		out = newOut;
+	}
+
+}
@@ -0,0 +1,518 @@
+/*
+Project: Battleship
+File: HttpGameApi.java
+Description: Local HTTP/JSON API over the game engine using the JDK's built-in HTTP server, with handlers on virtual threads and a batch route that encodes many requests into one response. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+Routes (parameters are passed in the query string, cells are written like on the console, e.g. B7):
+	POST   /games?difficulty=hard|easy&first=user|ai|coin   creates a game
+	GET    /games/{id}                                       board state
+	GET    /games/{id}/heatmap?cell=A1&rows=16&columns=16    the AI's heat map of a region of the user's board, starting at cell
+	DELETE /games/{id}                                       ends a game
+	POST   /games/{id}/shots?cell=B7                         the user fires at the AI's board
+	POST   /games/{id}/ai-move                               the AI picks its next shot
+	POST   /games/{id}/ai-move/result?ship=Destroyer         answers the AI's shot ("-" for a miss)
+	POST   /batch                                            body holds one "METHOD /path?query" per line; answered with a JSON array
+*/
+public final class HttpGameApi {
+
+	static final String HARD = "hard";
+	static final String EASY = "easy";
+	static final String TURN_USER = "user";
+	static final String TURN_AI = "ai";
+
+	static final int OK = 200;
+	static final int CREATED = 201;
+	static final int BAD_REQUEST = 400;
+	static final int NOT_FOUND = 404;
+	static final int METHOD_NOT_ALLOWED = 405;
+	static final int CONFLICT = 409;
+
+	// requests may only ask for a bounded number of operations at once
+	static final int MAX_BATCH = 1000;
+	static final int MAX_HEAT_REGION = 64;
+
+	static final PrintStream NO_OUTPUT = new PrintStream(OutputStream.nullOutputStream());
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final AIProfile profile;
+	private final SessionStore games;
+	private final AtomicLong gameIds = new AtomicLong();
+
+	/**
+	 * Creates the API on the loopback interface; call start to begin serving
+	 *
+	 * @param port - port to listen on
+	 * @param profile - tunable constants of the expert AI
+	 * @param games - store holding the hosted games
+	 */
+	public HttpGameApi(int port, AIProfile profile, SessionStore games) throws IOException {
+		this.profile = profile;
+		this.games = games;
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+		executor = Executors.newVirtualThreadPerTaskExecutor();
+		server.setExecutor(executor);
+		server.createContext("/games", this::handle);
+		server.createContext("/batch", this::handleBatch);
+		server.createContext("/metrics", Metrics::handle);
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		StringBuilder json = new StringBuilder(512);
+		int status = execute(exchange.getRequestMethod(), exchange.getRequestURI().getRawPath(), exchange.getRequestURI().getRawQuery(), json);
+		respond(exchange, status, json);
+	}
+
+	/**
+	 * Runs every request in the body in order and encodes all of their answers into a single response
+	 */
+	private void handleBatch(HttpExchange exchange) throws IOException {
+		StringBuilder json = new StringBuilder(8192);
+		if (!exchange.getRequestMethod().equals("POST")) {
+			respond(exchange, METHOD_NOT_ALLOWED, error(json, "use POST"));
+			return;
+		}
+
+		String body;
+		try (InputStream in = exchange.getRequestBody()) {
+			body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+		String[] lines = body.split("\n");
+		if (lines.length > MAX_BATCH) {
+			respond(exchange, BAD_REQUEST, error(json, "at most " + MAX_BATCH + " requests per batch"));
+			return;
+		}
+
+		json.append('[');
+		int count = 0;
+		for (String line : lines) {
+			line = line.trim();
+			if (line.isEmpty()) {
+				continue;
+			}
+			if (count++ > 0) {
+				json.append(',');
+			}
+
+			int space = line.indexOf(' ');
+			String method = space < 0 ? "GET" : line.substring(0, space);
+			String target = space < 0 ? line : line.substring(space + 1).trim();
+			int question = target.indexOf('?');
+			String path = question < 0 ? target : target.substring(0, question);
+			String query = question < 0 ? null : target.substring(question + 1);
+
+			// the answer's body is written straight after its status, so nothing is copied
+			json.append("{\"status\":");
+			int statusIndex = json.length();
+			json.append("000,\"body\":");
+			int status = execute(method, path, query, json);
+			json.replace(statusIndex, statusIndex + 3, Integer.toString(status));
+			json.append('}');
+		}
+		json.append(']');
+		respond(exchange, OK, json);
+	}
+
+	/**
+	 * Runs one request and appends its JSON answer
+	 *
+	 * @param method - HTTP method
+	 * @param path - request path
+	 * @param query - raw query string, or null
+	 * @param json - builder the answer is appended to
+	 * @return HTTP status
+	 */
+	int execute(String method, String path, String query, StringBuilder json) {
+		String[] parts = path.split("/");
+		HashMap<String, String> parameters = parseQuery(query);
+
+		// parts[0] is empty because the path starts with a slash
+		if (parts.length < 2 || !parts[1].equals("games")) {
+			error(json, "unknown route");
+			return NOT_FOUND;
+		}
+		if (parts.length == 2) {
+			if (!method.equals("POST")) {
+				error(json, "use POST to create a game");
+				return METHOD_NOT_ALLOWED;
+			}
+			return createGame(parameters, json);
+		}
+
+		long id;
+		try {
+			id = Long.parseLong(parts[2]);
+		}
+		catch (NumberFormatException e) {
+			error(json, "unknown game");
+			return NOT_FOUND;
+		}
+
+		// the game stays in memory until it is released, even if the store is over its limit
+		Game game = games.acquire(id);
+		if (game == null) {
+			error(json, "unknown game");
+			return NOT_FOUND;
+		}
+		try {
+			synchronized (game) {
+				if (parts.length == 3) {
+					if (method.equals("GET")) {
+						encodeGame(id, game, json);
+						return OK;
+					}
+					if (method.equals("DELETE")) {
+						games.remove(id);
+						encodeGame(id, game, json);
+						return OK;
+					}
+					error(json, "use GET or DELETE");
+					return METHOD_NOT_ALLOWED;
+				}
+				if (parts.length == 4 && parts[3].equals("heatmap") && method.equals("GET")) {
+					return heatMap(game, parameters, json);
+				}
+				if (!method.equals("POST")) {
+					error(json, "use POST");
+					return METHOD_NOT_ALLOWED;
+				}
+				if (parts.length == 4 && parts[3].equals("shots")) {
+					return userShot(game, parameters.get("cell"), json);
+				}
+				if (parts.length == 4 && parts[3].equals("ai-move")) {
+					return aiMove(game, json);
+				}
+				if (parts.length == 5 && parts[3].equals("ai-move") && parts[4].equals("result")) {
+					return answerAiMove(game, parameters.get("ship"), json);
+				}
+			}
+		}
+		finally {
+			games.release(id);
+		}
+		error(json, "unknown route");
+		return NOT_FOUND;
+	}
+
+	private int createGame(HashMap<String, String> parameters, StringBuilder json) {
+		String difficulty = parameters.getOrDefault("difficulty", HARD).toLowerCase();
+		String first = parameters.getOrDefault("first", "coin").toLowerCase();
+		if (!difficulty.equals(HARD) && !difficulty.equals(EASY)) {
+			error(json, "difficulty must be hard or easy");
+			return BAD_REQUEST;
+		}
+		if (!first.equals(TURN_USER) && !first.equals(TURN_AI) && !first.equals("coin")) {
+			error(json, "first must be user, ai or coin");
+			return BAD_REQUEST;
+		}
+
+		Game game = new Game(difficulty.equals(HARD), profile, NO_OUTPUT);
+		if (first.equals("coin")) {
+			first = game.coinToss() == 0 ? TURN_AI : TURN_USER;
+		}
+		game.setUserTurn(first.equals(TURN_USER));
+		long id = gameIds.incrementAndGet();
+		games.add(id, game);
+		try {
+			encodeGame(id, game, json);
+		}
+		finally {
+			games.release(id);
+		}
+		return CREATED;
+	}
+
+	private int userShot(Game game, String cell, StringBuilder json) {
+		if (game.getGameOver()) {
+			error(json, "game is over");
+			return CONFLICT;
+		}
+		if (!game.getUserTurn()) {
+			error(json, "it is the AI's turn");
+			return CONFLICT;
+		}
+		XYCoordinate coordinate = BattleshipNoGUI.parseCell(cell);
+		long index = coordinate == null ? -1 : game.cellIndex(coordinate.getY(), coordinate.getX());
+		if (index == -1) {
+			error(json, "cell must be A1 to " + BattleshipNoGUI.cellName(game.getRows() - 1, game.getColumns() - 1));
+			return BAD_REQUEST;
+		}
+
+		int result = game.resolveShot(index);
+		int kind = result & Game.SHOT_KIND_MASK;
+		if (kind == Game.SHOT_INVALID) {
+			error(json, "cell was already shot");
+			return CONFLICT;
+		}
+
+		json.append("{\"cell\":\"").append(cell.toUpperCase()).append("\",\"result\":\"");
+		if (kind == Game.SHOT_MISS) {
+			json.append("miss\"");
+		}
+		else {
+			Ship ship = game.getShips()[(result >>> Game.SHOT_SHIP_SHIFT & 0xFF) - 1];
+			json.append(kind == Game.SHOT_SUNK ? "sunk" : "hit").append("\",\"ship\":\"").append(ship.getName()).append('"');
+		}
+		appendStatus(game, json);
+		json.append('}');
+		return OK;
+	}
+
+	/**
+	 * Appends the AI's heat map of a region of the user's board, row by row, scaled so the hottest cell is 1
+	 */
+	private int heatMap(Game game, HashMap<String, String> parameters, StringBuilder json) {
+		XYCoordinate corner = BattleshipNoGUI.parseCell(parameters.getOrDefault("cell", "A1"));
+		int height;
+		int width;
+		try {
+			height = Integer.parseInt(parameters.getOrDefault("rows", Integer.toString(Math.min(16, game.getRows()))));
+			width = Integer.parseInt(parameters.getOrDefault("columns", Integer.toString(Math.min(16, game.getColumns()))));
+		}
+		catch (NumberFormatException e) {
+			height = 0;
+			width = 0;
+		}
+		if (corner == null || height < 1 || width < 1 || height > MAX_HEAT_REGION || width > MAX_HEAT_REGION
+				|| game.cellIndex(corner.getY() + height - 1, corner.getX() + width - 1) == -1) {
+			error(json, "region must be 1 - " + MAX_HEAT_REGION + " rows and columns starting at a cell, inside the board");
+			return BAD_REQUEST;
+		}
+
+		double[][] heat = game.heatMap(corner.getY(), corner.getX(), height, width);
+		double max = 0;
+		for (double[] row : heat) {
+			for (double value : row) {
+				max = Math.max(max, value);
+			}
+		}
+		json.append("{\"cell\":\"");
+		appendCell(corner, json);
+		json.append("\",\"heat\":[");
+		for (int r = 0; r < height; r++) {
+			json.append(r > 0 ? ",[" : "[");
+			for (int c = 0; c < width; c++) {
+				json.append(c > 0 ? "," : "").append(max > 0 ? Math.round(heat[r][c] / max * 1000) / 1000.0 : 0.0);
+			}
+			json.append(']');
+		}
+		json.append("]}");
+		return OK;
+	}
+
+	private int aiMove(Game game, StringBuilder json) {
+		if (game.getGameOver()) {
+			error(json, "game is over");
+			return CONFLICT;
+		}
+		if (game.getUserTurn()) {
+			error(json, "it is the user's turn");
+			return CONFLICT;
+		}
+
+		// asking again before answering returns the same shot instead of guessing twice
+		if (!game.getAwaitingAnswer()) {
+			game.computerMove();
+		}
+		json.append("{\"cell\":\"");
+		appendCell(game.getPendingGuess(), json);
+		json.append("\"}");
+		return OK;
+	}
+
+	private int answerAiMove(Game game, String ship, StringBuilder json) {
+		if (!game.getAwaitingAnswer()) {
+			error(json, "the AI has not shot yet");
+			return CONFLICT;
+		}
+
+		String shot = null;
+		if (ship != null && ship.equals("-")) {
+			shot = ship;
+		}
+		else if (ship != null) {
+			for (Ship s : game.getShips()) {
+				if (s.getName().equalsIgnoreCase(ship)) {
+					shot = s.getName();
+				}
+			}
+		}
+		if (shot == null) {
+			error(json, "ship must be the name of a ship or - for a miss");
+			return BAD_REQUEST;
+		}
+
+		game.answerComputerMove(shot);
+
+		json.append("{\"cell\":\"");
+		appendCell(game.getPendingGuess(), json);
+		json.append('"');
+		appendStatus(game, json);
+		json.append('}');
+		return OK;
+	}
+
+	/**
+	 * Appends the whole state of a game: the AI's view of the user's board and the user's shots at the AI's board
+	 * - sparse boards are too large to list every cell, so only their shot cells are listed, as an object from cell name to result
+	 */
+	private void encodeGame(long id, Game game, StringBuilder json) {
+		json.append("{\"id\":").append(id);
+		json.append(",\"difficulty\":\"").append(game.getExpert() ? HARD : EASY);
+		json.append("\",\"turn\":\"").append(game.getUserTurn() ? TURN_USER : TURN_AI).append('"');
+		appendStatus(game, json);
+		if (game.isSparse()) {
+			json.append(",\"rows\":").append(game.getRows()).append(",\"columns\":").append(game.getColumns());
+			json.append(",\"aiView\":");
+			appendShots(game.getSparseUserBoard(), game.getShips(), json);
+			json.append(",\"userShots\":");
+			appendShots(game.getSparseComputerBoard(), null, json);
+			json.append('}');
+			return;
+		}
+
+		Block[][] userBoard = game.getUserBoard();
+		json.append(",\"aiView\":[");
+		for (int r = 0; r < userBoard.length; r++) {
+			json.append(r > 0 ? ",\"" : "\"");
+			for (int c = 0; c < userBoard[r].length; c++) {
+				json.append(userBoard[r][c].getOccupation());
+			}
+			json.append('"');
+		}
+
+		// x for a hit, o for a miss, . for a cell not shot yet
+		Block[][] computerBoard = game.getComputerBoard();
+		json.append("],\"userShots\":[");
+		for (int r = 0; r < computerBoard.length; r++) {
+			json.append(r > 0 ? ",\"" : "\"");
+			for (int c = 0; c < computerBoard[r].length; c++) {
+				Block block = computerBoard[r][c];
+				json.append(!block.getIsShot() ? '.' : block.getOccupation() == Game.WATER ? 'o' : 'x');
+			}
+			json.append('"');
+		}
+		json.append("]}");
+	}
+
+	/**
+	 * Appends the shot cells of a sparse board: the name of the ship hit or - on the AI's view, x or o on the user's shots
+	 *
+	 * @param ships - ships of the game, or null for x and o marks
+	 */
+	private static void appendShots(SparseBoard board, Ship[] ships, StringBuilder json) {
+		json.append('{');
+		long[] cells = board.shotCells();
+		for (int i = 0; i < cells.length; i++) {
+			int ship = board.shotAt(cells[i]);
+			json.append(i > 0 ? ",\"" : "\"").append(BattleshipNoGUI.cellName((int) (cells[i] / board.getColumns()), (int) (cells[i] % board.getColumns()))).append("\":\"");
+			if (ship == SparseBoard.MISS) {
+				json.append(ships != null ? Game.WATER : 'o');
+			}
+			else if (ships != null) {
+				json.append(ships[ship].getName());
+			}
+			else {
+				json.append('x');
+			}
+			json.append('"');
+		}
+		json.append('}');
+	}
+
+	private static void appendStatus(Game game, StringBuilder json) {
+		json.append(",\"gameOver\":").append(game.getGameOver());
+		if (game.getUserWin()) {
+			json.append(",\"winner\":\"user\"");
+		}
+		else if (game.getComputerWin()) {
+			json.append(",\"winner\":\"ai\"");
+		}
+	}
+
+	private static void appendCell(XYCoordinate coordinate, StringBuilder json) {
+		json.append(BattleshipNoGUI.cellName(coordinate.getY(), coordinate.getX()));
+	}
+
+	private static HashMap<String, String> parseQuery(String query) {
+		HashMap<String, String> parameters = new HashMap<String, String>();
+		if (query == null) {
+			return parameters;
+		}
+		for (String pair : query.split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals > 0) {
+				parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8), URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return parameters;
+	}
+
+	private static StringBuilder error(StringBuilder json, String message) {
+		return json.append("{\"error\":\"").append(message).append("\"}");
+	}
+
+	private static void respond(HttpExchange exchange, int status, StringBuilder json) throws IOException {
+		byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		long memoryLimit = (args.length > 1 ? Long.parseLong(args[1]) : 256) * 1024 * 1024;
+		long idleMillis = (args.length > 2 ? Long.parseLong(args[2]) : 300) * 1000;
+		Path spillDirectory = Paths.get(args.length > 3 ? args[3] : "sessions");
+		AIProfile profile = args.length > 4 ? AIProfile.load(Paths.get(args[4])) : AIProfile.defaults();
+
+		Log.configure(Log.WARN);
+		// abandoned games are kept on disk for a day
+		SessionStore store = new SessionStore(memoryLimit, idleMillis, 24 * 60 * 60 * 1000L, spillDirectory, NO_OUTPUT);
+		store.startSweeper(Math.max(1000, idleMillis / 4));
+		HttpGameApi api = new HttpGameApi(port, profile, store);
+		api.start();
+		System.out.println("Battleship API listening on http://localhost:" + api.getPort() + "/games");
+		Metrics.startLogging(60, System.out);
+	}
+
+}
@@ -0,0 +1,293 @@
+/*
+Project: Battleship
+File: HuntGrid.java
+Description: Placement counts of the AI's view of a sparse board, aggregated over a hierarchy of square tiles and updated after every shot, so the expert AI can descend from the whole board to its most promising tile in a number of steps logarithmic in the board's area. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+Level 0 tiles are LEAF_SIDE x LEAF_SIDE cells; every level doubles the side, up to one tile holding the whole board.
+The count of a tile is the sum over its cells of the placements covering them, per ship length: the placements of an empty board,
+given by prefix sums along one row and one column, minus the placements blocked by shots, kept per tile in a hash table.
+A placement is blocked once any of its cells is shot, so every shot subtracts the placements through its cell that had no shot yet.
+Sinking a ship changes only the weight of its length, so the counts never have to be rebuilt.
+*/
+public class HuntGrid {
+
+	static final int LEAF_SIDE = 32;
+
+	/**
+	 * Open-addressing hash table from packed tiles to blocked placement counts, with linear probing, kept at most half full
+	 */
+	static final class TileTable {
+
+		private static final long FREE = -1;
+
+		private long[] keys = new long[64];
+		private long[] values = new long[64];
+		private int size = 0;
+
+		TileTable() {
+			Arrays.fill(keys, FREE);
+		}
+
+		long get(long key) {
+			int mask = keys.length - 1;
+			for (int slot = slot(key, mask); keys[slot] != FREE; slot = (slot + 1) & mask) {
+				if (keys[slot] == key) {
+					return values[slot];
+				}
+			}
+			return 0;
+		}
+
+		void add(long key, long amount) {
+			if ((size + 1) * 2 > keys.length) {
+				grow();
+			}
+			int mask = keys.length - 1;
+			int slot = slot(key, mask);
+			while (keys[slot] != FREE && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			if (keys[slot] == FREE) {
+				keys[slot] = key;
+				values[slot] = 0;
+				size++;
+			}
+			values[slot] += amount;
+		}
+
+		void clear() {
+			Arrays.fill(keys, FREE);
+			size = 0;
+		}
+
+		private void grow() {
+			long[] oldKeys = keys;
+			long[] oldValues = values;
+			keys = new long[oldKeys.length * 2];
+			values = new long[oldKeys.length * 2];
+			Arrays.fill(keys, FREE);
+			size = 0;
+			for (int slot = 0; slot < oldKeys.length; slot++) {
+				if (oldKeys[slot] != FREE) {
+					add(oldKeys[slot], oldValues[slot]);
+				}
+			}
+		}
+
+		private static int slot(long key, int mask) {
+			long hash = key * 0x9E3779B97F4A7C15L;
+			return (int) (hash ^ (hash >>> 32)) & mask;
+		}
+	}
+
+	private final int rows;
+	private final int columns;
+	private final int topLevel;
+	// distinct ship lengths, and the length index of every ship
+	private final int[] lengths;
+	private final int[] lengthOfShip;
+	// placements of an empty board covering the cells before a column (along a row) and before a row (along a column), per length
+	private final long[][] acrossPrefix;
+	private final long[][] downPrefix;
+	private final TileTable blocked = new TileTable();
+
+	/**
+	 * Creates the counts of an empty board
+	 *
+	 * @param rows - number of rows of the board
+	 * @param columns - number of columns of the board
+	 * @param ships - ships being hunted
+	 */
+	public HuntGrid(int rows, int columns, Ship[] ships) {
+		this.rows = rows;
+		this.columns = columns;
+		int level = 0;
+		while ((long) LEAF_SIDE << level < Math.max(rows, columns)) {
+			level++;
+		}
+		this.topLevel = level;
+
+		int[] distinct = new int[ships.length];
+		int count = 0;
+		lengthOfShip = new int[ships.length];
+		for (int s = 0; s < ships.length; s++) {
+			int l = 0;
+			while (l < count && distinct[l] != ships[s].getLength()) {
+				l++;
+			}
+			if (l == count) {
+				distinct[count++] = ships[s].getLength();
+			}
+			lengthOfShip[s] = l;
+		}
+		lengths = Arrays.copyOf(distinct, count);
+
+		acrossPrefix = new long[count][];
+		downPrefix = new long[count][];
+		for (int l = 0; l < count; l++) {
+			acrossPrefix[l] = coverPrefix(columns, lengths[l]);
+			downPrefix[l] = coverPrefix(rows, lengths[l]);
+		}
+	}
+
+	/**
+	 * Counts, for every cell of a line, the placements of one length covering it, and sums them up
+	 *
+	 * @return prefix sums: element i is the total of the cells before cell i
+	 */
+	private static long[] coverPrefix(int cells, int length) {
+		long[] prefix = new long[cells + 1];
+		for (int i = 0; i < cells; i++) {
+			int starts = Math.min(i, cells - length) - Math.max(0, i - length + 1) + 1;
+			prefix[i + 1] = prefix[i] + Math.max(0, starts);
+		}
+		return prefix;
+	}
+
+	/**
+	 * Subtracts the placements blocked by a shot; called before the shot is recorded on the board
+	 *
+	 * @param board - board the shot is fired at, without the shot yet
+	 * @param cell - packed cell of the shot
+	 */
+	public void shoot(SparseBoard board, long cell) {
+		int row = (int) (cell / columns);
+		int column = (int) (cell % columns);
+		for (int l = 0; l < lengths.length; l++) {
+			int length = lengths[l];
+			for (int start = Math.max(0, column - length + 1); start <= Math.min(column, columns - length); start++) {
+				if (free(board, row, start, length, true)) {
+					block(l, row, start, length, true);
+				}
+			}
+			for (int start = Math.max(0, row - length + 1); start <= Math.min(row, rows - length); start++) {
+				if (free(board, start, column, length, false)) {
+					block(l, start, column, length, false);
+				}
+			}
+		}
+	}
+
+	public void clear() {
+		blocked.clear();
+	}
+
+	private static boolean free(SparseBoard board, int row, int column, int length, boolean horizontal) {
+		for (int i = 0; i < length; i++) {
+			if (board.isShot(horizontal ? board.cell(row, column + i) : board.cell(row + i, column))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Subtracts one placement from the tiles it crosses, on every level
+	 */
+	private void block(int lengthIndex, int row, int column, int length, boolean horizontal) {
+		for (int level = 0; level <= topLevel; level++) {
+			int side = LEAF_SIDE << level;
+			int first = (horizontal ? column : row) / side;
+			int last = ((horizontal ? column : row) + length - 1) / side;
+			for (int tile = first; tile <= last; tile++) {
+				int from = Math.max(tile * side, horizontal ? column : row);
+				int to = Math.min((tile + 1) * side, (horizontal ? column : row) + length);
+				if (horizontal) {
+					blocked.add(key(level, lengthIndex, row / side, tile), to - from);
+				}
+				else {
+					blocked.add(key(level, lengthIndex, tile, column / side), to - from);
+				}
+			}
+		}
+	}
+
+	private static long key(int level, int lengthIndex, int tileRow, int tileColumn) {
+		return (((long) level << 8 | lengthIndex) << 25 | tileRow) << 25 | tileColumn;
+	}
+
+	/**
+	 * Sums the placement counts of the ships not sunk over the cells of a tile
+	 *
+	 * @param weights - number of ships not sunk of every length
+	 * @return sum of the heat map over the tile
+	 */
+	long tileCount(int level, int tileRow, int tileColumn, int[] weights) {
+		int side = LEAF_SIDE << level;
+		int top = tileRow * side;
+		int left = tileColumn * side;
+		int bottom = Math.min(rows, top + side);
+		int right = Math.min(columns, left + side);
+		long total = 0;
+		for (int l = 0; l < lengths.length; l++) {
+			if (weights[l] == 0) {
+				continue;
+			}
+			long open = (long) (bottom - top) * (acrossPrefix[l][right] - acrossPrefix[l][left])
+					+ (long) (right - left) * (downPrefix[l][bottom] - downPrefix[l][top]);
+			total += weights[l] * (open - blocked.get(key(level, l, tileRow, tileColumn)));
+		}
+		return total;
+	}
+
+	/**
+	 * Descends from the whole board to the leaf tile with the most placements, choosing the best of the four quarters of every tile
+	 *
+	 * @param ships - ships being hunted
+	 * @param shipHitCount - number of shots that have hit each ship
+	 * @param random - breaks ties between equally promising quarters
+	 * @return row and column of the leaf tile's first cell, as an XY coordinate, or null if no placement is left
+	 */
+	public XYCoordinate bestLeaf(Ship[] ships, int[] shipHitCount, Random random) {
+		int[] weights = new int[lengths.length];
+		for (int s = 0; s < ships.length; s++) {
+			if (shipHitCount[s] != ships[s].getLength()) {
+				weights[lengthOfShip[s]]++;
+			}
+		}
+		if (tileCount(topLevel, 0, 0, weights) <= 0) {
+			return null;
+		}
+
+		int tileRow = 0;
+		int tileColumn = 0;
+		for (int level = topLevel - 1; level >= 0; level--) {
+			int side = LEAF_SIDE << level;
+			long best = -1;
+			int ties = 0;
+			int bestRow = 0;
+			int bestColumn = 0;
+			for (int quarter = 0; quarter < 4; quarter++) {
+				int childRow = tileRow * 2 + quarter / 2;
+				int childColumn = tileColumn * 2 + quarter % 2;
+				if ((long) childRow * side >= rows || (long) childColumn * side >= columns) {
+					continue;
+				}
+				long count = tileCount(level, childRow, childColumn, weights);
+				if (count > best) {
+					best = count;
+					ties = 1;
+					bestRow = childRow;
+					bestColumn = childColumn;
+				}
+				else if (count == best && random.nextDouble() * (++ties) < 1) {
+					bestRow = childRow;
+					bestColumn = childColumn;
+				}
+			}
+			tileRow = bestRow;
+			tileColumn = bestColumn;
+		}
+		return new XYCoordinate(tileColumn * LEAF_SIDE, tileRow * LEAF_SIDE);
+	}
+
+}
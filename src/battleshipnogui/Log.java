@@ -0,0 +1,317 @@
+/*
+Project: Battleship
+File: Log.java
+Description: Leveled logging through a lock-free ring buffer that a background thread formats and writes, so game threads never wait on output and disabled levels cost one comparison and build no strings. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+Usage: Log.debug("AI shot {}: miss", cell) keeps the template and arguments in a ring slot; the writer thread replaces every {} with the next argument.
+Messages whose text is expensive to build (boards, heat maps) are guarded: if (Log.enabled(Log.TRACE)) { Log.trace("{}", boardText(board)); }
+The level is read from the battleship.log.level system property (off, error, warn, info, debug or trace) when a main calls configure.
+When the last argument is an exception, its stack trace is written after the message.
+When the ring is full, messages are dropped rather than blocking the game, and the writer reports how many.
+*/
+public class Log {
+
+	public static final int OFF = 0;
+	public static final int ERROR = 1;
+	public static final int WARN = 2;
+	public static final int INFO = 3;
+	public static final int DEBUG = 4;
+	public static final int TRACE = 5;
+
+	static final String[] LEVEL_NAMES = {"OFF", "ERROR", "WARN", "INFO", "DEBUG", "TRACE"};
+
+	static final int CAPACITY = 1 << 13;
+	private static final int MASK = CAPACITY - 1;
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+	private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+	private static volatile int level = INFO;
+	private static volatile PrintStream output = System.err;
+
+	/**
+	 * One message waiting in the ring; slots are allocated once and reused
+	 */
+	private static final class Record {
+
+		int level;
+		long millis;
+		String thread;
+		String template;
+		int argCount;
+		Object arg1;
+		Object arg2;
+		Object arg3;
+	}
+
+	// bounded multi-producer queue: slot i may be written when sequence[i] == position and read when sequence[i] == position + 1
+	private static final Record[] slots = new Record[CAPACITY];
+	private static final AtomicLongArray sequence = new AtomicLongArray(CAPACITY);
+	private static final AtomicLong tail = new AtomicLong();
+	private static volatile long head = 0;
+	private static final LongAdder dropped = new LongAdder();
+
+	private static volatile boolean writerIdle = false;
+	private static final Thread writer;
+
+	static {
+		for (int s = 0; s < CAPACITY; s++) {
+			slots[s] = new Record();
+			sequence.set(s, s);
+		}
+		writer = new Thread(Log::drainForever, "log-writer");
+		writer.setDaemon(true);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1000), "log-flush"));
+	}
+
+	/**
+	 * Sets the level from the battleship.log.level system property, or to a default if it is not set
+	 *
+	 * @param defaultLevel - level used when the property is not set
+	 */
+	public static void configure(int defaultLevel) {
+		String name = System.getProperty("battleship.log.level");
+		level = defaultLevel;
+		if (name != null) {
+			for (int l = 0; l < LEVEL_NAMES.length; l++) {
+				if (LEVEL_NAMES[l].equalsIgnoreCase(name)) {
+					level = l;
+				}
+			}
+		}
+	}
+
+	public static int getLevel() {
+		return level;
+	}
+
+	public static void setLevel(int newLevel) {
+		level = newLevel;
+	}
+
+	public static void setOutput(PrintStream newOutput) {
+		output = newOutput;
+	}
+
+	/**
+	 * Checks whether messages of a level are written; used to guard messages whose arguments are expensive to build
+	 *
+	 * @param messageLevel - level of the message
+	 * @return whether the message would be written
+	 */
+	public static boolean enabled(int messageLevel) {
+		return messageLevel <= level;
+	}
+
+	public static void error(String template, Object arg1) {
+		if (ERROR <= level) {
+			enqueue(ERROR, template, 1, arg1, null, null);
+		}
+	}
+
+	public static void error(String template, Object arg1, Object arg2) {
+		if (ERROR <= level) {
+			enqueue(ERROR, template, 2, arg1, arg2, null);
+		}
+	}
+
+	public static void warn(String template, Object arg1) {
+		if (WARN <= level) {
+			enqueue(WARN, template, 1, arg1, null, null);
+		}
+	}
+
+	public static void warn(String template, Object arg1, Object arg2) {
+		if (WARN <= level) {
+			enqueue(WARN, template, 2, arg1, arg2, null);
+		}
+	}
+
+	public static void info(String template) {
+		if (INFO <= level) {
+			enqueue(INFO, template, 0, null, null, null);
+		}
+	}
+
+	public static void info(String template, Object arg1) {
+		if (INFO <= level) {
+			enqueue(INFO, template, 1, arg1, null, null);
+		}
+	}
+
+	public static void debug(String template, Object arg1) {
+		if (DEBUG <= level) {
+			enqueue(DEBUG, template, 1, arg1, null, null);
+		}
+	}
+
+	public static void debug(String template, Object arg1, Object arg2) {
+		if (DEBUG <= level) {
+			enqueue(DEBUG, template, 2, arg1, arg2, null);
+		}
+	}
+
+	public static void debug(String template, Object arg1, Object arg2, Object arg3) {
+		if (DEBUG <= level) {
+			enqueue(DEBUG, template, 3, arg1, arg2, arg3);
+		}
+	}
+
+	public static void trace(String template, Object arg1) {
+		if (TRACE <= level) {
+			enqueue(TRACE, template, 1, arg1, null, null);
+		}
+	}
+
+	/**
+	 * Claims a slot, fills it and publishes it; drops the message if the ring is full
+	 * - arguments must not be changed afterwards, since they are formatted later on the writer thread
+	 */
+	private static void enqueue(int messageLevel, String template, int argCount, Object arg1, Object arg2, Object arg3) {
+		long position = tail.get();
+		while (true) {
+			long difference = sequence.get((int) position & MASK) - position;
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					break;
+				}
+				position = tail.get();
+			}
+			else if (difference < 0) {
+				dropped.increment();
+				return;
+			}
+			else {
+				position = tail.get();
+			}
+		}
+
+		Record record = slots[(int) position & MASK];
+		record.level = messageLevel;
+		record.millis = System.currentTimeMillis();
+		record.thread = Thread.currentThread().getName();
+		record.template = template;
+		record.argCount = argCount;
+		record.arg1 = arg1;
+		record.arg2 = arg2;
+		record.arg3 = arg3;
+		sequence.set((int) position & MASK, position + 1);
+
+		if (writerIdle) {
+			LockSupport.unpark(writer);
+		}
+	}
+
+	/**
+	 * Waits until every message logged before the call has been written
+	 *
+	 * @param timeoutMillis - longest time to wait
+	 */
+	public static void flush(long timeoutMillis) {
+		long target = tail.get();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		while (head < target && System.nanoTime() < deadline) {
+			LockSupport.unpark(writer);
+			LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+		}
+	}
+
+	private static void drainForever() {
+		StringBuilder line = new StringBuilder(256);
+		long reportedDrops = 0;
+		while (true) {
+			boolean wrote = false;
+			long position = head;
+			long end = position + CAPACITY;
+			// at most one ring's worth per pass, so head and the flushed output keep up with busy producers
+			while (position < end && sequence.get((int) position & MASK) == position + 1) {
+				Record record = slots[(int) position & MASK];
+				format(record, line);
+				Object last = lastArgument(record);
+				Throwable thrown = last instanceof Throwable ? (Throwable) last : null;
+				record.template = null;
+				record.arg1 = null;
+				record.arg2 = null;
+				record.arg3 = null;
+				sequence.set((int) position & MASK, position + CAPACITY);
+				position++;
+
+				PrintStream out = output;
+				out.println(line);
+				if (thrown != null) {
+					thrown.printStackTrace(out);
+				}
+				wrote = true;
+			}
+
+			long drops = dropped.sum();
+			if (drops != reportedDrops) {
+				output.println("WARN [log-writer] " + (drops - reportedDrops) + " messages dropped, the log buffer was full");
+				reportedDrops = drops;
+				wrote = true;
+			}
+			if (wrote) {
+				output.flush();
+			}
+			head = position;
+
+			writerIdle = true;
+			if (sequence.get((int) position & MASK) != position + 1) {
+				LockSupport.parkNanos(IDLE_PARK_NANOS);
+			}
+			writerIdle = false;
+		}
+	}
+
+	private static Object lastArgument(Record record) {
+		return record.argCount == 3 ? record.arg3 : record.argCount == 2 ? record.arg2 : record.arg1;
+	}
+
+	/**
+	 * Writes a message as its time, level, thread and text, with every {} of the template replaced by the next argument
+	 *
+	 * @param record - message
+	 * @param line - builder the line is written into, cleared first
+	 */
+	static void format(Record record, StringBuilder line) {
+		line.setLength(0);
+		line.append(TIME.format(LocalTime.ofInstant(Instant.ofEpochMilli(record.millis), ZoneId.systemDefault())));
+		line.append(' ').append(LEVEL_NAMES[record.level]).append(" [").append(record.thread).append("] ");
+
+		String template = record.template;
+		int argument = 0;
+		int from = 0;
+		int at;
+		while ((at = template.indexOf("{}", from)) != -1) {
+			line.append(template, from, at);
+			if (argument < record.argCount) {
+				argument++;
+				Object value = argument == 1 ? record.arg1 : argument == 2 ? record.arg2 : record.arg3;
+				line.append(value);
+			}
+			else {
+				line.append("{}");
+			}
+			from = at + 2;
+		}
+		line.append(template, from, template.length());
+	}
+
+}
@@ -0,0 +1,251 @@
+/*
+Project: Battleship
+File: Metrics.java
+Description: In-process registry of lock-free counters and latency histograms, tagged by difficulty, strategy and operation, readable as plain text from a local HTTP endpoint or a periodic log line. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class Metrics {
+
+	public static final String MOVE = "battleship_move_ns";
+	public static final String SHOT = "battleship_shot_ns";
+	public static final String PLACEMENT = "battleship_placement_ns";
+	public static final String IO = "battleship_io_ns";
+	public static final String GAMES_STARTED = "battleship_games_started_total";
+	public static final String GAMES_FINISHED = "battleship_games_finished_total";
+
+	static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+	// key is the name followed by the tags, e.g. battleship_move_ns{difficulty="expert",strategy="parity"}
+	private static final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private static final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+	/**
+	 * Count of events, updated without locks
+	 */
+	public static final class Counter {
+
+		private final LongAdder value = new LongAdder();
+
+		public void increment() {
+			value.increment();
+		}
+
+		public void add(long amount) {
+			value.add(amount);
+		}
+
+		public long get() {
+			return value.sum();
+		}
+	}
+
+	/**
+	 * Distribution of latencies in the logarithmic buckets of QuantileSketch, recorded without locks
+	 */
+	public static final class Histogram {
+
+		private final AtomicLongArray counts = new AtomicLongArray(QuantileSketch.BUCKETS);
+		private final LongAdder sum = new LongAdder();
+		private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+		private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+		/**
+		 * Records one value
+		 *
+		 * @param value - non-negative value, usually nanoseconds
+		 */
+		public void record(long value) {
+			if (value < 0) {
+				value = 0;
+			}
+			counts.incrementAndGet(QuantileSketch.bucket(value));
+			sum.add(value);
+			min.accumulate(value);
+			max.accumulate(value);
+		}
+
+		/**
+		 * Records the time since a start time
+		 *
+		 * @param startNanos - value of System.nanoTime() when the timed work began
+		 */
+		public void recordSince(long startNanos) {
+			record(System.nanoTime() - startNanos);
+		}
+
+		/**
+		 * Copies the recorded values into a sketch for reading quantiles; values recorded meanwhile may or may not be included
+		 *
+		 * @return sketch of the values recorded so far
+		 */
+		public QuantileSketch snapshot() {
+			long[] bucketCounts = new long[QuantileSketch.BUCKETS];
+			for (int b = 0; b < bucketCounts.length; b++) {
+				bucketCounts[b] = counts.get(b);
+			}
+			return QuantileSketch.fromBuckets(bucketCounts, sum.sum(), min.get(), max.get());
+		}
+	}
+
+	/**
+	 * Returns the counter with a name and tags, creating it on first use; callers on hot paths should keep the counter
+	 *
+	 * @param name - metric name
+	 * @param tags - tag names and values, alternating
+	 * @return counter
+	 */
+	public static Counter counter(String name, String... tags) {
+		return counters.computeIfAbsent(key(name, tags), key -> new Counter());
+	}
+
+	/**
+	 * Returns the histogram with a name and tags, creating it on first use; callers on hot paths should keep the histogram
+	 *
+	 * @param name - metric name
+	 * @param tags - tag names and values, alternating
+	 * @return histogram
+	 */
+	public static Histogram histogram(String name, String... tags) {
+		return histograms.computeIfAbsent(key(name, tags), key -> new Histogram());
+	}
+
+	/**
+	 * Writes every metric in the Prometheus text format: counters as values, histograms as quantiles, count, sum and max
+	 *
+	 * @return metrics text
+	 */
+	public static String render() {
+		StringBuilder text = new StringBuilder(4096);
+		for (Map.Entry<String, Counter> entry : new TreeMap<String, Counter>(counters).entrySet()) {
+			text.append(entry.getKey()).append(' ').append(entry.getValue().get()).append('\n');
+		}
+		for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(histograms).entrySet()) {
+			String key = entry.getKey();
+			int brace = key.indexOf('{');
+			String name = brace < 0 ? key : key.substring(0, brace);
+			String tags = brace < 0 ? "" : key.substring(brace + 1, key.length() - 1);
+			QuantileSketch sketch = entry.getValue().snapshot();
+
+			for (double quantile : QUANTILES) {
+				text.append(name).append('{').append(tags).append(tags.isEmpty() ? "" : ",").append("quantile=\"").append(quantile).append("\"} ").append(sketch.quantile(quantile)).append('\n');
+			}
+			String suffixTags = tags.isEmpty() ? "" : "{" + tags + "}";
+			text.append(name).append("_count").append(suffixTags).append(' ').append(sketch.getCount()).append('\n');
+			text.append(name).append("_sum").append(suffixTags).append(' ').append(sketch.getSum()).append('\n');
+			text.append(name).append("_max").append(suffixTags).append(' ').append(sketch.getMax()).append('\n');
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Summarizes per-move latency over all difficulties and strategies in one line
+	 *
+	 * @return log line with move count and p50, p99 and p999 in microseconds
+	 */
+	public static String summary() {
+		QuantileSketch moves = new QuantileSketch();
+		for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+			if (entry.getKey().startsWith(MOVE + "{") || entry.getKey().equals(MOVE)) {
+				moves.merge(entry.getValue().snapshot());
+			}
+		}
+		return "metrics moves=" + moves.getCount() + " move us p50=" + moves.quantile(0.5) / 1000 + " p99=" + moves.quantile(0.99) / 1000
+				+ " p999=" + moves.quantile(0.999) / 1000 + " max=" + moves.getMax() / 1000;
+	}
+
+	/**
+	 * Prints the summary line periodically on a daemon thread
+	 *
+	 * @param periodSeconds - time between lines
+	 * @param out - stream the lines are printed to
+	 * @return scheduler printing the lines, to be shut down by the caller
+	 */
+	public static ScheduledExecutorService startLogging(long periodSeconds, PrintStream out) {
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "metrics-log");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleAtFixedRate(() -> out.println(summary()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+		return scheduler;
+	}
+
+	/**
+	 * Starts the endpoint if the battleship.metrics.port system property is set, and the log line every minute
+	 *
+	 * @param out - stream the log lines are printed to
+	 */
+	public static void startFromProperties(PrintStream out) throws IOException {
+		Integer port = Integer.getInteger("battleship.metrics.port");
+		if (port != null) {
+			startEndpoint(port);
+			out.println("Metrics at http://localhost:" + port + "/metrics");
+		}
+		startLogging(60, out);
+	}
+
+	/**
+	 * Serves the metrics text at /metrics on the loopback interface
+	 *
+	 * @param port - port to listen on
+	 * @return running server, to be stopped by the caller
+	 */
+	public static HttpServer startEndpoint(int port) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 16);
+		server.createContext("/metrics", Metrics::handle);
+		server.start();
+		return server;
+	}
+
+	/**
+	 * Answers a scrape with the metrics text
+	 *
+	 * @param exchange - HTTP request
+	 */
+	static void handle(HttpExchange exchange) throws IOException {
+		byte[] bytes = render().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private static String key(String name, String... tags) {
+		if (tags.length == 0) {
+			return name;
+		}
+		StringBuilder key = new StringBuilder(name).append('{');
+		for (int t = 0; t + 1 < tags.length; t += 2) {
+			if (t > 0) {
+				key.append(',');
+			}
+			key.append(tags[t]).append("=\"").append(tags[t + 1]).append('"');
+		}
+		return key.append('}').toString();
+	}
+
+}
@@ -0,0 +1,281 @@
+/*
+Project: Battleship
+File: ProfileTuner.java
+Description: Searches the expert AI's constants with a parallel evolution strategy over the self-play simulator, checkpointing each generation and writing the best configuration as a loadable profile. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ProfileTuner {
+
+	// parameter vector: parity guesses, parity modulus (the learning weights are only used by the GUI AI and are not simulated)
+	static final int DIMENSIONS = 2;
+	static final double[] LOWER_BOUNDS = {0, 2};
+	static final double[] UPPER_BOUNDS = {50, 6};
+	static final double[] INITIAL_SIGMA = {4, 1};
+
+	private final int populationSize;
+	private final int gamesPerCandidate;
+	private final Path checkpointPath;
+	private final ExecutorService executor;
+	private final Random random;
+	// board size and fleet the candidates are evaluated on
+	private final AIProfile base;
+
+	private int generation = 0;
+	private double[] mean;
+	private double[] sigma;
+	private double[] best;
+	private double bestFitness = Double.MAX_VALUE;
+
+	/**
+	 * Creates a tuner, resuming from the checkpoint file if it exists
+	 *
+	 * @param populationSize - candidates evaluated per generation
+	 * @param gamesPerCandidate - self-play games played by each candidate
+	 * @param checkpointPath - file the search state is saved to after every generation
+	 * @param threads - number of threads evaluating candidates
+	 * @param seed - seed for mutations and the games' seeds
+	 */
+	public ProfileTuner(int populationSize, int gamesPerCandidate, Path checkpointPath, int threads, long seed) throws IOException {
+		this(populationSize, gamesPerCandidate, checkpointPath, threads, seed, AIProfile.defaults());
+	}
+
+	/**
+	 * Creates a tuner for the board size and fleet of a profile, resuming from the checkpoint file if it exists
+	 *
+	 * @param populationSize - candidates evaluated per generation
+	 * @param gamesPerCandidate - self-play games played by each candidate
+	 * @param checkpointPath - file the search state is saved to after every generation
+	 * @param threads - number of threads evaluating candidates
+	 * @param seed - seed for mutations and the games' seeds
+	 * @param base - profile whose board size and fleet every candidate keeps
+	 */
+	public ProfileTuner(int populationSize, int gamesPerCandidate, Path checkpointPath, int threads, long seed, AIProfile base) throws IOException {
+		this.base = base;
+		this.populationSize = populationSize;
+		this.gamesPerCandidate = gamesPerCandidate;
+		this.checkpointPath = checkpointPath;
+		this.executor = Executors.newFixedThreadPool(threads);
+		this.random = new Random(seed);
+
+		AIProfile defaults = AIProfile.defaults();
+		mean = new double[] {defaults.getParityGuesses(), defaults.getParityModulus()};
+		sigma = INITIAL_SIGMA.clone();
+		best = mean.clone();
+
+		if (checkpointPath != null && Files.exists(checkpointPath)) {
+			loadCheckpoint();
+		}
+	}
+
+	/**
+	 * Converts a parameter vector into a profile, rounding and clamping it to values the AI can play with
+	 * - the parity phase is never longer than the number of parity cells, so huntParity always finds an unshot cell
+	 *
+	 * @param base - profile the board size and fleet are copied from
+	 * @param vector - parameter vector
+	 * @return expert AI profile
+	 */
+	static AIProfile toProfile(AIProfile base, double[] vector) {
+		AIProfile profile = base.copy();
+		int modulus = (int) Math.round(clamp(vector[1], LOWER_BOUNDS[1], UPPER_BOUNDS[1]));
+		long parityCells = parityCells(profile.getRows(), profile.getColumns(), modulus);
+		profile.setParityModulus(modulus);
+		profile.setParityGuesses((int) Math.round(clamp(vector[0], LOWER_BOUNDS[0], Math.min(UPPER_BOUNDS[0], parityCells))));
+		return profile;
+	}
+
+	/**
+	 * Counts the cells huntParity guesses from, those where (x + y + 1) is a multiple of the modulus
+	 *
+	 * @return number of parity cells of the board
+	 */
+	static long parityCells(int rows, int columns, int modulus) {
+		long cells = 0;
+		for (int y = 0; y < rows; y++) {
+			// first column of the row whose cell is a parity cell
+			int first = (modulus - (y + 1) % modulus) % modulus;
+			if (first < columns) {
+				cells += (columns - 1 - first) / modulus + 1;
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * Runs one generation: mutates the mean, evaluates every candidate in parallel on the same seeds, then recombines the best half
+	 *
+	 * @return mean shots to win of the best candidate of this generation
+	 */
+	public double runGeneration() throws Exception {
+		double[][] candidates = new double[populationSize][];
+		ArrayList<Future<Double>> fitness = new ArrayList<Future<Double>>();
+		long firstSeed = random.nextLong();
+
+		for (int i = 0; i < populationSize; i++) {
+			double[] candidate = new double[DIMENSIONS];
+			for (int d = 0; d < DIMENSIONS; d++) {
+				candidate[d] = clamp(mean[d] + sigma[d] * random.nextGaussian(), LOWER_BOUNDS[d], UPPER_BOUNDS[d]);
+			}
+			candidates[i] = candidate;
+			AIProfile profile = toProfile(base, candidate);
+			fitness.add(executor.submit(() -> evaluate(profile, firstSeed)));
+		}
+
+		double[] scores = new double[populationSize];
+		Integer[] order = new Integer[populationSize];
+		for (int i = 0; i < populationSize; i++) {
+			scores[i] = fitness.get(i).get();
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(scores[a], scores[b]));
+
+		// recombines the best half into the new mean and shrinks or widens the search around it
+		int parents = Math.max(1, populationSize / 2);
+		double[] newMean = new double[DIMENSIONS];
+		for (int p = 0; p < parents; p++) {
+			for (int d = 0; d < DIMENSIONS; d++) {
+				newMean[d] += candidates[order[p]][d] / parents;
+			}
+		}
+		double generationBest = scores[order[0]];
+		double factor = generationBest < bestFitness ? 1.2 : 0.85;
+		for (int d = 0; d < DIMENSIONS; d++) {
+			sigma[d] = clamp(sigma[d] * factor, 0.05, UPPER_BOUNDS[d] - LOWER_BOUNDS[d]);
+		}
+		mean = newMean;
+
+		// fitness is measured on different seeds each generation, so the best is re-evaluated against the same seeds before replacing it
+		if (generationBest < bestFitness) {
+			double previousBest = evaluate(toProfile(base, best), firstSeed);
+			if (generationBest < previousBest || bestFitness == Double.MAX_VALUE) {
+				best = candidates[order[0]].clone();
+				bestFitness = generationBest;
+			}
+		}
+
+		generation++;
+		if (checkpointPath != null) {
+			saveCheckpoint();
+		}
+		return generationBest;
+	}
+
+	/**
+	 * Plays self-play games with a profile and returns its mean shots to win (lower is better)
+	 *
+	 * @param profile - profile to evaluate
+	 * @param firstSeed - seed of the first game
+	 * @return mean shots to win
+	 */
+	double evaluate(AIProfile profile, long firstSeed) {
+		long shots = 0;
+		try {
+			for (int g = 0; g < gamesPerCandidate; g++) {
+				shots += SelfPlay.playGame(firstSeed + g, SelfPlay.STRATEGY_EXPERT, SelfPlay.PLACEMENT_EXPERT, profile, g, null, null);
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return (double) shots / gamesPerCandidate;
+	}
+
+	public AIProfile getBestProfile() {
+		return toProfile(base, best);
+	}
+
+	public double getBestFitness() {
+		return bestFitness;
+	}
+
+	public int getGeneration() {
+		return generation;
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private void saveCheckpoint() throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty("generation", Integer.toString(generation));
+		properties.setProperty("bestFitness", Double.toString(bestFitness));
+		for (int d = 0; d < DIMENSIONS; d++) {
+			properties.setProperty("mean." + d, Double.toString(mean[d]));
+			properties.setProperty("sigma." + d, Double.toString(sigma[d]));
+			properties.setProperty("best." + d, Double.toString(best[d]));
+		}
+
+		// writes to a temporary file first so an interrupted run never leaves a half-written checkpoint
+		Path temporary = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+		try (Writer writer = Files.newBufferedWriter(temporary)) {
+			properties.store(writer, "Expert AI tuner checkpoint");
+		}
+		Files.move(temporary, checkpointPath, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private void loadCheckpoint() throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(checkpointPath)) {
+			properties.load(reader);
+		}
+		generation = Integer.parseInt(properties.getProperty("generation"));
+		bestFitness = Double.parseDouble(properties.getProperty("bestFitness"));
+		for (int d = 0; d < DIMENSIONS; d++) {
+			mean[d] = Double.parseDouble(properties.getProperty("mean." + d));
+			sigma[d] = Double.parseDouble(properties.getProperty("sigma." + d));
+			best[d] = Double.parseDouble(properties.getProperty("best." + d));
+		}
+	}
+
+	private static double clamp(double value, double min, double max) {
+		return Math.max(min, Math.min(max, value));
+	}
+
+	public static void main(String[] args) throws Exception {
+		int generations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int gamesPerCandidate = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		Path profilePath = Paths.get(args.length > 2 ? args[2] : "ai-profile.properties");
+		Path checkpointPath = Paths.get(args.length > 3 ? args[3] : "ai-tuner.checkpoint");
+		int threads = Runtime.getRuntime().availableProcessors();
+
+		Log.configure(Log.OFF);
+		// an existing profile keeps its board size and fleet; only the AI constants are tuned
+		AIProfile base = Files.exists(profilePath) ? AIProfile.load(profilePath) : AIProfile.defaults();
+		ProfileTuner tuner = new ProfileTuner(Math.max(8, threads * 2), gamesPerCandidate, checkpointPath, threads, System.nanoTime(), base);
+
+		try {
+			while (tuner.getGeneration() < generations) {
+				double generationBest = tuner.runGeneration();
+				System.out.println("Generation " + tuner.getGeneration() + ": best " + String.format("%.3f", generationBest)
+						+ ", overall " + String.format("%.3f", tuner.getBestFitness()) + " (" + tuner.getBestProfile() + ")");
+			}
+			tuner.getBestProfile().save(profilePath, "Tuned expert AI profile, mean shots to win " + String.format("%.3f", tuner.getBestFitness()));
+			System.out.println("Best profile written to " + profilePath);
+		}
+		finally {
+			tuner.shutdown();
+		}
+	}
+
+}
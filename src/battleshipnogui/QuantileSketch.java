@@ -0,0 +1,149 @@
+/*
+Project: Battleship
+File: QuantileSketch.java
+Description: Mergeable histogram with logarithmic buckets used to estimate quantiles of non-negative values (shots, nanoseconds) within about 6% relative error. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+public class QuantileSketch {
+
+	// values below 16 get their own bucket, larger values are split into 16 sub-buckets per power of two
+	static final int SUB_BUCKET_BITS = 4;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count = 0;
+	private long sum = 0;
+	private long min = Long.MAX_VALUE;
+	private long max = Long.MIN_VALUE;
+
+	/**
+	 * Records one value
+	 *
+	 * @param value - non-negative value to record
+	 */
+	public void record(long value) {
+		record(value, 1);
+	}
+
+	/**
+	 * Records the same value several times
+	 *
+	 * @param value - non-negative value to record
+	 * @param times - number of times the value occurred
+	 */
+	public void record(long value, long times) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts[bucket(value)] += times;
+		count += times;
+		sum += value * times;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Adds all values recorded by another sketch to this sketch
+	 *
+	 * @param other - sketch to merge in
+	 */
+	public void merge(QuantileSketch other) {
+		for (int b = 0; b < BUCKETS; b++) {
+			counts[b] += other.counts[b];
+		}
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Estimates the value below which a fraction of the recorded values fall
+	 *
+	 * @param quantile - fraction between 0 and 1 (0.5 for the median)
+	 * @return estimated value, or 0 if nothing has been recorded
+	 */
+	public long quantile(double quantile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(quantile * count);
+		long seen = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			seen += counts[b];
+			if (seen >= Math.max(rank, 1)) {
+				// the middle of the bucket, clamped to the values actually seen
+				long lower = lowerBound(b);
+				long upper = b + 1 < BUCKETS ? lowerBound(b + 1) - 1 : Long.MAX_VALUE;
+				long middle = lower + (upper - lower) / 2;
+				return Math.max(min, Math.min(max, middle));
+			}
+		}
+		return max;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getSum() {
+		return sum;
+	}
+
+	public long getMin() {
+		return count == 0 ? 0 : min;
+	}
+
+	public long getMax() {
+		return count == 0 ? 0 : max;
+	}
+
+	public double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * Builds a sketch from bucket counts collected elsewhere, e.g. by a concurrent histogram
+	 *
+	 * @param bucketCounts - number of values in every bucket
+	 * @param sum - sum of the values
+	 * @param min - smallest value
+	 * @param max - largest value
+	 * @return sketch holding the values
+	 */
+	static QuantileSketch fromBuckets(long[] bucketCounts, long sum, long min, long max) {
+		QuantileSketch sketch = new QuantileSketch();
+		for (int b = 0; b < BUCKETS; b++) {
+			sketch.counts[b] = bucketCounts[b];
+			sketch.count += bucketCounts[b];
+		}
+		sketch.sum = sum;
+		sketch.min = min;
+		sketch.max = max;
+		return sketch;
+	}
+
+	static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long lowerBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		int subBucket = bucket % SUB_BUCKETS;
+		return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+	}
+
+}
@@ -0,0 +1,302 @@
+/*
+Project: Battleship
+File: SelfPlay.java
+Description: Self-play simulator: the AI plays complete games against hidden boards and the results are recorded off-heap. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SelfPlay {
+
+	public static final int STRATEGY_EXPERT = 0;
+	public static final int STRATEGY_SIMPLE = 1;
+	public static final int PLACEMENT_EXPERT = 0;
+	public static final int PLACEMENT_SIMPLE = 1;
+
+
+	/**
+	 * Plays one complete self-play game: places ships on a hidden board and lets the AI guess until every ship is sunk
+	 *
+	 * @param seed - seed for ship placement and guessing
+	 * @param strategyId - strategy used to guess (STRATEGY_EXPERT or STRATEGY_SIMPLE)
+	 * @param gameId - identifier of the game
+	 * @param store - store that receives the game record, or null
+	 * @return number of shots taken to sink every ship
+	 */
+	public static int playGame(long seed, int strategyId, long gameId, SimulationResultStore store) {
+		try {
+			return playGame(seed, strategyId, gameId, store, null);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Plays one complete self-play game, also exporting every shot to a columnar dataset
+	 *
+	 * @param seed - seed for ship placement and guessing
+	 * @param strategyId - strategy used to guess (STRATEGY_EXPERT or STRATEGY_SIMPLE)
+	 * @param gameId - identifier of the game
+	 * @param store - store that receives the game record, or null
+	 * @param writer - dataset writer that receives one row per shot, or null
+	 * @return number of shots taken to sink every ship
+	 */
+	public static int playGame(long seed, int strategyId, long gameId, SimulationResultStore store, ShotDatasetWriter writer) throws IOException {
+		return playGame(seed, strategyId, PLACEMENT_EXPERT, gameId, store, writer);
+	}
+	
+	/**
+	 * Plays one complete self-play game with a chosen placement algorithm for the hidden board
+	 *
+	 * @param seed - seed for ship placement and guessing
+	 * @param strategyId - strategy used to guess (STRATEGY_EXPERT or STRATEGY_SIMPLE)
+	 * @param placementId - algorithm used to place the hidden ships (PLACEMENT_EXPERT or PLACEMENT_SIMPLE)
+	 * @param gameId - identifier of the game
+	 * @param store - store that receives the game record, or null
+	 * @param writer - dataset writer that receives one row per shot, or null
+	 * @return number of shots taken to sink every ship
+	 */
+	public static int playGame(long seed, int strategyId, int placementId, long gameId, SimulationResultStore store, ShotDatasetWriter writer) throws IOException {
+		return playGame(seed, strategyId, placementId, AIProfile.defaults(), gameId, store, writer);
+	}
+	
+	/**
+	 * Plays one complete self-play game with the given expert AI profile
+	 *
+	 * @param seed - seed for ship placement and guessing
+	 * @param strategyId - strategy used to guess (STRATEGY_EXPERT or STRATEGY_SIMPLE)
+	 * @param placementId - algorithm used to place the hidden ships (PLACEMENT_EXPERT or PLACEMENT_SIMPLE)
+	 * @param profile - tunable constants of the expert AI; self-play simulates boards with a Block per cell, not sparse ones
+	 * @param gameId - identifier of the game
+	 * @param store - store that receives the game record, or null
+	 * @param writer - dataset writer that receives one row per shot, or null
+	 * @return number of shots taken to sink every ship
+	 */
+	public static int playGame(long seed, int strategyId, int placementId, AIProfile profile, long gameId, SimulationResultStore store, ShotDatasetWriter writer) throws IOException {
+		BattleshipNoGUI.resetGame(seed, profile);
+		if (profile.isSparse()) {
+			throw new IllegalArgumentException("self-play needs a board with a Block per cell, not a sparse " + profile.getRows() + "x" + profile.getColumns() + " board");
+		}
+
+		Ship[] ships = profile.createShips();
+		Block[][] answerBoard = new Block[profile.getRows()][profile.getColumns()];
+		if (placementId == PLACEMENT_SIMPLE) {
+			BattleshipNoGUI.placeShipsSimple(answerBoard, ships, '-');
+		}
+		else {
+			BattleshipNoGUI.placeShips(answerBoard, ships, '-');
+		}
+
+		Block[][] unknownBoard = BattleshipNoGUI.initializeUserBoard(profile.getRows(), profile.getColumns());
+		int[] shipHitCount = new int[ships.length];
+		ArrayList<Boolean> shotsHit = new ArrayList<Boolean>();
+
+		if (store != null) {
+			store.beginGame(gameId, seed, strategyId);
+		}
+		int shots = 0;
+		int maxShots = maxShots(profile);
+
+		// guess until every ship is sunk (capped in case the AI keeps repeating a coordinate)
+		while (!BattleshipNoGUI.state().getGameOver() && shots < maxShots) {
+			// the heat map is only needed for the dataset, so it is skipped otherwise
+			double[][] heatMap = null;
+			int shipsRemaining = 0;
+			if (writer != null) {
+				heatMap = BattleshipNoGUI.generateOverallHeatMap(unknownBoard, ships, shipHitCount, '?');
+				shipsRemaining = countShipsRemaining(ships, shipHitCount);
+			}
+			
+			XYCoordinate guess;
+			int mode;
+			if (strategyId == STRATEGY_SIMPLE) {
+				guess = BattleshipNoGUI.simpleGuess(unknownBoard);
+				mode = BattleshipNoGUI.MODE_RANDOM;
+			}
+			else {
+				guess = BattleshipNoGUI.expertGuess(unknownBoard, ships, shotsHit, shipHitCount, BattleshipNoGUI.state().getLastHit(), BattleshipNoGUI.state().getNumGuesses(), '?');
+				mode = BattleshipNoGUI.state().getLastGuessMode();
+			}
+
+			int hitsBefore = shotsHit.size();
+			BattleshipNoGUI.check(unknownBoard, answerBoard, ships, shotsHit, shipHitCount, guess);
+			boolean hit = shotsHit.get(hitsBefore);
+			if (store != null) {
+				store.recordShot(hit);
+			}
+			
+			if (writer != null) {
+				int result = ShotDatasetWriter.RESULT_MISS;
+				if (hit) {
+					result = countShipsRemaining(ships, shipHitCount) < shipsRemaining ? ShotDatasetWriter.RESULT_SUNK : ShotDatasetWriter.RESULT_HIT;
+				}
+				writer.writeShot(gameId, shots, guess.getY() * profile.getColumns() + guess.getX(), mode, (float) heatMap[guess.getY()][guess.getX()], result,
+						shipsRemaining, countHitNeighbours(unknownBoard, guess), profile.getRows() * profile.getColumns() - shots);
+			}
+			shots++;
+		}
+
+		if (store != null) {
+			store.endGame(shots, BattleshipNoGUI.state().getGameOver());
+		}
+		return shots;
+	}
+
+	/**
+	 * Caps the shots of a game, in case the AI keeps repeating a coordinate
+	 *
+	 * @param profile - profile giving the board size
+	 * @return twice the number of cells of the board
+	 */
+	static int maxShots(AIProfile profile) {
+		return profile.getRows() * profile.getColumns() * 2;
+	}
+
+	/**
+	 * Counts the ships that have not been sunk yet
+	 *
+	 * @param ships - array of ships being hunted
+	 * @param shipHitCount - integer array of number of shots that have hit each ship
+	 * @return number of ships not sunk
+	 */
+	static int countShipsRemaining(Ship[] ships, int[] shipHitCount) {
+		int remaining = 0;
+		for (int s = 0; s < ships.length; s++) {
+			if (shipHitCount[s] != ships[s].getLength()) {
+				remaining++;
+			}
+		}
+		return remaining;
+	}
+	
+	/**
+	 * Counts the orthogonal neighbours of a coordinate that are known to be ship segments
+	 *
+	 * @param board - 2D Block array (board) that the AI guesses from
+	 * @param coordinate - coordinate whose neighbours are checked
+	 * @return number of neighbouring hits
+	 */
+	static int countHitNeighbours(Block[][] board, XYCoordinate coordinate) {
+		int[][] directions = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+		int hits = 0;
+		for (int[] d : directions) {
+			int r = coordinate.getY() + d[0];
+			int c = coordinate.getX() + d[1];
+			if (r >= 0 && r < board.length && c >= 0 && c < board[r].length) {
+				char occupation = board[r][c].getOccupation();
+				if (occupation != '?' && occupation != '-') {
+					hits++;
+				}
+			}
+		}
+		return hits;
+	}
+	
+	/**
+	 * Plays self-play games and exports every shot to a columnar dataset
+	 *
+	 * @param games - number of games to play
+	 * @param seed - seed of the first game; later games use consecutive seeds
+	 * @param strategyId - strategy used to guess
+	 * @param path - dataset file to write
+	 * @return number of rows written
+	 */
+	public static long exportGames(long games, long seed, int strategyId, Path path) throws IOException {
+		try (ShotDatasetWriter writer = new ShotDatasetWriter(path, 65536)) {
+			for (long g = 0; g < games; g++) {
+				playGame(seed + g, strategyId, g, null, writer);
+			}
+			return writer.getRowCount();
+		}
+	}
+	
+	/**
+	 * Plays self-play games on several threads, each thread with its own game state
+	 *
+	 * @param games - number of games to play
+	 * @param seed - seed of the first game; later games use consecutive seeds
+	 * @param strategyId - strategy used to guess
+	 * @param threads - number of threads to play on
+	 * @return total number of shots taken
+	 */
+	public static long playParallel(long games, long seed, int strategyId, int threads) throws InterruptedException {
+		AtomicLong nextGame = new AtomicLong();
+		AtomicLong totalShots = new AtomicLong();
+		Thread[] workers = new Thread[threads];
+
+		for (int t = 0; t < threads; t++) {
+			workers[t] = new Thread(() -> {
+				long shots = 0;
+				for (long g = nextGame.getAndIncrement(); g < games; g = nextGame.getAndIncrement()) {
+					shots += playGame(seed + g, strategyId, g, null);
+				}
+				totalShots.addAndGet(shots);
+			}, "self-play-" + t);
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		return totalShots.get();
+	}
+	
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Log.configure(Log.OFF);
+		
+		// "export" writes a columnar dataset instead of a summary: SelfPlay export <games> <seed> <file> [simple]
+		if (args.length > 0 && args[0].equals("export")) {
+			long rows = exportGames(Long.parseLong(args[1]), Long.parseLong(args[2]), args.length > 4 && args[4].equals("simple") ? STRATEGY_SIMPLE : STRATEGY_EXPERT, Paths.get(args[3]));
+			System.out.println("Shots exported: " + rows);
+			return;
+		}
+		
+		// "stats" plays on every core and reports online statistics: SelfPlay stats <games> <seed> [threads]
+		if (args.length > 0 && args[0].equals("stats")) {
+			int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+			AIProfile profile = AIProfile.defaults();
+			BattleshipNoGUI.stats = new SimulationStats(profile.getRows() * profile.getColumns());
+			ScheduledExecutorService snapshots = BattleshipNoGUI.stats.startSnapshots(1000, System.out);
+			playParallel(Long.parseLong(args[1]), Long.parseLong(args[2]), STRATEGY_EXPERT, threads);
+			snapshots.shutdownNow();
+			System.out.println(SimulationStats.format(BattleshipNoGUI.stats.merge()));
+			return;
+		}
+		
+		long games = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		Path spillPath = args.length > 2 ? Paths.get(args[2]) : null;
+		int strategyId = args.length > 3 && args[3].equals("simple") ? STRATEGY_SIMPLE : STRATEGY_EXPERT;
+
+		try (SimulationResultStore store = new SimulationResultStore(maxShots(AIProfile.defaults()), 256L * 1024 * 1024, spillPath)) {
+			long totalShots = 0;
+			long wins = 0;
+			long start = System.nanoTime();
+
+			for (long g = 0; g < games; g++) {
+				totalShots += playGame(seed + g, strategyId, g, store);
+				if ((store.getFlags(g) & SimulationResultStore.FLAG_WON) != 0) {
+					wins++;
+				}
+			}
+
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println("Games played: " + store.size() + " (" + wins + " won)");
+			System.out.println("Average shots to win: " + String.format("%.2f", (double) totalShots / games));
+			System.out.println("Shots recorded: " + totalShots + " in " + String.format("%.2f", seconds) + "s");
+			System.out.println("Off-heap memory used: " + store.getMemoryUsed() + " bytes");
+		}
+	}
+
+}
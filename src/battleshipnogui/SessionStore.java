@@ -0,0 +1,402 @@
+/*
+Project: Battleship
+File: SessionStore.java
+Description: Keeps the games of a hosted deployment within a memory cap: games that are idle too long or least recently used are spilled to small files on disk and restored transparently the next time they are used. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class SessionStore {
+
+	// rough heap footprint of one resident game: its stored cells (a Block each, or a sparse table entry with its share of free slots),
+	// the fleet, the game state and the shot history
+	static final long BYTES_PER_CELL = 40;
+	static final long GAME_BASE_BYTES = 2048;
+	static final long BYTES_PER_SHOT = 8;
+
+	private static final Metrics.Histogram SPILL_WRITES = Metrics.histogram(Metrics.IO, "operation", "spill_write");
+	private static final Metrics.Histogram RESTORES = Metrics.histogram(Metrics.IO, "operation", "restore");
+
+	private final long memoryLimit;
+	private final long idleMillis;
+	private final long retentionMillis;
+	private final Path spillDirectory;
+	private final PrintStream restoredOut;
+
+	// iterates from the least recently used game to the most recently used one
+	private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<Long, Entry>(1024, 0.75f, true);
+	private long residentBytes = 0;
+	private long spills = 0;
+	private long restores = 0;
+
+	/**
+	 * Where one game currently lives: in memory, in a serialized form waiting to be written, or on disk
+	 */
+	private static final class Entry {
+
+		final long id;
+		Game game;
+		byte[] spilling;
+		int pins = 0;
+		long bytes = 0;
+		long lastAccess;
+
+		Entry(long id, Game game, long now) {
+			this.id = id;
+			this.game = game;
+			this.lastAccess = now;
+		}
+	}
+
+	/**
+	 * Creates a store
+	 *
+	 * @param memoryLimit - approximate heap budget of resident games in bytes
+	 * @param idleMillis - games unused for this long are spilled to disk
+	 * @param retentionMillis - spilled games unused for this long are deleted (0 keeps them forever)
+	 * @param spillDirectory - directory spilled games are written to
+	 * @param restoredOut - stream restored games print their messages to
+	 */
+	public SessionStore(long memoryLimit, long idleMillis, long retentionMillis, Path spillDirectory, PrintStream restoredOut) throws IOException {
+		this.memoryLimit = memoryLimit;
+		this.idleMillis = idleMillis;
+		this.retentionMillis = retentionMillis;
+		this.spillDirectory = Files.createDirectories(spillDirectory);
+		this.restoredOut = restoredOut;
+	}
+
+	/**
+	 * Adds a new game; it is pinned until released
+	 *
+	 * @param id - id of the game
+	 * @param game - game to store
+	 */
+	public void add(long id, Game game) {
+		ArrayList<Entry> victims;
+		synchronized (this) {
+			Entry entry = new Entry(id, game, System.currentTimeMillis());
+			entry.pins = 1;
+			entry.bytes = estimateBytes(game);
+			residentBytes += entry.bytes;
+			entries.put(id, entry);
+			victims = evictOverLimit();
+		}
+		writeSpills(victims);
+	}
+
+	/**
+	 * Returns a game for a move, restoring it from disk if it was spilled; it cannot be spilled until released
+	 *
+	 * @param id - id of the game
+	 * @return game, or null if there is no game with this id
+	 */
+	public Game acquire(long id) {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(id);
+			if (entry == null) {
+				return null;
+			}
+			entry.pins++;
+			entry.lastAccess = System.currentTimeMillis();
+			if (entry.game != null) {
+				return entry.game;
+			}
+		}
+
+		// the pin keeps the entry from being spilled or expired while its file is read outside the store's lock
+		ArrayList<Entry> victims;
+		Game game;
+		try {
+			game = restore(entry);
+		}
+		catch (IOException e) {
+			synchronized (this) {
+				entry.pins--;
+			}
+			throw new UncheckedIOException(e);
+		}
+		synchronized (this) {
+			victims = evictOverLimit();
+		}
+		writeSpills(victims);
+		return game;
+	}
+
+	/**
+	 * Ends a move started with acquire or add
+	 *
+	 * @param id - id of the game
+	 */
+	public void release(long id) {
+		ArrayList<Entry> victims;
+		synchronized (this) {
+			Entry entry = entries.get(id);
+			if (entry == null) {
+				return;
+			}
+			entry.pins--;
+			entry.lastAccess = System.currentTimeMillis();
+			if (entry.game != null) {
+				residentBytes += estimateBytes(entry.game) - entry.bytes;
+				entry.bytes = estimateBytes(entry.game);
+			}
+			victims = evictOverLimit();
+		}
+		writeSpills(victims);
+	}
+
+	/**
+	 * Removes a game wherever it is stored
+	 *
+	 * @param id - id of the game
+	 */
+	public void remove(long id) {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.remove(id);
+			if (entry == null) {
+				return;
+			}
+			if (entry.game != null) {
+				residentBytes -= entry.bytes;
+			}
+			entry.game = null;
+			entry.spilling = null;
+		}
+		deleteSpill(entry);
+	}
+
+	/**
+	 * Spills games that have been idle too long and deletes spilled games past the retention time
+	 */
+	public void sweep() {
+		ArrayList<Entry> victims = new ArrayList<Entry>();
+		ArrayList<Entry> expired = new ArrayList<Entry>();
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			Iterator<Entry> iterator = entries.values().iterator();
+			while (iterator.hasNext()) {
+				Entry entry = iterator.next();
+				// entries are in access order, so everything after this one was used more recently
+				if (now - entry.lastAccess < Math.min(idleMillis, retentionMillis > 0 ? retentionMillis : Long.MAX_VALUE)) {
+					break;
+				}
+				if (entry.pins > 0) {
+					continue;
+				}
+				if (retentionMillis > 0 && now - entry.lastAccess >= retentionMillis) {
+					if (entry.game != null) {
+						residentBytes -= entry.bytes;
+					}
+					entry.game = null;
+					entry.spilling = null;
+					iterator.remove();
+					expired.add(entry);
+				}
+				else if (entry.game != null) {
+					victims.add(spill(entry));
+				}
+			}
+		}
+		writeSpills(victims);
+		for (Entry entry : expired) {
+			deleteSpill(entry);
+		}
+	}
+
+	/**
+	 * Sweeps the store periodically on a daemon thread
+	 *
+	 * @param periodMillis - time between sweeps in milliseconds
+	 * @return scheduler running the sweeps, to be shut down by the caller
+	 */
+	public ScheduledExecutorService startSweeper(long periodMillis) {
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "session-sweeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleAtFixedRate(this::sweep, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+		return scheduler;
+	}
+
+	public synchronized int getGameCount() {
+		return entries.size();
+	}
+
+	public synchronized long getResidentBytes() {
+		return residentBytes;
+	}
+
+	public synchronized String report() {
+		int resident = 0;
+		for (Entry entry : entries.values()) {
+			if (entry.game != null) {
+				resident++;
+			}
+		}
+		return "games=" + entries.size() + " resident=" + resident + " residentKB=" + residentBytes / 1024 + " spills=" + spills + " restores=" + restores;
+	}
+
+	static long estimateBytes(Game game) {
+		return GAME_BASE_BYTES + BYTES_PER_CELL * game.getStoredCells() + BYTES_PER_SHOT * game.getState().getNumGuesses();
+	}
+
+	/**
+	 * Spills least recently used games until the resident games fit in the memory limit; called while holding the lock
+	 *
+	 * @return spilled entries whose files still have to be written
+	 */
+	private ArrayList<Entry> evictOverLimit() {
+		ArrayList<Entry> victims = new ArrayList<Entry>();
+		if (residentBytes <= memoryLimit) {
+			return victims;
+		}
+		for (Entry entry : entries.values()) {
+			if (residentBytes <= memoryLimit) {
+				break;
+			}
+			if (entry.game != null && entry.pins == 0) {
+				victims.add(spill(entry));
+			}
+		}
+		return victims;
+	}
+
+	/**
+	 * Serializes a game and drops it from memory; called while holding the lock, the file is written afterwards
+	 */
+	private Entry spill(Entry entry) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(384);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			entry.game.writeTo(out);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		entry.spilling = bytes.toByteArray();
+		entry.game = null;
+		residentBytes -= entry.bytes;
+		spills++;
+		return entry;
+	}
+
+	/**
+	 * Brings a pinned, spilled game back into memory without holding the store's lock while its file is read
+	 * - the entry's lock makes a write of its file in progress finish first, and a second acquire of the same game wait for this one
+	 *
+	 * @return restored game
+	 */
+	private Game restore(Entry entry) throws IOException {
+		synchronized (entry) {
+			byte[] data;
+			synchronized (this) {
+				// restored by another acquire while this one waited
+				if (entry.game != null) {
+					return entry.game;
+				}
+				data = entry.spilling;
+			}
+
+			long start = System.nanoTime();
+			if (data == null) {
+				data = Files.readAllBytes(spillPath(entry.id));
+			}
+			Game game;
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new ByteArrayInputStream(data)))) {
+				game = Game.readFrom(in, restoredOut);
+			}
+			RESTORES.recordSince(start);
+
+			synchronized (this) {
+				entry.game = game;
+				entry.spilling = null;
+				entry.bytes = estimateBytes(game);
+				// a game removed in the meantime is handed to its last mover but no longer counted
+				if (entries.get(entry.id) == entry) {
+					residentBytes += entry.bytes;
+				}
+				restores++;
+			}
+			return game;
+		}
+	}
+
+	/**
+	 * Writes spilled games to disk without holding the store's lock
+	 * - a write is skipped if the game was restored (and possibly spilled again) in the meantime
+	 */
+	private void writeSpills(ArrayList<Entry> victims) {
+		for (Entry entry : victims) {
+			synchronized (entry) {
+				byte[] data;
+				synchronized (this) {
+					data = entry.spilling;
+				}
+				if (data == null) {
+					continue;
+				}
+
+				Path path = spillPath(entry.id);
+				Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+				long start = System.nanoTime();
+				try {
+					Files.write(temporary, data);
+					Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+					SPILL_WRITES.recordSince(start);
+				}
+				catch (IOException e) {
+					// the serialized form stays in memory, so the game is not lost
+					Log.warn("could not spill game {} to disk: {}", entry.id, e);
+					continue;
+				}
+
+				synchronized (this) {
+					if (entry.spilling == data) {
+						entry.spilling = null;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Deletes the file of a removed game; holding the entry's lock makes sure a write in progress finishes first
+	 */
+	private void deleteSpill(Entry entry) {
+		synchronized (entry) {
+			try {
+				Files.deleteIfExists(spillPath(entry.id));
+			}
+			catch (IOException e) {
+				Log.warn("could not delete the spill file of game {}: {}", entry.id, e);
+			}
+		}
+	}
+
+	private Path spillPath(long id) {
+		return spillDirectory.resolve(id + ".game");
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+Project: Battleship
+File: ShotDatasetReader.java
+Description: Reads selected columns of a columnar self-play dataset one row group at a time. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+public class ShotDatasetReader implements Closeable {
+
+	private final FileChannel channel;
+	private final String[] columnNames;
+	private final byte[] columnTypes;
+	private final int[] rowGroupRows;
+	private final long[][] columnOffsets;
+	private final long totalRows;
+	private final Inflater inflater = new Inflater();
+
+	/**
+	 * Opens a dataset file and reads its footer
+	 *
+	 * @param path - file written by ShotDatasetWriter
+	 */
+	public ShotDatasetReader(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+
+		ByteBuffer tail = read(channel.size() - 12, 12);
+		long footerOffset = tail.getLong();
+		if (tail.getInt() != ShotDatasetWriter.MAGIC) {
+			throw new IOException(path + " is not a shot dataset");
+		}
+
+		ByteBuffer footer = read(footerOffset, (int) (channel.size() - 12 - footerOffset));
+		int columnCount = footer.getInt();
+		columnNames = new String[columnCount];
+		columnTypes = new byte[columnCount];
+		for (int c = 0; c < columnCount; c++) {
+			byte[] name = new byte[footer.getShort() & 0xFFFF];
+			footer.get(name);
+			columnNames[c] = new String(name, "UTF-8");
+			columnTypes[c] = footer.get();
+		}
+
+		int rowGroups = footer.getInt();
+		rowGroupRows = new int[rowGroups];
+		columnOffsets = new long[rowGroups][columnCount];
+		for (int g = 0; g < rowGroups; g++) {
+			rowGroupRows[g] = footer.getInt();
+			for (int c = 0; c < columnCount; c++) {
+				columnOffsets[g][c] = footer.getLong();
+			}
+		}
+		totalRows = footer.getLong();
+	}
+
+	public String[] getColumnNames() {
+		return columnNames.clone();
+	}
+
+	public long getRowCount() {
+		return totalRows;
+	}
+
+	public int getRowGroupCount() {
+		return rowGroupRows.length;
+	}
+
+	public int getRowGroupRows(int rowGroup) {
+		return rowGroupRows[rowGroup];
+	}
+
+	/**
+	 * Reads one integer column of a row group, without touching the other columns
+	 *
+	 * @param rowGroup - index of the row group
+	 * @param column - name of the column
+	 * @return column values of the row group
+	 */
+	public long[] readLongs(int rowGroup, String column) throws IOException {
+		int c = columnIndex(column, ShotDatasetWriter.TYPE_LONG);
+		return ColumnCodec.decodeLongs(readChunk(rowGroup, c), rowGroupRows[rowGroup]);
+	}
+
+	/**
+	 * Reads one float column of a row group, without touching the other columns
+	 *
+	 * @param rowGroup - index of the row group
+	 * @param column - name of the column
+	 * @return column values of the row group
+	 */
+	public float[] readFloats(int rowGroup, String column) throws IOException {
+		int c = columnIndex(column, ShotDatasetWriter.TYPE_FLOAT);
+		return ColumnCodec.decodeFloats(readChunk(rowGroup, c), rowGroupRows[rowGroup]);
+	}
+
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+		channel.close();
+	}
+
+	private int columnIndex(String column, byte type) {
+		for (int c = 0; c < columnNames.length; c++) {
+			if (columnNames[c].equals(column)) {
+				if (columnTypes[c] != type) {
+					throw new IllegalArgumentException("Column " + column + " has a different type");
+				}
+				return c;
+			}
+		}
+		throw new IllegalArgumentException("Unknown column " + column);
+	}
+
+	private ByteBuffer readChunk(int rowGroup, int column) throws IOException {
+		ByteBuffer lengths = read(columnOffsets[rowGroup][column], 8);
+		int compressedLength = lengths.getInt();
+		int rawLength = lengths.getInt();
+		ByteBuffer compressed = read(columnOffsets[rowGroup][column] + 8, compressedLength);
+
+		byte[] raw = new byte[rawLength];
+		inflater.reset();
+		inflater.setInput(compressed.array(), 0, compressedLength);
+		try {
+			int inflated = 0;
+			while (inflated < rawLength && !inflater.finished()) {
+				int count = inflater.inflate(raw, inflated, rawLength - inflated);
+				// a truncated chunk runs out of input before its end, and would never finish
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IOException("Truncated column chunk in row group " + rowGroup);
+				}
+				inflated += count;
+			}
+		}
+		catch (DataFormatException e) {
+			throw new IOException("Corrupt column chunk in row group " + rowGroup, e);
+		}
+		return ByteBuffer.wrap(raw);
+	}
+
+	private ByteBuffer read(long offset, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, offset + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of dataset file");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+}
@@ -0,0 +1,174 @@
+/*
+Project: Battleship
+File: ShotDatasetWriter.java
+Description: Streams self-play shots into a compressed columnar file, one row per shot, holding at most one row group in memory. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.zip.Deflater;
+
+public class ShotDatasetWriter implements Closeable {
+
+	static final int MAGIC = 0x42534453;
+	static final int VERSION = 1;
+	static final byte TYPE_LONG = 1;
+	static final byte TYPE_FLOAT = 2;
+
+	// column schema: one row per shot
+	public static final String[] COLUMN_NAMES = {"game", "shot", "cell", "mode", "heat", "result", "shipsRemaining", "hitNeighbours", "unknownCells"};
+	static final byte[] COLUMN_TYPES = {TYPE_LONG, TYPE_LONG, TYPE_LONG, TYPE_LONG, TYPE_FLOAT, TYPE_LONG, TYPE_LONG, TYPE_LONG, TYPE_LONG};
+	static final int HEAT_COLUMN = 4;
+
+	public static final int RESULT_MISS = 0;
+	public static final int RESULT_HIT = 1;
+	public static final int RESULT_SUNK = 2;
+
+	private final DataOutputStream out;
+	private final int rowGroupSize;
+	private final long[][] longColumns = new long[COLUMN_NAMES.length][];
+	private final float[] heatColumn;
+	private final ArrayList<long[]> columnOffsets = new ArrayList<long[]>();
+	private final ArrayList<Integer> rowGroupRows = new ArrayList<Integer>();
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private byte[] compressBuffer = new byte[64 * 1024];
+	private long position = 0;
+	private long totalRows = 0;
+	private int rows = 0;
+
+	/**
+	 * Opens a dataset file for writing
+	 *
+	 * @param path - file to write
+	 * @param rowGroupSize - number of rows buffered in memory before a row group is written
+	 */
+	public ShotDatasetWriter(Path path, int rowGroupSize) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path.toFile()), 1 << 16));
+		this.rowGroupSize = rowGroupSize;
+		for (int c = 0; c < COLUMN_NAMES.length; c++) {
+			if (COLUMN_TYPES[c] == TYPE_LONG) {
+				longColumns[c] = new long[rowGroupSize];
+			}
+		}
+		heatColumn = new float[rowGroupSize];
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		position += 8;
+	}
+
+	/**
+	 * Appends one shot to the dataset
+	 *
+	 * @param game - identifier of the game
+	 * @param shot - index of the shot within the game
+	 * @param cell - packed cell index of the shot (row * board length + column)
+	 * @param mode - guessing mode that chose the shot
+	 * @param heat - heat map value at the chosen cell
+	 * @param result - RESULT_MISS, RESULT_HIT or RESULT_SUNK
+	 * @param shipsRemaining - number of ships not yet sunk before the shot
+	 * @param hitNeighbours - number of orthogonal neighbours of the cell already known to be hits
+	 * @param unknownCells - number of cells not yet fired on before the shot
+	 */
+	public void writeShot(long game, int shot, int cell, int mode, float heat, int result, int shipsRemaining, int hitNeighbours, int unknownCells) throws IOException {
+		longColumns[0][rows] = game;
+		longColumns[1][rows] = shot;
+		longColumns[2][rows] = cell;
+		longColumns[3][rows] = mode;
+		heatColumn[rows] = heat;
+		longColumns[5][rows] = result;
+		longColumns[6][rows] = shipsRemaining;
+		longColumns[7][rows] = hitNeighbours;
+		longColumns[8][rows] = unknownCells;
+		rows++;
+
+		if (rows == rowGroupSize) {
+			flushRowGroup();
+		}
+	}
+
+	public long getRowCount() {
+		return totalRows + rows;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (rows > 0) {
+			flushRowGroup();
+		}
+
+		// footer: schema, row group index, then the footer position so readers can find it from the end of the file
+		long footerOffset = position;
+		out.writeInt(COLUMN_NAMES.length);
+		for (int c = 0; c < COLUMN_NAMES.length; c++) {
+			out.writeUTF(COLUMN_NAMES[c]);
+			out.writeByte(COLUMN_TYPES[c]);
+		}
+		out.writeInt(rowGroupRows.size());
+		for (int g = 0; g < rowGroupRows.size(); g++) {
+			out.writeInt(rowGroupRows.get(g));
+			for (long offset : columnOffsets.get(g)) {
+				out.writeLong(offset);
+			}
+		}
+		out.writeLong(totalRows);
+		out.writeLong(footerOffset);
+		out.writeInt(MAGIC);
+		out.close();
+		deflater.end();
+	}
+
+	private void flushRowGroup() throws IOException {
+		long[] offsets = new long[COLUMN_NAMES.length];
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream(rows * 2);
+
+		for (int c = 0; c < COLUMN_NAMES.length; c++) {
+			encoded.reset();
+			if (COLUMN_TYPES[c] == TYPE_FLOAT) {
+				ColumnCodec.encodeFloats(heatColumn, rows, encoded);
+			}
+			else {
+				ColumnCodec.encodeLongs(longColumns[c], rows, encoded);
+			}
+			offsets[c] = position;
+			writeCompressed(encoded.toByteArray());
+		}
+
+		columnOffsets.add(offsets);
+		rowGroupRows.add(rows);
+		totalRows += rows;
+		rows = 0;
+	}
+
+	private void writeCompressed(byte[] raw) throws IOException {
+		deflater.reset();
+		deflater.setInput(raw);
+		deflater.finish();
+
+		int compressedLength = 0;
+		while (!deflater.finished()) {
+			if (compressedLength == compressBuffer.length) {
+				byte[] larger = new byte[compressBuffer.length * 2];
+				System.arraycopy(compressBuffer, 0, larger, 0, compressedLength);
+				compressBuffer = larger;
+			}
+			compressedLength += deflater.deflate(compressBuffer, compressedLength, compressBuffer.length - compressedLength);
+		}
+
+		out.writeInt(compressedLength);
+		out.writeInt(raw.length);
+		out.write(compressBuffer, 0, compressedLength);
+		position += 8 + compressedLength;
+	}
+
+}
@@ -0,0 +1,234 @@
+/*
+Project: Battleship
+File: SimulationResultStore.java
+Description: Stores one fixed-width record per simulated game in off-heap memory, spilling to a memory-mapped file once the memory limit is reached. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+public class SimulationResultStore implements Closeable {
+
+	// record layout: gameId, seed, strategyId, shotsToWin, shotCount, flags, then one bit per shot (1 = hit)
+
+	static final int GAME_ID_OFFSET = 0;
+	static final int SEED_OFFSET = 8;
+	static final int STRATEGY_OFFSET = 16;
+	static final int SHOTS_TO_WIN_OFFSET = 20;
+	static final int SHOT_COUNT_OFFSET = 24;
+	static final int FLAGS_OFFSET = 28;
+	static final int HEADER_BYTES = 32;
+	static final int CHUNK_BYTES = 64 * 1024 * 1024;
+
+	public static final int FLAG_WON = 1;
+	public static final int FLAG_TRUNCATED = 2;
+
+	private final int maxShots;
+	private final int recordBytes;
+	private final int recordsPerChunk;
+	private final long memoryLimit;
+	private final Path spillPath;
+	private final ArrayList<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+	private FileChannel spillChannel;
+	private long spillChunks = 0;
+	private long memoryUsed = 0;
+	private long size = 0;
+
+	// game currently being recorded
+	private ByteBuffer current;
+	private int currentOffset;
+	private int currentShots;
+
+	/**
+	 * Creates a store that keeps everything in direct memory
+	 *
+	 * @param maxShots - maximum number of shots recorded per game
+	 * @param memoryLimit - maximum number of bytes allocated off-heap
+	 */
+	public SimulationResultStore(int maxShots, long memoryLimit) {
+		this(maxShots, memoryLimit, null);
+	}
+
+	/**
+	 * Creates a store that keeps records in direct memory until the limit is reached, then in a memory-mapped file
+	 *
+	 * @param maxShots - maximum number of shots recorded per game
+	 * @param memoryLimit - maximum number of bytes allocated off-heap before spilling
+	 * @param spillPath - file to spill to, or null to fail once the limit is reached
+	 */
+	public SimulationResultStore(int maxShots, long memoryLimit, Path spillPath) {
+		this.maxShots = maxShots;
+		this.recordBytes = HEADER_BYTES + ((maxShots + 63) / 64) * 8;
+		this.recordsPerChunk = Math.max(1, CHUNK_BYTES / recordBytes);
+		this.memoryLimit = memoryLimit;
+		this.spillPath = spillPath;
+	}
+
+	/**
+	 * Starts a new game record; shots recorded afterwards belong to this game
+	 *
+	 * @param gameId - identifier of the game
+	 * @param seed - seed the game was played with
+	 * @param strategyId - identifier of the strategy that played the game
+	 */
+	public void beginGame(long gameId, long seed, int strategyId) {
+		int chunkIndex = (int) (size / recordsPerChunk);
+		if (chunkIndex == chunks.size()) {
+			chunks.add(allocateChunk());
+		}
+		current = chunks.get(chunkIndex);
+		currentOffset = (int) (size % recordsPerChunk) * recordBytes;
+		currentShots = 0;
+
+		current.putLong(currentOffset + GAME_ID_OFFSET, gameId);
+		current.putLong(currentOffset + SEED_OFFSET, seed);
+		current.putInt(currentOffset + STRATEGY_OFFSET, strategyId);
+	}
+
+	/**
+	 * Records one shot of the current game
+	 *
+	 * @param hit - whether the shot hit a ship
+	 */
+	public void recordShot(boolean hit) {
+		if (currentShots < maxShots && hit) {
+			int wordOffset = currentOffset + HEADER_BYTES + (currentShots >>> 6) * 8;
+			current.putLong(wordOffset, current.getLong(wordOffset) | (1L << (currentShots & 63)));
+		}
+		currentShots++;
+	}
+
+	/**
+	 * Finishes the current game record
+	 *
+	 * @param shotsToWin - number of shots taken to sink every ship
+	 * @param won - whether every ship was sunk
+	 */
+	public void endGame(int shotsToWin, boolean won) {
+		int flags = won ? FLAG_WON : 0;
+		if (currentShots > maxShots) {
+			flags |= FLAG_TRUNCATED;
+		}
+		current.putInt(currentOffset + SHOTS_TO_WIN_OFFSET, shotsToWin);
+		current.putInt(currentOffset + SHOT_COUNT_OFFSET, Math.min(currentShots, maxShots));
+		current.putInt(currentOffset + FLAGS_OFFSET, flags);
+		current = null;
+		size++;
+	}
+
+	public long size() {
+		return size;
+	}
+
+	public int getMaxShots() {
+		return maxShots;
+	}
+
+	public long getGameId(long record) {
+		return chunk(record).getLong(offset(record) + GAME_ID_OFFSET);
+	}
+
+	public long getSeed(long record) {
+		return chunk(record).getLong(offset(record) + SEED_OFFSET);
+	}
+
+	public int getStrategyId(long record) {
+		return chunk(record).getInt(offset(record) + STRATEGY_OFFSET);
+	}
+
+	public int getShotsToWin(long record) {
+		return chunk(record).getInt(offset(record) + SHOTS_TO_WIN_OFFSET);
+	}
+
+	public int getShotCount(long record) {
+		return chunk(record).getInt(offset(record) + SHOT_COUNT_OFFSET);
+	}
+
+	public int getFlags(long record) {
+		return chunk(record).getInt(offset(record) + FLAGS_OFFSET);
+	}
+
+	/**
+	 * Returns whether a recorded shot was a hit
+	 *
+	 * @param record - index of the game record
+	 * @param shot - index of the shot within the game
+	 * @return true if the shot hit a ship
+	 */
+	public boolean getShot(long record, int shot) {
+		if (shot < 0 || shot >= getShotCount(record)) {
+			throw new IndexOutOfBoundsException("Shot " + shot + " not recorded for game record " + record);
+		}
+		long word = chunk(record).getLong(offset(record) + HEADER_BYTES + (shot >>> 6) * 8);
+		return (word & (1L << (shot & 63))) != 0;
+	}
+
+	/**
+	 * Returns the number of bytes held in direct memory (excluding the memory-mapped spill file)
+	 *
+	 * @return bytes allocated off-heap
+	 */
+	public long getMemoryUsed() {
+		return memoryUsed;
+	}
+
+	@Override
+	public void close() throws IOException {
+		chunks.clear();
+		current = null;
+		if (spillChannel != null) {
+			spillChannel.close();
+			spillChannel = null;
+		}
+	}
+
+	private ByteBuffer chunk(long record) {
+		if (record < 0 || record >= size) {
+			throw new IndexOutOfBoundsException("Game record " + record + " out of range, size " + size);
+		}
+		return chunks.get((int) (record / recordsPerChunk));
+	}
+
+	private int offset(long record) {
+		return (int) (record % recordsPerChunk) * recordBytes;
+	}
+
+	private ByteBuffer allocateChunk() {
+		long chunkBytes = (long) recordsPerChunk * recordBytes;
+		ByteBuffer chunk;
+
+		// allocates direct memory until the limit is reached, then maps the next region of the spill file
+		if (memoryUsed + chunkBytes <= memoryLimit) {
+			chunk = ByteBuffer.allocateDirect((int) chunkBytes);
+			memoryUsed += chunkBytes;
+		}
+		else if (spillPath != null) {
+			try {
+				if (spillChannel == null) {
+					spillChannel = FileChannel.open(spillPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+				}
+				chunk = spillChannel.map(FileChannel.MapMode.READ_WRITE, spillChunks * chunkBytes, chunkBytes);
+				spillChunks++;
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("Could not map spill file " + spillPath, e);
+			}
+		}
+		else {
+			throw new IllegalStateException("Simulation result store is full (" + memoryUsed + " bytes) and has no spill file");
+		}
+
+		return chunk.order(ByteOrder.nativeOrder());
+	}
+
+}
@@ -0,0 +1,248 @@
+/*
+Project: Battleship
+File: SimulationStats.java
+Description: Online statistics for simulation runs (shots to win, per-cell hit frequency, guessing mode switches and per-move latency) kept in per-thread accumulators that are merged at the end. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.PrintStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class SimulationStats {
+
+	static final int MODES = 4;
+	static final String[] MODE_NAMES = {"target", "parity", "heatmap", "random"};
+
+	/**
+	 * Statistics recorded by a single thread; only the owning thread writes to it
+	 */
+	public static class Accumulator {
+
+		long games = 0;
+		double shotsMean = 0;
+		double shotsM2 = 0;
+		final QuantileSketch shotsToWin = new QuantileSketch();
+		final long[] cellShots;
+		final long[] cellHits;
+		final long[][] modeSwitches = new long[MODES][MODES];
+		int lastMode = -1;
+		long moves = 0;
+		double latencyMean = 0;
+		double latencyM2 = 0;
+		final QuantileSketch latency = new QuantileSketch();
+
+		Accumulator(int cells) {
+			cellShots = new long[cells];
+			cellHits = new long[cells];
+		}
+
+		/**
+		 * Adds the statistics of another accumulator, combining means and variances with Chan's parallel formula
+		 *
+		 * @param other - accumulator to merge in
+		 */
+		void merge(Accumulator other) {
+			long totalGames = games + other.games;
+			if (totalGames > 0) {
+				double delta = other.shotsMean - shotsMean;
+				shotsM2 += other.shotsM2 + delta * delta * games * other.games / totalGames;
+				shotsMean += delta * other.games / totalGames;
+			}
+			games = totalGames;
+			shotsToWin.merge(other.shotsToWin);
+
+			long totalMoves = moves + other.moves;
+			if (totalMoves > 0) {
+				double delta = other.latencyMean - latencyMean;
+				latencyM2 += other.latencyM2 + delta * delta * moves * other.moves / totalMoves;
+				latencyMean += delta * other.moves / totalMoves;
+			}
+			moves = totalMoves;
+			latency.merge(other.latency);
+
+			for (int c = 0; c < cellShots.length; c++) {
+				cellShots[c] += other.cellShots[c];
+				cellHits[c] += other.cellHits[c];
+			}
+			for (int from = 0; from < MODES; from++) {
+				for (int to = 0; to < MODES; to++) {
+					modeSwitches[from][to] += other.modeSwitches[from][to];
+				}
+			}
+		}
+
+		public long getGames() {
+			return games;
+		}
+
+		public double getShotsMean() {
+			return shotsMean;
+		}
+
+		public double getShotsVariance() {
+			return games > 1 ? shotsM2 / (games - 1) : 0;
+		}
+
+		public QuantileSketch getShotsToWin() {
+			return shotsToWin;
+		}
+
+		public double getHitFrequency(int cell) {
+			return cellShots[cell] == 0 ? 0 : (double) cellHits[cell] / cellShots[cell];
+		}
+
+		public long getModeSwitches(int fromMode, int toMode) {
+			return modeSwitches[fromMode][toMode];
+		}
+
+		public long getMoves() {
+			return moves;
+		}
+
+		public double getLatencyMean() {
+			return latencyMean;
+		}
+
+		public double getLatencyVariance() {
+			return moves > 1 ? latencyM2 / (moves - 1) : 0;
+		}
+
+		public QuantileSketch getLatency() {
+			return latency;
+		}
+
+	}
+
+	private final int cells;
+	private final ConcurrentLinkedQueue<Accumulator> accumulators = new ConcurrentLinkedQueue<Accumulator>();
+	private final ThreadLocal<Accumulator> local = ThreadLocal.withInitial(this::register);
+
+	/**
+	 * Creates an aggregator for boards with the given number of cells
+	 *
+	 * @param cells - number of cells on the board
+	 */
+	public SimulationStats(int cells) {
+		this.cells = cells;
+	}
+
+	/**
+	 * Records the result of one shot
+	 *
+	 * @param cell - packed cell index of the shot (row * board length + column)
+	 * @param hit - whether the shot hit a ship
+	 */
+	public void recordShot(int cell, boolean hit) {
+		Accumulator accumulator = local.get();
+		accumulator.cellShots[cell]++;
+		if (hit) {
+			accumulator.cellHits[cell]++;
+		}
+	}
+
+	/**
+	 * Records one AI move
+	 *
+	 * @param mode - guessing mode used for the move
+	 * @param nanos - time taken to compute the move in nanoseconds
+	 */
+	public void recordMove(int mode, long nanos) {
+		Accumulator accumulator = local.get();
+		if (accumulator.lastMode >= 0) {
+			accumulator.modeSwitches[accumulator.lastMode][mode]++;
+		}
+		accumulator.lastMode = mode;
+
+		accumulator.moves++;
+		double delta = nanos - accumulator.latencyMean;
+		accumulator.latencyMean += delta / accumulator.moves;
+		accumulator.latencyM2 += delta * (nanos - accumulator.latencyMean);
+		accumulator.latency.record(nanos);
+	}
+
+	/**
+	 * Records the end of a game
+	 *
+	 * @param shots - number of shots the AI took to sink every ship
+	 */
+	public void recordGameOver(int shots) {
+		Accumulator accumulator = local.get();
+		accumulator.lastMode = -1;
+
+		accumulator.games++;
+		double delta = shots - accumulator.shotsMean;
+		accumulator.shotsMean += delta / accumulator.games;
+		accumulator.shotsM2 += delta * (shots - accumulator.shotsMean);
+		accumulator.shotsToWin.record(shots);
+	}
+
+	/**
+	 * Merges the accumulators of every thread; exact once the recording threads have finished, approximate while they are running
+	 *
+	 * @return merged statistics
+	 */
+	public Accumulator merge() {
+		Accumulator merged = new Accumulator(cells);
+		for (Accumulator accumulator : accumulators) {
+			merged.merge(accumulator);
+		}
+		return merged;
+	}
+
+	/**
+	 * Prints a snapshot of the merged statistics periodically while a run is going
+	 *
+	 * @param periodMillis - time between snapshots in milliseconds
+	 * @param out - stream snapshots are printed to
+	 * @return scheduler to shut down once the run is over
+	 */
+	public ScheduledExecutorService startSnapshots(long periodMillis, PrintStream out) {
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "simulation-stats");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleAtFixedRate(() -> out.println(format(merge())), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+		return scheduler;
+	}
+
+	/**
+	 * Formats merged statistics as a single summary line
+	 *
+	 * @param stats - merged statistics
+	 * @return summary line
+	 */
+	public static String format(Accumulator stats) {
+		StringBuilder line = new StringBuilder(256);
+		line.append("games=").append(stats.games);
+		line.append(String.format(" shots mean=%.2f sd=%.2f", stats.getShotsMean(), Math.sqrt(stats.getShotsVariance())));
+		line.append(" p50=").append(stats.shotsToWin.quantile(0.5));
+		line.append(" p90=").append(stats.shotsToWin.quantile(0.9));
+		line.append(" p99=").append(stats.shotsToWin.quantile(0.99));
+		line.append(String.format(" move us mean=%.1f", stats.getLatencyMean() / 1000));
+		line.append(" p50=").append(stats.latency.quantile(0.5) / 1000);
+		line.append(" p99=").append(stats.latency.quantile(0.99) / 1000);
+		line.append(" switches");
+		for (int from = 0; from < MODES; from++) {
+			for (int to = 0; to < MODES; to++) {
+				if (from != to && stats.modeSwitches[from][to] > 0) {
+					line.append(' ').append(MODE_NAMES[from]).append("->").append(MODE_NAMES[to]).append('=').append(stats.modeSwitches[from][to]);
+				}
+			}
+		}
+		return line.toString();
+	}
+
+	private Accumulator register() {
+		Accumulator accumulator = new Accumulator(cells);
+		accumulators.add(accumulator);
+		return accumulator;
+	}
+
+}
@@ -0,0 +1,476 @@
+/*
+Project: Battleship
+File: SparseBoard.java
+Description: Board that keeps only its ship cells and shot cells, in primitive open-addressing hash tables keyed by packed coordinates, so boards far too large for a Block per cell use memory in proportion to the ships and shots. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+Cells are packed as row * columns + column into a long, so every board a profile allows has one key per cell.
+The ship table maps every ship cell to its ship index + 1; the shot table maps every shot cell to SHOT_WATER or to the ship index + 2 of the ship it hit.
+The hidden board of a player fills both tables; the AI's view of the user's board only has shots, marked with the user's answers.
+*/
+public class SparseBoard {
+
+	// results of shotAt
+	public static final int NOT_SHOT = -2;
+	public static final int MISS = -1;
+
+	private static final int SHOT_WATER = 1;
+
+	/**
+	 * Open-addressing hash table from packed cells to small positive values, with linear probing, kept at most half full
+	 */
+	static final class CellTable {
+
+		private static final long FREE = -1;
+
+		private long[] keys;
+		private short[] values;
+		private int size = 0;
+
+		CellTable(int expected) {
+			int capacity = 16;
+			while (capacity < expected * 2) {
+				capacity <<= 1;
+			}
+			keys = new long[capacity];
+			values = new short[capacity];
+			Arrays.fill(keys, FREE);
+		}
+
+		/**
+		 * Looks a cell up
+		 *
+		 * @param key - packed cell
+		 * @return value stored for the cell, or 0 if there is none
+		 */
+		int get(long key) {
+			int mask = keys.length - 1;
+			for (int slot = slot(key, mask); keys[slot] != FREE; slot = (slot + 1) & mask) {
+				if (keys[slot] == key) {
+					return values[slot];
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * Stores a value for a cell, replacing the value it had
+		 *
+		 * @param key - packed cell
+		 * @param value - value (1 - Short.MAX_VALUE)
+		 */
+		void put(long key, int value) {
+			if ((size + 1) * 2 > keys.length) {
+				grow();
+			}
+			int mask = keys.length - 1;
+			int slot = slot(key, mask);
+			while (keys[slot] != FREE && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			if (keys[slot] == FREE) {
+				keys[slot] = key;
+				size++;
+			}
+			values[slot] = (short) value;
+		}
+
+		void clear() {
+			Arrays.fill(keys, FREE);
+			size = 0;
+		}
+
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Lists the cells holding a value, or every cell if value is 0
+		 *
+		 * @param value - value to look for, or 0 for any
+		 * @return packed cells in ascending order
+		 */
+		long[] cells(int value) {
+			long[] found = new long[size];
+			int count = 0;
+			for (int slot = 0; slot < keys.length; slot++) {
+				if (keys[slot] != FREE && (value == 0 || values[slot] == value)) {
+					found[count++] = keys[slot];
+				}
+			}
+			found = Arrays.copyOf(found, count);
+			Arrays.sort(found);
+			return found;
+		}
+
+		private void grow() {
+			long[] oldKeys = keys;
+			short[] oldValues = values;
+			keys = new long[oldKeys.length * 2];
+			values = new short[oldKeys.length * 2];
+			Arrays.fill(keys, FREE);
+			size = 0;
+			for (int slot = 0; slot < oldKeys.length; slot++) {
+				if (oldKeys[slot] != FREE) {
+					put(oldKeys[slot], oldValues[slot]);
+				}
+			}
+		}
+
+		private static int slot(long key, int mask) {
+			long hash = key * 0x9E3779B97F4A7C15L;
+			return (int) (hash ^ (hash >>> 32)) & mask;
+		}
+
+		void writeTo(DataOutputStream out) throws IOException {
+			out.writeInt(size);
+			for (int slot = 0; slot < keys.length; slot++) {
+				if (keys[slot] != FREE) {
+					out.writeLong(keys[slot]);
+					out.writeShort(values[slot]);
+				}
+			}
+		}
+
+		void readFrom(DataInputStream in) throws IOException {
+			clear();
+			int entries = in.readInt();
+			for (int e = 0; e < entries; e++) {
+				put(in.readLong(), in.readShort());
+			}
+		}
+	}
+
+	private final int rows;
+	private final int columns;
+	private final CellTable shipCells;
+	private final CellTable shotCells = new CellTable(64);
+	// placement counts for the hierarchical hunt, kept up to date by every new shot, if tracked
+	private HuntGrid huntGrid;
+
+	/**
+	 * Creates an empty board
+	 *
+	 * @param rows - number of rows
+	 * @param columns - number of columns
+	 * @param expectedShipCells - number of ship cells the board will hold, so the ship table does not have to grow
+	 */
+	public SparseBoard(int rows, int columns, int expectedShipCells) {
+		this.rows = rows;
+		this.columns = columns;
+		this.shipCells = new CellTable(expectedShipCells);
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Packs a cell into its key
+	 *
+	 * @param row - row of the cell
+	 * @param column - column of the cell
+	 * @return row * columns + column
+	 */
+	public long cell(int row, int column) {
+		return (long) row * columns + column;
+	}
+
+	/**
+	 * Looks up the ship on a cell
+	 *
+	 * @param cell - packed cell
+	 * @return index of the ship, or -1 for water
+	 */
+	public int shipAt(long cell) {
+		return shipCells.get(cell) - 1;
+	}
+
+	/**
+	 * Looks up the shot at a cell
+	 *
+	 * @param cell - packed cell
+	 * @return NOT_SHOT, MISS, or the index of the ship that was hit
+	 */
+	public int shotAt(long cell) {
+		int value = shotCells.get(cell);
+		return value == 0 ? NOT_SHOT : value == SHOT_WATER ? MISS : value - 2;
+	}
+
+	/**
+	 * Starts keeping the placement counts of the hierarchical hunt; done before the first shot, as on the AI's view of the user's board
+	 *
+	 * @param ships - ships being hunted
+	 */
+	public void trackHunt(Ship[] ships) {
+		huntGrid = new HuntGrid(rows, columns, ships);
+	}
+
+	public HuntGrid getHuntGrid() {
+		return huntGrid;
+	}
+
+	public boolean isShot(long cell) {
+		return shotCells.get(cell) != 0;
+	}
+
+	/**
+	 * Shoots at a cell of the board's own ships
+	 *
+	 * @param cell - packed cell, not shot yet
+	 * @return index of the ship that was hit, or -1 for a miss
+	 */
+	public int shoot(long cell) {
+		int ship = shipAt(cell);
+		markShot(cell, ship);
+		return ship;
+	}
+
+	/**
+	 * Records a shot whose result is known, as on the AI's view of the user's board
+	 *
+	 * @param cell - packed cell
+	 * @param ship - index of the ship that was hit, or -1 for a miss
+	 */
+	public void markShot(long cell, int ship) {
+		if (huntGrid != null && !isShot(cell)) {
+			huntGrid.shoot(this, cell);
+		}
+		shotCells.put(cell, ship < 0 ? SHOT_WATER : ship + 2);
+	}
+
+	public int getShotCount() {
+		return shotCells.size();
+	}
+
+	public int getShipCellCount() {
+		return shipCells.size();
+	}
+
+	/**
+	 * Lists the shot cells, e.g. to send the board to a client
+	 *
+	 * @return packed cells in ascending order
+	 */
+	public long[] shotCells() {
+		return shotCells.cells(0);
+	}
+
+	/**
+	 * Lists the shot cells that hit a ship
+	 *
+	 * @param ship - index of the ship
+	 * @return packed cells in ascending order
+	 */
+	public long[] hitCells(int ship) {
+		return shotCells.cells(ship + 2);
+	}
+
+	/**
+	 * Finds the first cell of a ship, in row-major order
+	 *
+	 * @param ship - index of the ship
+	 * @return packed cell, or -1 if the ship is not on the board
+	 */
+	public long firstCell(int ship) {
+		long[] cells = shipCells.cells(ship + 1);
+		return cells.length == 0 ? -1 : cells[0];
+	}
+
+	/**
+	 * Places a ship if it fits on the board without overlapping another ship
+	 *
+	 * @param ship - index of the ship
+	 * @param row - row of the ship's first cell
+	 * @param column - column of the ship's first cell
+	 * @param length - length of the ship
+	 * @param horizontal - whether the ship lies along its row
+	 * @return whether the ship was placed
+	 */
+	public boolean place(int ship, int row, int column, int length, boolean horizontal) {
+		int lastRow = horizontal ? row : row + length - 1;
+		int lastColumn = horizontal ? column + length - 1 : column;
+		if (row < 0 || column < 0 || lastRow >= rows || lastColumn >= columns) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (shipCells.get(horizontal ? cell(row, column + i) : cell(row + i, column)) != 0) {
+				return false;
+			}
+		}
+		for (int i = 0; i < length; i++) {
+			shipCells.put(horizontal ? cell(row, column + i) : cell(row + i, column), ship + 1);
+		}
+		return true;
+	}
+
+	/**
+	 * Places every ship at a random position and orientation, retrying positions that overlap
+	 *
+	 * @param ships - ships to be placed; their orientations are set
+	 * @param random - random number generator of the game
+	 */
+	public void placeRandomly(Ship[] ships, Random random) {
+		shipCells.clear();
+		for (int s = 0; s < ships.length; s++) {
+			int length = ships[s].getLength();
+			while (true) {
+				boolean horizontal = random.nextDouble() < 0.5;
+				int row = (int) (random.nextDouble() * (horizontal ? rows : rows - length + 1));
+				int column = (int) (random.nextDouble() * (horizontal ? columns - length + 1 : columns));
+				if (place(s, row, column, length, horizontal)) {
+					ships[s].setOrientation(horizontal ? "horizontal" : "vertical");
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes every ship, so a given fleet can be placed instead
+	 */
+	public void clearShips() {
+		shipCells.clear();
+	}
+
+	/**
+	 * Counts, for every cell of a region, the placements of the ships that are not sunk which cover the cell and lie on cells that were not shot
+	 * - only the region and a margin of the longest ship's length around it are looked up, so the cost does not depend on the board size
+	 * - along every row and column of the margin, the number of free cells in a row ending at each cell gives the placements ending there,
+	 *   and a difference array spreads every placement over the cells it covers
+	 *
+	 * @param top - first row of the region
+	 * @param left - first column of the region
+	 * @param height - number of rows of the region
+	 * @param width - number of columns of the region
+	 * @param ships - ships being hunted
+	 * @param shipHitCount - number of shots that have hit each ship
+	 * @return number of placements covering every cell of the region, indexed from the region's first row and column
+	 */
+	public double[][] heatMap(int top, int left, int height, int width, Ship[] ships, int[] shipHitCount) {
+		double[][] heat = new double[height][width];
+		int longest = 0;
+		for (int s = 0; s < ships.length; s++) {
+			if (shipHitCount[s] != ships[s].getLength()) {
+				longest = Math.max(longest, ships[s].getLength());
+			}
+		}
+		if (longest == 0) {
+			return heat;
+		}
+
+		// region with its margin, clipped to the board
+		int marginTop = Math.max(0, top - longest + 1);
+		int marginLeft = Math.max(0, left - longest + 1);
+		int marginRows = Math.min(rows, top + height + longest - 1) - marginTop;
+		int marginColumns = Math.min(columns, left + width + longest - 1) - marginLeft;
+		int[][] freeAcross = new int[marginRows][marginColumns];
+		int[][] freeDown = new int[marginRows][marginColumns];
+		for (int r = 0; r < marginRows; r++) {
+			for (int c = 0; c < marginColumns; c++) {
+				if (!isShot(cell(marginTop + r, marginLeft + c))) {
+					freeAcross[r][c] = (c > 0 ? freeAcross[r][c - 1] : 0) + 1;
+					freeDown[r][c] = (r > 0 ? freeDown[r - 1][c] : 0) + 1;
+				}
+			}
+		}
+
+		int[] spread = new int[Math.max(height, width) + 1];
+		for (int s = 0; s < ships.length; s++) {
+			int length = ships[s].getLength();
+			if (shipHitCount[s] == length) {
+				continue;
+			}
+			// horizontal placements along every row of the region
+			for (int r = 0; r < height; r++) {
+				int marginRow = top + r - marginTop;
+				Arrays.fill(spread, 0);
+				for (int c = 0; c < marginColumns; c++) {
+					if (freeAcross[marginRow][c] >= length) {
+						int first = Math.max(0, marginLeft + c - length + 1 - left);
+						int last = Math.min(width - 1, marginLeft + c - left);
+						if (first <= last) {
+							spread[first]++;
+							spread[last + 1]--;
+						}
+					}
+				}
+				int count = 0;
+				for (int c = 0; c < width; c++) {
+					count += spread[c];
+					heat[r][c] += count;
+				}
+			}
+			// vertical placements along every column of the region
+			for (int c = 0; c < width; c++) {
+				int marginColumn = left + c - marginLeft;
+				Arrays.fill(spread, 0);
+				for (int r = 0; r < marginRows; r++) {
+					if (freeDown[r][marginColumn] >= length) {
+						int first = Math.max(0, marginTop + r - length + 1 - top);
+						int last = Math.min(height - 1, marginTop + r - top);
+						if (first <= last) {
+							spread[first]++;
+							spread[last + 1]--;
+						}
+					}
+				}
+				int count = 0;
+				for (int r = 0; r < height; r++) {
+					count += spread[r];
+					heat[r][c] += count;
+				}
+			}
+		}
+		return heat;
+	}
+
+	/**
+	 * Writes the ship and shot cells, as used by Game.writeTo: a count and then a 64-bit cell and a 16-bit value per entry, for each table
+	 *
+	 * @param out - stream to write to
+	 */
+	public void writeTo(DataOutputStream out) throws IOException {
+		shipCells.writeTo(out);
+		shotCells.writeTo(out);
+	}
+
+	/**
+	 * Replaces the ship and shot cells with those written by writeTo
+	 *
+	 * @param in - stream to read from
+	 */
+	public void readFrom(DataInputStream in) throws IOException {
+		shipCells.readFrom(in);
+		shotCells.readFrom(in);
+		// the hunt counts are not written; they are rebuilt by shooting the cells again
+		if (huntGrid != null) {
+			long[] cells = shotCells.cells(0);
+			int[] shots = new int[cells.length];
+			for (int i = 0; i < cells.length; i++) {
+				shots[i] = shotAt(cells[i]);
+			}
+			shotCells.clear();
+			huntGrid.clear();
+			for (int i = 0; i < cells.length; i++) {
+				markShot(cells[i], shots[i]);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+Project: Battleship
+File: StrategyComparison.java
+Description: Compares two guessing/placement strategies on paired self-play games and stops as soon as a sequential probability ratio test decides which one needs fewer shots. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+public class StrategyComparison {
+
+	public static final int UNDECIDED = 0;
+	public static final int FIRST_BETTER = 1;
+	public static final int SECOND_BETTER = 2;
+	public static final int NO_DIFFERENCE = 3;
+
+	static final String[] DECISION_NAMES = {"undecided", "first strategy better", "second strategy better", "no difference"};
+	static final int MIN_GAMES = 30;
+
+	/**
+	 * Outcome of a comparison
+	 */
+	public static class Result {
+
+		private final int decision;
+		private final long games;
+		private final double meanDifference;
+		private final double standardDeviation;
+
+		Result(int decision, long games, double meanDifference, double standardDeviation) {
+			this.decision = decision;
+			this.games = games;
+			this.meanDifference = meanDifference;
+			this.standardDeviation = standardDeviation;
+		}
+
+		public int getDecision() {
+			return decision;
+		}
+
+		public long getGames() {
+			return games;
+		}
+
+		public double getMeanDifference() {
+			return meanDifference;
+		}
+
+		public double getStandardDeviation() {
+			return standardDeviation;
+		}
+
+		@Override
+		public String toString() {
+			return DECISION_NAMES[decision] + " after " + games + " paired games (mean shots difference "
+					+ String.format("%.2f", meanDifference) + ", sd " + String.format("%.2f", standardDeviation) + ")";
+		}
+
+	}
+
+	/**
+	 * Plays paired games (same seed, same hidden board) with two strategies until Wald's sequential probability ratio test decides
+	 * - H0: both strategies need the same number of shots on average
+	 * - H1: one strategy needs at least minDifference fewer shots on average (tested in both directions)
+	 *
+	 * @param firstStrategy - guessing strategy of the first player (SelfPlay.STRATEGY_EXPERT or SelfPlay.STRATEGY_SIMPLE)
+	 * @param firstPlacement - placement algorithm of the first player's hidden board
+	 * @param secondStrategy - guessing strategy of the second player
+	 * @param secondPlacement - placement algorithm of the second player's hidden board
+	 * @param seed - seed of the first pair; later pairs use consecutive seeds
+	 * @param minDifference - smallest difference in mean shots to win worth detecting
+	 * @param alpha - probability of declaring a difference when there is none, split evenly between the two one-sided tests
+	 * @param beta - probability of missing a difference of minDifference
+	 * @param maxGames - number of pairs after which the comparison gives up
+	 * @return decision and the number of pairs it took
+	 */
+	public static Result compare(int firstStrategy, int firstPlacement, int secondStrategy, int secondPlacement, long seed, double minDifference, double alpha, double beta, long maxGames) {
+		// each direction is tested at alpha / 2, so a difference is declared by either test with probability alpha when there is none
+		double sideAlpha = alpha / 2;
+		double upperBound = Math.log((1 - beta) / sideAlpha);
+		double lowerBound = Math.log(beta / (1 - sideAlpha));
+
+		long games = 0;
+		double mean = 0;
+		double m2 = 0;
+		double sum = 0;
+
+		while (games < maxGames) {
+			int firstShots;
+			int secondShots;
+			try {
+				firstShots = SelfPlay.playGame(seed + games, firstStrategy, firstPlacement, games, null, null);
+				secondShots = SelfPlay.playGame(seed + games, secondStrategy, secondPlacement, games, null, null);
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			// difference > 0 means the first strategy needed more shots
+			double difference = firstShots - secondShots;
+			games++;
+			sum += difference;
+			double delta = difference - mean;
+			mean += delta / games;
+			m2 += delta * (difference - mean);
+
+			if (games < MIN_GAMES) {
+				continue;
+			}
+
+			// variance is estimated from the pairs so far; a tiny floor keeps identical strategies from dividing by zero
+			double variance = Math.max(m2 / (games - 1), 1e-9);
+			double secondBetterRatio = (minDifference * sum - games * minDifference * minDifference / 2) / variance;
+			double firstBetterRatio = (-minDifference * sum - games * minDifference * minDifference / 2) / variance;
+
+			if (secondBetterRatio >= upperBound) {
+				return new Result(SECOND_BETTER, games, mean, Math.sqrt(variance));
+			}
+			if (firstBetterRatio >= upperBound) {
+				return new Result(FIRST_BETTER, games, mean, Math.sqrt(variance));
+			}
+			if (secondBetterRatio <= lowerBound && firstBetterRatio <= lowerBound) {
+				return new Result(NO_DIFFERENCE, games, mean, Math.sqrt(variance));
+			}
+		}
+
+		return new Result(UNDECIDED, games, mean, games > 1 ? Math.sqrt(m2 / (games - 1)) : 0);
+	}
+
+	/**
+	 * Parses a player description of the form guess/placement, e.g. "expert/simple"
+	 *
+	 * @param description - player description
+	 * @return guessing strategy and placement algorithm
+	 */
+	static int[] parsePlayer(String description) {
+		String[] parts = description.split("/");
+		int strategy = parts[0].equals("simple") ? SelfPlay.STRATEGY_SIMPLE : SelfPlay.STRATEGY_EXPERT;
+		int placement = parts.length > 1 && parts[1].equals("simple") ? SelfPlay.PLACEMENT_SIMPLE : SelfPlay.PLACEMENT_EXPERT;
+		return new int[] {strategy, placement};
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.println("Usage: StrategyComparison <guess/placement> <guess/placement> [minDifference] [alpha] [maxGames] [seed]");
+			return;
+		}
+
+		int[] first = parsePlayer(args[0]);
+		int[] second = parsePlayer(args[1]);
+		double minDifference = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+		double alpha = args.length > 3 ? Double.parseDouble(args[3]) : 0.05;
+		long maxGames = args.length > 4 ? Long.parseLong(args[4]) : 100000;
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : System.nanoTime();
+
+		Log.configure(Log.OFF);
+		Result result = compare(first[0], first[1], second[0], second[1], seed, minDifference, alpha, alpha, maxGames);
+		System.out.println(args[0] + " vs " + args[1] + ": " + result);
+	}
+
+}
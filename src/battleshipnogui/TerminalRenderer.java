@@ -0,0 +1,226 @@
+/*
+Project: Battleship
+File: TerminalRenderer.java
+Description: Draws the console game's boards and the AI's heat map in place on an ANSI terminal, writing only the cells that changed since the last frame, so redraws stay small over slow links and on large boards. Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/*
+Screen layout: the panels sit side by side at the top of the screen, each with a title, column numbers and row letters.
+The lines below them are set as the terminal's scroll region, so prompts and answers scroll there while the panels stay put.
+A frame saves the cursor, moves to every changed cell, writes it with its colour, restores the cursor and is written in one print.
+*/
+public class TerminalRenderer {
+
+	static final String CSI = "\u001b[";
+	static final String SAVE_CURSOR = "\u001b7";
+	static final String RESTORE_CURSOR = "\u001b8";
+	static final String RESET = CSI + "0m";
+
+	static final int HEAT_LEVELS = 12;
+	// background colour of every heat level, from cold (blue) to hot (red) in the 6x6x6 colour cube of 256-colour terminals
+	static final String[] HEAT_COLOURS = new String[HEAT_LEVELS];
+
+	static {
+		for (int level = 0; level < HEAT_LEVELS; level++) {
+			int red = Math.round(5f * level / (HEAT_LEVELS - 1));
+			int green = Math.round(5f * (1 - Math.abs(2f * level / (HEAT_LEVELS - 1) - 1)));
+			int blue = 5 - red;
+			HEAT_COLOURS[level] = CSI + "48;5;" + (16 + 36 * red + 6 * green + blue) + "m";
+		}
+	}
+
+	private static final int CELL_WIDTH = 2;
+	private static final int MIN_LABEL_WIDTH = 3;
+	private static final int PANEL_GAP = 4;
+	// first screen row of the board cells (row 1 holds the titles, row 2 the column numbers)
+	private static final int FIRST_ROW = 3;
+
+	private final PrintStream out;
+	private final int rows;
+	private final int columns;
+	private final String[] titles;
+	// row names followed by a space, as wide as the name of the last row (up to four letters on the tallest boards)
+	private final int labelWidth;
+	private final int panelWidth;
+	// last frame: what every cell of every panel shows, 0 when it has not been drawn yet
+	private final char[] shownText;
+	private final byte[] shownColour;
+	private final StringBuilder frame;
+	// where the terminal's cursor and colour will be after the frame so far, so neighbouring cells need no move or colour change
+	private int frameRow = -1;
+	private int frameColumn = -1;
+	private int frameColour = -1;
+	private boolean started = false;
+
+	/**
+	 * Creates a renderer for panels of one board size
+	 *
+	 * @param out - terminal stream
+	 * @param rows - number of rows of every panel
+	 * @param columns - number of columns of every panel
+	 * @param titles - title of every panel, left to right
+	 */
+	public TerminalRenderer(PrintStream out, int rows, int columns, String... titles) {
+		this.out = out;
+		this.rows = rows;
+		this.columns = columns;
+		this.titles = titles;
+		this.labelWidth = Math.max(MIN_LABEL_WIDTH, BattleshipNoGUI.rowName(rows - 1).length() + 1);
+		this.panelWidth = labelWidth + columns * CELL_WIDTH + PANEL_GAP;
+		this.shownText = new char[titles.length * rows * columns];
+		this.shownColour = new byte[shownText.length];
+		// worst case of a frame: every cell moved to, coloured and written, plus the cursor save and restore
+		this.frame = new StringBuilder(shownText.length * 24 + 64);
+	}
+
+	/**
+	 * Clears the screen, draws the titles and labels of every panel and keeps the lines below the panels for scrolling text
+	 */
+	public void start() {
+		frame.setLength(0);
+		frame.append(CSI).append("2J");
+		for (int p = 0; p < titles.length; p++) {
+			int left = p * panelWidth + 1;
+			moveTo(1, left + labelWidth);
+			frame.append(titles[p]);
+			moveTo(2, left + labelWidth);
+			for (int c = 1; c <= columns; c++) {
+				frame.append(c % 10).append(' ');
+			}
+			for (int r = 0; r < rows; r++) {
+				moveTo(FIRST_ROW + r, left);
+				frame.append(BattleshipNoGUI.rowName(r));
+			}
+		}
+		int textTop = FIRST_ROW + rows + 1;
+		frame.append(CSI).append(textTop).append('r');
+		moveTo(textTop, 1);
+		out.print(frame);
+		out.flush();
+		frame.setLength(0);
+		Arrays.fill(shownText, (char) 0);
+		started = true;
+	}
+
+	/**
+	 * Gives the whole screen back to scrolling text, below the panels
+	 */
+	public void stop() {
+		if (!started) {
+			return;
+		}
+		out.print(RESET + CSI + "r" + CSI + "999;1H");
+		out.println();
+		out.flush();
+		started = false;
+	}
+
+	/**
+	 * Adds the changed cells of a board to the frame: unknown cells dim, misses blue and hits red
+	 *
+	 * @param panel - index of the panel
+	 * @param board - board to be drawn
+	 * @param hideShips - whether ships on cells that were not shot are shown as unknown
+	 */
+	public void drawBoard(int panel, Block[][] board, boolean hideShips) {
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				Block block = board[r][c];
+				char text = block.getOccupation();
+				if (hideShips && !block.getIsShot()) {
+					text = Game.UNKNOWN;
+				}
+				int colour = text == Game.UNKNOWN ? 0 : text == Game.WATER ? 1 : 2;
+				drawCell(panel, r, c, text, colour);
+			}
+		}
+	}
+
+	/**
+	 * Adds the changed cells of a heat map to the frame, as background colours graded from the coldest to the hottest cell
+	 *
+	 * @param panel - index of the panel
+	 * @param heatMap - probability of every cell, any scale
+	 */
+	public void drawHeatMap(int panel, double[][] heatMap) {
+		double max = 0;
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				max = Math.max(max, heatMap[r][c]);
+			}
+		}
+		double scale = max > 0 ? (HEAT_LEVELS - 1) / max : 0;
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				int level = (int) (Math.max(0, heatMap[r][c]) * scale);
+				drawCell(panel, r, c, ' ', 3 + level);
+			}
+		}
+	}
+
+	/**
+	 * Writes the frame to the terminal in one print and starts an empty one
+	 */
+	public void present() {
+		if (frame.length() == 0) {
+			return;
+		}
+		out.print(frame.insert(0, SAVE_CURSOR).append(RESET).append(RESTORE_CURSOR));
+		out.flush();
+		frame.setLength(0);
+		frameRow = -1;
+		frameColour = -1;
+	}
+
+	/**
+	 * Adds one cell to the frame if its text or colour differs from the last frame
+	 *
+	 * @param colour - 0 unknown, 1 miss, 2 hit, 3 and up heat levels
+	 */
+	private void drawCell(int panel, int row, int column, char text, int colour) {
+		int index = (panel * rows + row) * columns + column;
+		if (shownText[index] == text && shownColour[index] == colour) {
+			return;
+		}
+		shownText[index] = text;
+		shownColour[index] = (byte) colour;
+
+		int screenRow = FIRST_ROW + row;
+		int screenColumn = panel * panelWidth + 1 + labelWidth + column * CELL_WIDTH;
+		if (screenRow != frameRow || screenColumn != frameColumn) {
+			moveTo(screenRow, screenColumn);
+		}
+		if (colour != frameColour) {
+			frame.append(RESET);
+			switch (colour) {
+				case 0:
+					frame.append(CSI).append("2m");
+					break;
+				case 1:
+					frame.append(CSI).append("34m");
+					break;
+				case 2:
+					frame.append(CSI).append("1;31m");
+					break;
+				default:
+					frame.append(HEAT_COLOURS[colour - 3]);
+			}
+			frameColour = colour;
+		}
+		frame.append(text).append(' ');
+		frameRow = screenRow;
+		frameColumn = screenColumn + CELL_WIDTH;
+	}
+
+	private void moveTo(int row, int column) {
+		frame.append(CSI).append(row).append(';').append(column).append('H');
+	}
+
+}
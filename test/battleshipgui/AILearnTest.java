@@ -0,0 +1,40 @@
+/*
+Project: Battleship
+File: AILearnTest.java
+Description: Checks that the hit weight of the AI profile changes the probabilities the GUI AI learns from a hit. Run with assertions enabled (java -ea). Compatible with GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package battleshipgui;
+
+public class AILearnTest {
+
+	/**
+	 * Learns from one hit in the middle of an empty board
+	 *
+	 * @param hitWeight - hit weight of the profile
+	 * @return learned probabilities
+	 */
+	static double[][] learnHit(double hitWeight) {
+		MainClass.profile.setHitWeight(hitWeight);
+		MainClass.aiLearningBoard = new double[MainClass.rows][MainClass.columns];
+		MainClass.aiLearn(MainClass.ships[0], 4, 4);
+		return MainClass.aiLearningBoard;
+	}
+
+	public static void main(String[] args) {
+		double defaultWeight = MainClass.profile.getHitWeight();
+		double[][] defaults = learnHit(defaultWeight);
+		double[][] tripled = learnHit(defaultWeight * 3);
+		MainClass.profile.setHitWeight(defaultWeight);
+
+		// every cell the ship could reach from the hit gains weight / distance, not only the neighbours
+		for (int distance = 1; distance < MainClass.ships[0].getLength(); distance++) {
+			assert Math.abs(defaults[4][4 + distance] - defaultWeight / distance) < 1e-12 : "default weight at distance " + distance + " is " + defaults[4][4 + distance];
+			assert Math.abs(tripled[4][4 + distance] - 3 * defaults[4][4 + distance]) < 1e-12 : "tripled weight at distance " + distance + " is " + tripled[4][4 + distance];
+		}
+		System.out.println("AILearnTest passed");
+	}
+
+}
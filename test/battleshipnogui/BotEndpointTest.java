@@ -0,0 +1,113 @@
+/*
+Project: Battleship
+File: BotEndpointTest.java
+Description: Checks that the bot endpoint's frames carry ship ids above 127 both ways, on a sparse board with a fleet of more than 200 ships. Run with assertions enabled (java -ea). Compatible without GUI.
+Date: May. 29, 2024 - Jun. 17, 2024
+Author: Emily Au
+*/
+
+package src;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+public class BotEndpointTest {
+
+	static final int SHIPS = 201;
+	static final int SHIP_ID = 200;
+
+	/**
+	 * 256x256 board (the most cells a frame addresses) with SHIPS ships of length 3, sparse enough for more than 26 ships
+	 */
+	static AIProfile largeFleetProfile() {
+		AIProfile profile = AIProfile.defaults();
+		profile.setBoardSize(256, 256);
+		StringBuilder fleet = new StringBuilder();
+		for (int s = 1; s <= SHIPS; s++) {
+			fleet.append(s > 1 ? "," : "").append("Ship").append(s).append(":3");
+		}
+		profile.setFleet(fleet.toString());
+		profile.validate();
+		return profile;
+	}
+
+	static void send(DataOutputStream out, int gameId, byte type, int cell, int value) throws IOException {
+		out.writeInt(gameId);
+		out.writeByte(type);
+		out.writeByte(cell);
+		out.writeByte(value);
+		out.writeByte(cell >>> 8);
+		out.flush();
+	}
+
+	/**
+	 * Reads one frame
+	 *
+	 * @return type, cell and value
+	 */
+	static int[] receive(DataInputStream in, int gameId) throws IOException {
+		assert in.readInt() == gameId : "frame of another game";
+		int type = in.readByte();
+		int cell = in.readByte() & 0xFF;
+		int value = in.readByte() & 0xFF;
+		cell |= (in.readByte() & 0xFF) << 8;
+		assert type != BotEndpoint.ERROR : "error " + value + " at cell " + cell;
+		return new int[] {type, cell, value};
+	}
+
+	public static void main(String[] args) throws Exception {
+		AIProfile profile = largeFleetProfile();
+		assert profile.isSparse() : "profile is not sparse";
+		BotEndpoint endpoint = new BotEndpoint(0, 1, profile);
+		Thread server = new Thread(() -> {
+			try {
+				endpoint.serve();
+			}
+			catch (IOException e) {
+				// closed
+			}
+		});
+		server.setDaemon(true);
+		server.start();
+
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), endpoint.getPort())) {
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			int gameId = 7;
+
+			send(out, gameId, BotEndpoint.NEW_GAME, 0, 0);
+			int[] frame = receive(in, gameId);
+			assert frame[0] == BotEndpoint.NEW_GAME : "expected NEW_GAME, got " + frame[0];
+			if (frame[2] == 0) {
+				// the client shoots first; every ship id the endpoint sends back must name a ship of the fleet
+				send(out, gameId, BotEndpoint.SHOT, 0, 0);
+				frame = receive(in, gameId);
+				assert frame[0] == BotEndpoint.RESULT && frame[2] <= SHIPS : "bad result " + frame[2];
+				frame = receive(in, gameId);
+				if (frame[0] == BotEndpoint.SUNK) {
+					frame = receive(in, gameId);
+				}
+			}
+			else {
+				frame = receive(in, gameId);
+			}
+			assert frame[0] == BotEndpoint.SHOT : "expected the AI's SHOT, got " + frame[0];
+
+			// answering the AI's shot with ship id 200 is accepted, so the client's next shot is answered with a RESULT, not an ERROR
+			send(out, gameId, BotEndpoint.RESULT, frame[1], SHIP_ID);
+			int nextCell = frame[1] == 1 ? 2 : 1;
+			send(out, gameId, BotEndpoint.SHOT, nextCell, 0);
+			frame = receive(in, gameId);
+			assert frame[0] == BotEndpoint.RESULT && frame[1] == nextCell : "expected RESULT at " + nextCell + ", got " + frame[0];
+		}
+		finally {
+			endpoint.close();
+		}
+		System.out.println("BotEndpointTest passed");
+	}
+
+}